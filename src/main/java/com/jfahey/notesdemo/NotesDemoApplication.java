@@ -2,12 +2,51 @@ package com.jfahey.notesdemo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.ClassUtils;
 
-@SpringBootApplication
+// R2DBC is only used by the reactive variant, see ReactiveNotesApplication
+@SpringBootApplication(exclude = {
+	R2dbcAutoConfiguration.class,
+	R2dbcDataAutoConfiguration.class,
+	R2dbcRepositoriesAutoConfiguration.class,
+	R2dbcTransactionManagerAutoConfiguration.class
+})
+@EnableScheduling
 public class NotesDemoApplication {
 
+	static final String REACTIVE_PROFILE = "reactive";
+	static final String REACTIVE_APPLICATION = "com.jfahey.notesdemo.reactive.ReactiveNotesApplication";
+
 	public static void main(String[] args) {
-		SpringApplication.run(NotesDemoApplication.class, args);
+		SpringApplication.run(primarySource(args), args);
+	}
+
+	/**
+	 * The servlet application, or <code>ReactiveNotesApplication</code> when the
+	 * <code>reactive</code> profile is activated on the command line, as a
+	 * system property or in the environment (<code>SPRING_PROFILES_ACTIVE</code>).
+	 * The reactive variant is only included in builds with the <code>reactive</code>
+	 * Maven profile.
+	 */
+	static Class<?> primarySource(String... args) {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+		if (!environment.acceptsProfiles(Profiles.of(REACTIVE_PROFILE))) {
+			return NotesDemoApplication.class;
+		}
+		ClassLoader classLoader = NotesDemoApplication.class.getClassLoader();
+		if (!ClassUtils.isPresent(REACTIVE_APPLICATION, classLoader)) {
+			throw new IllegalStateException("The reactive variant isn't included in this build, build it with -Preactive");
+		}
+		return ClassUtils.resolveClassName(REACTIVE_APPLICATION, classLoader);
 	}
 
 }
@@ -30,6 +30,10 @@ public class NotesDemoDBLoader implements CommandLineRunner {
 
 	@Override
 	public void run(String... strings) throws Exception {
+		// instances may share a database, only the first one seeds it
+		if (this.userRepository.existsByUsername("admin")) {
+			return;
+		}
 		User user1 = this.userRepository.save(
 			new User("admin","admin@gmail.com", encoder.encode("password123")));
 		this.noteRepository.save(
@@ -19,6 +19,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import com.jfahey.notesdemo.security.JwtAuthenticationEntryPoint;
 import com.jfahey.notesdemo.security.JwtFilter;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Configuration
@@ -51,7 +52,9 @@ public class WebSecurityConfig {
 		http.csrf(csrf -> csrf.disable())
             .cors(Customizer.withDefaults())
             .authorizeHttpRequests((authorize) ->
-                authorize.requestMatchers("/docs/**").permitAll()
+                // async dispatches (streamed responses) were already authorized on the original request
+                authorize.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                    .requestMatchers("/docs/**").permitAll()
                     .requestMatchers("/auth/**").permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/**").permitAll() // future add'ns
                     .anyRequest().authenticated())
@@ -0,0 +1,33 @@
+package com.jfahey.notesdemo.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the listeners of a {@link CacheInvalidationBus}, and hands
+ * them the invalidations received from other instances.
+ */
+public abstract class AbstractInvalidationBus implements CacheInvalidationBus {
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void subscribe(String cache, Consumer<String> listener) {
+        listeners.computeIfAbsent(cache, c -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    protected void deliver(String cache, String key) {
+        listeners.getOrDefault(cache, List.of()).forEach(listener -> listener.accept(key));
+    }
+
+    /** Have every cache drop all its entries. */
+    protected void deliverAll() {
+        listeners.values().forEach(cacheListeners -> cacheListeners.forEach(listener -> listener.accept(null)));
+    }
+
+    /** Stop exchanging invalidations with the other instances. */
+    public abstract void close();
+}
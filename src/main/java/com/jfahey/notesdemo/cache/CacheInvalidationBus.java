@@ -0,0 +1,32 @@
+package com.jfahey.notesdemo.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between the instances of the application, so
+ * each can keep its own in-process caches (see {@link NoteCache} and
+ * {@link com.jfahey.notesdemo.security.PrincipalCache}) without serving data
+ * another instance has since changed.
+ * <p>
+ * Caches invalidate their own entries first, then publish the invalidation for
+ * the other instances; an instance doesn't receive what it published itself.
+ * Implementations: {@link InJvmInvalidationBus} (default) and
+ * {@link UdpInvalidationBus}, chosen with <code>app.cache.bus.type</code>;
+ * declaring another <code>CacheInvalidationBus</code> bean (e.g. on a message
+ * broker) replaces them.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Tell the other instances to drop a key from their copy of a cache.
+     * @param key the key, or <code>null</code> for every entry
+     */
+    void publish(String cache, String key);
+
+    /**
+     * Receive the invalidations other instances publish for a cache. The listener
+     * is given the key, or <code>null</code> when every entry must be dropped
+     * (including when invalidations may have been lost).
+     */
+    void subscribe(String cache, Consumer<String> listener);
+}
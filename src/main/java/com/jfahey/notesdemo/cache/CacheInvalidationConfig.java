@@ -0,0 +1,58 @@
+package com.jfahey.notesdemo.cache;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * Chooses the {@link CacheInvalidationBus} with <code>app.cache.bus.type</code>:
+ * <code>jvm</code> (default) or <code>udp</code>.
+ */
+@Configuration
+public class CacheInvalidationConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(CacheInvalidationBus.class)
+    @ConditionalOnProperty(name = "app.cache.bus.type", havingValue = "udp")
+    public UdpInvalidationBus udpInvalidationBus(
+        @Value("${app.cache.bus.udp.bind:127.0.0.1}") String bind,
+        @Value("${app.cache.bus.udp.port:7601}") int port,
+        @Value("${app.cache.bus.udp.peers:}") String peers,
+        @Value("${app.cache.bus.udp.secret:}") String secret,
+        @Value("${app.cache.bus.udp.heartbeatms:1000}") long heartbeatMs) {
+
+        return new UdpInvalidationBus(new InetSocketAddress(bind, port), parsePeers(peers),
+            secret.getBytes(StandardCharsets.UTF_8), heartbeatMs);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CacheInvalidationBus.class)
+    public InJvmInvalidationBus inJvmInvalidationBus(@Value("${app.cache.bus.channel:default}") String channel) {
+        return new InJvmInvalidationBus(channel);
+    }
+
+    /**
+     * @param peers comma separated <code>host:port</code> addresses
+     */
+    public static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> peerAddresses = new ArrayList<>();
+        for (String peer : StringUtils.commaDelimitedListToStringArray(peers)) {
+            String address = peer.trim();
+            int separator = address.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Peer must be host:port, got " + address);
+            }
+            peerAddresses.add(new InetSocketAddress(
+                address.substring(0, separator), Integer.parseInt(address.substring(separator + 1))));
+        }
+        return peerAddresses;
+    }
+}
@@ -0,0 +1,208 @@
+package com.jfahey.notesdemo.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Small concurrent cache with a size bound and per-entry expiry.
+ * <p>
+ * Entries expire after the cache's time-to-live, or earlier if a shorter
+ * expiry is given when the entry is put. Expired entries are dropped lazily
+ * on access. When the cache is full, a small sample of entries is taken from
+ * a cursor that keeps moving round the cache: expired entries in the sample
+ * are dropped and, if that doesn't make room, so is the soonest-expiring one.
+ * Each insert into a full cache thus costs a constant amount of work, and
+ * over successive inserts every entry gets sampled.
+ */
+public class ExpiringCache<K, V> {
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maximumSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    /** Guarded by itself; where the next eviction sample starts. */
+    private final Object evictionLock = new Object();
+    private Iterator<Map.Entry<K, Entry<V>>> evictionCursor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ExpiringCache(int maximumSize, Duration ttl) {
+        this(maximumSize, ttl, System::currentTimeMillis);
+    }
+
+    ExpiringCache(int maximumSize, Duration ttl, LongSupplier clock) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached value, or <code>null</code> if absent or expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(clock.getAsLong())) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Return the cached value, loading and caching it on a miss.
+     * <code>null</code> values returned by the loader are not cached, nor are
+     * values loaded while any entry was invalidated, as they may predate the invalidation.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long stamp = invalidations.sum();
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+                if (invalidations.sum() != stamp) {
+                    entries.remove(key);
+                }
+            }
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cache a value that must not outlive <code>expiresAtMillis</code>
+     * (epoch millis), nor the cache's time-to-live.
+     */
+    public void put(K key, V value, long expiresAtMillis) {
+        long now = clock.getAsLong();
+        long expiresAt = Math.min(expiresAtMillis, now + ttlMillis);
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maximumSize && !entries.containsKey(key)) {
+            evictToFit(now);
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+        puts.increment();
+    }
+
+    public void invalidate(K key) {
+        invalidations.increment();
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        invalidations.increment();
+        entries.clear();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private void evictToFit(long now) {
+        synchronized (evictionLock) {
+            while (entries.size() >= maximumSize) {
+                K victim = null;
+                long victimExpiry = Long.MAX_VALUE;
+                for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                    Map.Entry<K, Entry<V>> candidate = nextEvictionCandidate();
+                    if (candidate == null) {
+                        break;
+                    }
+                    if (candidate.getValue().isExpired(now)) {
+                        if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                            evictions.increment();
+                        }
+                    } else if (candidate.getValue().expiresAt <= victimExpiry) {
+                        victim = candidate.getKey();
+                        victimExpiry = candidate.getValue().expiresAt;
+                    }
+                }
+                if (entries.size() < maximumSize) {
+                    return;
+                }
+                if (victim == null) {
+                    if (entries.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                if (entries.remove(victim) != null) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the entry after the previous candidate, wrapping round to the
+     * start of the cache; <code>null</code> if the cache is empty
+     */
+    private Map.Entry<K, Entry<V>> nextEvictionCandidate() {
+        if (evictionCursor == null || !evictionCursor.hasNext()) {
+            evictionCursor = entries.entrySet().iterator();
+            if (!evictionCursor.hasNext()) {
+                return null;
+            }
+        }
+        return evictionCursor.next();
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.jfahey.notesdemo.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publishes the standard <code>cache.*</code> meters (gets, puts, evictions, size)
+ * for an {@link ExpiringCache}.
+ */
+public class ExpiringCacheMetrics extends CacheMeterBinder<ExpiringCache<?, ?>> {
+
+    public ExpiringCacheMetrics(ExpiringCache<?, ?> cache, String cacheName, Iterable<Tag> tags) {
+        super(cache, cacheName, tags);
+    }
+
+    @Override
+    protected Long size() {
+        ExpiringCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        ExpiringCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        ExpiringCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        ExpiringCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        ExpiringCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        // no metrics beyond the standard cache meters
+    }
+}
@@ -0,0 +1,71 @@
+package com.jfahey.notesdemo.cache;
+
+/**
+ * Approximate access counts for the admission policy of {@link TinyLfuCache}:
+ * a count-min sketch of 4-bit counters (four rows, so a key's estimate is the
+ * least of its four counters). Counts are halved once the sketch has recorded
+ * ten times as many accesses as the cache holds entries, so keys that were
+ * popular long ago fade out.
+ * <p>
+ * Not thread safe; the cache calls it under its lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(long maximumSize) {
+        int width = Integer.highestOneBit((int) Math.max(16, Math.min(maximumSize, 1 << 24)) * 2 - 1);
+        this.counters = new byte[width * SEEDS.length];
+        this.mask = width - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(16, maximumSize));
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counters[index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return row * (mask + 1) + ((int) (h ^ (h >>> 32)) & mask);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
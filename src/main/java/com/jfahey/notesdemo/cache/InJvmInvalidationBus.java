@@ -0,0 +1,45 @@
+package com.jfahey.notesdemo.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * {@link CacheInvalidationBus} between application contexts running in the same
+ * JVM on the same channel (<code>app.cache.bus.channel</code>). Invalidations
+ * are delivered synchronously, so once <code>publish</code> returns no other
+ * context serves the old entry.
+ * <p>
+ * With a single context, as in a single instance deployment, there is no one
+ * to deliver to and publishing costs nothing.
+ */
+public class InJvmInvalidationBus extends AbstractInvalidationBus {
+
+    private static final Map<String, Set<InJvmInvalidationBus>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+
+    public InJvmInvalidationBus(String channel) {
+        this.channel = channel;
+        CHANNELS.computeIfAbsent(channel, c -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(String cache, String key) {
+        for (InJvmInvalidationBus bus : CHANNELS.getOrDefault(channel, Set.of())) {
+            if (bus != this) {
+                bus.deliver(cache, key);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        CHANNELS.computeIfPresent(channel, (c, buses) -> {
+            buses.remove(this);
+            return buses.isEmpty() ? null : buses;
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package com.jfahey.notesdemo.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Read-through caches of notes (with their content) by id, and of each user's
+ * full note listing. Both are {@link TinyLfuCache}s weighed by the approximate
+ * heap size of the note text, so a few large notes can't crowd out memory.
+ * <p>
+ * Cached notes are private copies: callers always get a fresh detached copy,
+ * which they may change without affecting the cache. Changes to notes evict
+ * them, and bump their owner's listing version, once committed
+ * (see {@link #onNoteChanged}). Listings are cached per version, so a
+ * listing loaded while the user's notes changed is never served afterwards.
+ * <p>
+ * Invalidations are also published on the {@link CacheInvalidationBus}, so other
+ * instances drop their copies too.
+ */
+@Component
+public class NoteCache implements MeterBinder {
+
+    /** Rough per-note overhead (object headers, fields, timestamps) on top of its text. */
+    private static final long NOTE_OVERHEAD_BYTES = 128;
+
+    static final String NOTES = "notes";
+    static final String LISTINGS = "noteListings";
+
+    private final CacheInvalidationBus invalidationBus;
+    private final TinyLfuCache<Long, Note> notes;
+    private final TinyLfuCache<UserListing, List<Note>> listings;
+    private final Map<String, Long> listingVersions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    public NoteCache(
+        CacheInvalidationBus invalidationBus,
+        @Value("${app.notes.cache.maxsize:10000}") long maximumSize,
+        @Value("${app.notes.cache.maxweightbytes:67108864}") long maximumWeightBytes,
+        @Value("${app.notes.listcache.maxsize:1000}") long listingMaximumSize,
+        @Value("${app.notes.listcache.maxweightbytes:33554432}") long listingMaximumWeightBytes) {
+
+        this.notes = new TinyLfuCache<>(maximumSize, maximumWeightBytes, NoteCache::weigh);
+        this.listings = new TinyLfuCache<>(listingMaximumSize, listingMaximumWeightBytes,
+            list -> list.stream().mapToLong(NoteCache::weigh).sum());
+
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(NOTES, key -> {
+            if (key == null) {
+                notes.invalidateAll();
+            } else {
+                notes.invalidate(Long.valueOf(key));
+            }
+        });
+        invalidationBus.subscribe(LISTINGS, key -> {
+            if (key == null) {
+                invalidateListings();
+            } else {
+                invalidateListing(key);
+            }
+        });
+    }
+
+    /**
+     * @param loader loads the note with its content, or returns <code>null</code> if there is none
+     * @return a copy of the note, or <code>null</code>
+     */
+    public Note get(long id, LongFunction<Note> loader) {
+        Note note = notes.get(id, key -> copy(loader.apply(key)));
+        return note == null ? null : new Note(note);
+    }
+
+    /**
+     * @return a copy of the note if cached, or <code>null</code>; the lookup isn't counted as a use
+     */
+    public Note peek(long id) {
+        Note note = notes.peek(id);
+        return note == null ? null : new Note(note);
+    }
+
+    /**
+     * @param loader loads the user's notes with their content
+     * @return copies of the user's notes
+     */
+    public List<Note> getListing(String username, Function<String, List<Note>> loader) {
+        UserListing key = new UserListing(username, listingVersions.getOrDefault(username, 0L));
+        List<Note> listing = listings.get(key, k -> copy(loader.apply(k.username())));
+        return copy(listing);
+    }
+
+    /**
+     * Evicts a changed, created or deleted note, and outdates its owner's listing,
+     * here and on the other instances.
+     */
+    public void invalidate(long id, String username) {
+        notes.invalidate(id);
+        invalidateListing(username);
+        invalidationBus.publish(NOTES, Long.toString(id));
+        invalidationBus.publish(LISTINGS, username);
+    }
+
+    /**
+     * Evict a changed note once the transaction that changed it completes: evicting
+     * any earlier would let a concurrent read cache the row as it was before the commit.
+     * Also after a rollback, in case the transaction itself read (and cached) its
+     * uncommitted changes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onNoteChanged(NoteChangedEvent event) {
+        invalidate(event.id(), event.username());
+    }
+
+    public void invalidateAll() {
+        notes.invalidateAll();
+        invalidateListings();
+        invalidationBus.publish(NOTES, null);
+        invalidationBus.publish(LISTINGS, null);
+    }
+
+    private void invalidateListing(String username) {
+        Long previous = listingVersions.put(username, versionSequence.incrementAndGet());
+        listings.invalidate(new UserListing(username, previous == null ? 0L : previous));
+    }
+
+    private void invalidateListings() {
+        listings.invalidateAll();
+        listingVersions.clear();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new TinyLfuCacheMetrics(notes, "notes", Tags.empty()).bindTo(registry);
+        new TinyLfuCacheMetrics(listings, "noteListings", Tags.empty()).bindTo(registry);
+    }
+
+    private static long weigh(Note note) {
+        String title = note.getTitle();
+        String content = note.getContent();
+        return NOTE_OVERHEAD_BYTES + 2L * ((title == null ? 0 : title.length()) + (content == null ? 0 : content.length()));
+    }
+
+    private static Note copy(Note note) {
+        return note == null ? null : new Note(note);
+    }
+
+    private static List<Note> copy(List<Note> notes) {
+        List<Note> copies = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            copies.add(new Note(note));
+        }
+        return copies;
+    }
+
+    private record UserListing(String username, long version) {}
+}
@@ -0,0 +1,477 @@
+package com.jfahey.notesdemo.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Concurrent cache bounded both in number of entries and in total weight
+ * (e.g. bytes, as given by a weigher), with W-TinyLFU eviction:
+ * <ul>
+ * <li>new entries go into a small LRU window (1% of the cache), which absorbs bursts;</li>
+ * <li>entries leaving the window are only admitted into the main space if they
+ * have been used more often (as estimated by a {@link FrequencySketch}) than
+ * the entry they would push out; otherwise they are dropped. One-off reads,
+ * such as a scan over every key, therefore can't flush out frequently used entries;</li>
+ * <li>the main space is a segmented LRU: entries used again while on probation
+ * move to a protected segment (80% of the main space).</li>
+ * </ul>
+ * Reads don't lock: entries are looked up in a concurrent map, and the access
+ * (the sketch increment, and the LRU move on a hit) is recorded in a read
+ * buffer, one of several picked by thread. The buffers are replayed under the
+ * lock by the next write, or by a reader finding its buffer full if the lock is
+ * free; otherwise that access is dropped, which only makes the recency and
+ * frequency estimates slightly less precise. Writes take the lock for constant
+ * time bookkeeping; values are loaded outside of it. A value loaded while its
+ * key was invalidated is returned but not cached, as it may predate the
+ * invalidation: invalidations are counted per stripe of keys, so loads of
+ * other keys are unaffected. Invalidating a key doesn't wait for the lock
+ * unless the key is cached.
+ */
+public class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    /** Segment of a node no longer in the cache, whose buffered reads are ignored. */
+    private static final int REMOVED = -1;
+
+    private static final int INVALIDATION_STRIPES = 64;
+    private static final int READ_BUFFERS =
+        Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final ReadBuffer<K, V>[] readBuffers = new ReadBuffer[READ_BUFFERS];
+    private final Segment<K, V> window = new Segment<>();
+    private final Segment<K, V> probation = new Segment<>();
+    private final Segment<K, V> protectedSegment = new Segment<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final long windowMaximumSize;
+    private final long windowMaximumWeight;
+    private final long protectedMaximumWeight;
+    private final ToLongFunction<V> weigher;
+
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+    private volatile long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    public TinyLfuCache(long maximumSize, long maximumWeight, ToLongFunction<V> weigher) {
+        if (maximumSize <= 0 || maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumSize and maximumWeight must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximumSize = Math.max(1, maximumSize / 100);
+        this.windowMaximumWeight = Math.max(1, maximumWeight / 100);
+        this.protectedMaximumWeight = (maximumWeight - windowMaximumWeight) * 4 / 5;
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maximumSize);
+        for (int i = 0; i < READ_BUFFERS; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * @return the cached value, or <code>null</code> if absent
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            afterRead(key, null);
+            return null;
+        }
+        hits.increment();
+        V value = node.value;
+        afterRead(key, node);
+        return value;
+    }
+
+    /**
+     * @return the cached value, or else the value from the loader, cached unless <code>null</code>
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long stamp = invalidations.get(stripe(key));
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value, stamp);
+        }
+        return value;
+    }
+
+    /**
+     * @return the cached value, or <code>null</code> if absent, without counting as a use
+     */
+    public V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, -1);
+    }
+
+    public void invalidate(K key) {
+        // counted before removing, so a load racing with it either sees the count or is removed
+        invalidations.incrementAndGet(stripe(key));
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            // unless evicted meanwhile
+            if (node.segment != REMOVED) {
+                segment(node).remove(node);
+                node.segment = REMOVED;
+                weight -= node.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+                invalidations.incrementAndGet(i);
+            }
+            // by segment, as invalidate() may have taken a node out of the map but not yet unlinked it
+            window.markRemoved();
+            probation.markRemoved();
+            protectedSegment.markRemoved();
+            data.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @param stamp the key's invalidation count when loading started, or -1 to cache unconditionally */
+    private void put(K key, V value, long stamp) {
+        long valueWeight = weigher.applyAsLong(value);
+        lock.lock();
+        try {
+            drainReadBuffers();
+            int stripe = stripe(key);
+            if (stamp >= 0 && stamp != invalidations.get(stripe)) {
+                return;
+            }
+            puts.increment();
+            Node<K, V> node = data.get(key);
+            if (valueWeight > maximumWeight - windowMaximumWeight) {
+                // could never be admitted into the main space
+                if (node != null) {
+                    evict(node);
+                }
+                return;
+            }
+            if (node != null) {
+                segment(node).weight += valueWeight - node.weight;
+                weight += valueWeight - node.weight;
+                node.value = value;
+                node.weight = valueWeight;
+                onAccess(node);
+            } else {
+                Node<K, V> added = new Node<>(key, value, valueWeight);
+                // checked again atomically with the insert, which a concurrent invalidate() waits for
+                node = data.compute(key, (k, current) ->
+                    stamp >= 0 && stamp != invalidations.get(stripe) ? current : added);
+                if (node != added) {
+                    return;
+                }
+                window.addLast(node);
+                weight += valueWeight;
+            }
+            evictEntries();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a read in the thread's buffer. If it is full, replay the buffers
+     * along with this read, unless another thread holds the lock.
+     * @param node the entry read, or <code>null</code> on a miss
+     */
+    private void afterRead(K key, Node<K, V> node) {
+        ReadBuffer<K, V> buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFERS - 1)];
+        if (buffer.offer(key, node) || !lock.tryLock()) {
+            return;
+        }
+        try {
+            drainReadBuffers();
+            onRead(key, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds the lock. */
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+    }
+
+    /** Caller holds the lock. */
+    private void onRead(K key, Node<K, V> node) {
+        sketch.increment(key);
+        if (node != null && node.segment != REMOVED) {
+            onAccess(node);
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.segment = PROTECTED;
+                protectedSegment.addLast(node);
+                // the protected segment's least recently used entries go back on probation
+                while (protectedSegment.weight > protectedMaximumWeight && protectedSegment.size > 1) {
+                    Node<K, V> demoted = protectedSegment.first();
+                    protectedSegment.remove(demoted);
+                    demoted.segment = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            default -> protectedSegment.moveToLast(node);
+        }
+    }
+
+    private void evictEntries() {
+        while (window.size > windowMaximumSize || window.weight > windowMaximumWeight) {
+            Node<K, V> candidate = window.first();
+            window.remove(candidate);
+            candidate.segment = PROBATION;
+            probation.addLast(candidate);
+            admit(candidate);
+        }
+        // the main space may also be over its bounds after a value grew
+        while ((data.size() > maximumSize || weight > maximumWeight) && data.size() > 0) {
+            Node<K, V> victim = probation.first();
+            if (victim == null) {
+                victim = protectedSegment.first();
+            }
+            if (victim == null) {
+                victim = window.first();
+            }
+            evict(victim);
+        }
+    }
+
+    /** Keep the candidate out of the window if it is used more often than the entries it displaces. */
+    private void admit(Node<K, V> candidate) {
+        long mainMaximumSize = maximumSize - windowMaximumSize;
+        long mainMaximumWeight = maximumWeight - windowMaximumWeight;
+        while (probation.size + protectedSegment.size > mainMaximumSize
+            || probation.weight + protectedSegment.weight > mainMaximumWeight) {
+
+            // the candidate was just added last, so it is first only when alone on probation
+            Node<K, V> victim = probation.first();
+            if (victim == candidate) {
+                victim = null;
+            }
+            if (victim == null) {
+                victim = protectedSegment.first();
+            }
+            if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                evict(candidate);
+                return;
+            }
+            evict(victim);
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        // the key may have been invalidated and cached again since
+        data.remove(node.key, node);
+        segment(node).remove(node);
+        node.segment = REMOVED;
+        weight -= node.weight;
+        evictions.increment();
+        evictionWeight.add(node.weight);
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private Segment<K, V> segment(Node<K, V> node) {
+        return switch (node.segment) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            default -> protectedSegment;
+        };
+    }
+
+    public long size() {
+        return data.size();
+    }
+
+    public long weight() {
+        return weight;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long evictionWeight() {
+        return evictionWeight.sum();
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        long weight;
+        int segment = WINDOW;
+        Node<K, V> previous;
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Bounded buffer of reads (key, and entry on a hit) filled by any number of
+     * threads without locking, and drained under the cache's lock.
+     */
+    private static final class ReadBuffer<K, V> {
+
+        private static final int SIZE = 16;
+
+        private final AtomicReferenceArray<K> keys = new AtomicReferenceArray<>(SIZE);
+        private final AtomicReferenceArray<Node<K, V>> nodes = new AtomicReferenceArray<>(SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        private volatile long reads;
+
+        /** @return <code>false</code> if the buffer is full */
+        boolean offer(K key, Node<K, V> node) {
+            long write = writes.get();
+            if (write - reads >= SIZE || !writes.compareAndSet(write, write + 1)) {
+                return false;
+            }
+            int index = (int) write & (SIZE - 1);
+            nodes.lazySet(index, node);
+            // the key is published last: a drain stops at a slot whose key isn't set yet
+            keys.lazySet(index, key);
+            return true;
+        }
+
+        /** Caller holds the cache's lock. */
+        void drainTo(TinyLfuCache<K, V> cache) {
+            long read = reads;
+            long write = writes.get();
+            while (read < write) {
+                int index = (int) read & (SIZE - 1);
+                K key = keys.get(index);
+                if (key == null) {
+                    break;
+                }
+                Node<K, V> node = nodes.get(index);
+                keys.lazySet(index, null);
+                nodes.lazySet(index, null);
+                cache.onRead(key, node);
+                read++;
+            }
+            reads = read;
+        }
+    }
+
+    /** Doubly linked list of entries, from least to most recently used. */
+    private static final class Segment<K, V> {
+
+        // sentinel, with a null key
+        private final Node<K, V> head = new Node<>(null, null, 0);
+        long size;
+        long weight;
+
+        Segment() {
+            head.previous = head;
+            head.next = head;
+        }
+
+        Node<K, V> first() {
+            return head.next == head ? null : head.next;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.previous = head.previous;
+            node.next = head;
+            head.previous.next = node;
+            head.previous = node;
+            size++;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            size--;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            remove(node);
+            addLast(node);
+        }
+
+        /** Flags every entry as removed, then empties the list. */
+        void markRemoved() {
+            for (Node<K, V> node = head.next; node != head; node = node.next) {
+                node.segment = REMOVED;
+            }
+            clear();
+        }
+
+        void clear() {
+            head.previous = head;
+            head.next = head;
+            size = 0;
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jfahey.notesdemo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publishes the standard <code>cache.*</code> meters (gets, puts, evictions, size)
+ * for a {@link TinyLfuCache}, plus its weight, the weight evicted and its hit ratio.
+ */
+public class TinyLfuCacheMetrics extends CacheMeterBinder<TinyLfuCache<?, ?>> {
+
+    public TinyLfuCacheMetrics(TinyLfuCache<?, ?> cache, String cacheName, Iterable<Tag> tags) {
+        super(cache, cacheName, tags);
+    }
+
+    @Override
+    protected Long size() {
+        TinyLfuCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        TinyLfuCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        TinyLfuCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        TinyLfuCache<?, ?> cache = getCache();
+        return cache == null ? null : cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        TinyLfuCache<?, ?> cache = getCache();
+        return cache == null ? 0 : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        TinyLfuCache<?, ?> cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        Gauge.builder("cache.weight", cache, TinyLfuCache::weight)
+            .tags(getTagsWithCacheName())
+            .description("The total weight of the entries in the cache")
+            .register(registry);
+        FunctionCounter.builder("cache.eviction.weight", cache, TinyLfuCache::evictionWeight)
+            .tags(getTagsWithCacheName())
+            .description("The total weight of the entries evicted from the cache")
+            .register(registry);
+        Gauge.builder("cache.hit.ratio", cache, TinyLfuCacheMetrics::hitRatio)
+            .tags(getTagsWithCacheName())
+            .description("The share of lookups served from the cache")
+            .register(registry);
+    }
+
+    private static double hitRatio(TinyLfuCache<?, ?> cache) {
+        long hits = cache.hitCount();
+        long lookups = hits + cache.missCount();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+}
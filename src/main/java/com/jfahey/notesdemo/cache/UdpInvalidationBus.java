@@ -0,0 +1,248 @@
+package com.jfahey.notesdemo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * {@link CacheInvalidationBus} between instances over UDP: every invalidation
+ * is sent as a datagram to each configured peer (<code>app.cache.bus.udp.peers</code>),
+ * which works across hosts as well as between instances on one host's loopback
+ * interface, without needing multicast routing.
+ * <p>
+ * Datagrams can be lost, so each instance numbers the invalidations it sends
+ * and also sends its latest number every <code>app.cache.bus.udp.heartbeatms</code>.
+ * A receiver that finds a number missing (or first hears from an instance that
+ * has already sent invalidations) can't know which entries are stale, so it
+ * drops every cached entry. Lost invalidations therefore leave an instance
+ * serving stale data for at most about one heartbeat interval.
+ * <p>
+ * The socket listens on one address (<code>app.cache.bus.udp.bind</code>, the
+ * loopback interface by default) and datagrams are only accepted from the
+ * configured peers. With a shared secret (<code>app.cache.bus.udp.secret</code>)
+ * every datagram is also signed with HMAC-SHA256 and unsigned or wrongly signed
+ * ones are dropped, since source addresses of datagrams can be forged.
+ */
+public class UdpInvalidationBus extends AbstractInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(UdpInvalidationBus.class);
+
+    private static final byte FORMAT = 1;
+    private static final byte INVALIDATION = 0;
+    private static final byte HEARTBEAT = 1;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    private final UUID origin = UUID.randomUUID();
+    private final List<InetSocketAddress> peers;
+    private final Set<InetSocketAddress> acceptedSources;
+    /** Signing key, or null when datagrams aren't signed. */
+    private final SecretKeySpec signingKey;
+    /** Guarded by this; signs sent datagrams. */
+    private final Mac signer;
+    private final DatagramSocket socket;
+    private final ScheduledExecutorService heartbeat;
+
+    /** Guarded by this; number of the last invalidation sent. */
+    private long sequence;
+
+    /** Only used by the receiver thread: number of the last invalidation heard from each instance. */
+    private final Map<UUID, Long> lastReceived = new HashMap<>();
+
+    /**
+     * @param bind address to listen on, and send from
+     * @param secret key datagrams are signed with, shared by all instances; null
+     * or empty to send and accept unsigned datagrams
+     */
+    public UdpInvalidationBus(InetSocketAddress bind, List<InetSocketAddress> peers, byte[] secret, long heartbeatMs) {
+        this.peers = List.copyOf(peers);
+        this.acceptedSources = Set.copyOf(peers);
+        this.signingKey = secret == null || secret.length == 0 ? null : new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.signer = signingKey == null ? null : newMac();
+        if (signingKey == null) {
+            logger.warn("Cache invalidations are exchanged unsigned, set app.cache.bus.udp.secret to sign them");
+        }
+        try {
+            this.socket = new DatagramSocket(bind);
+        } catch (SocketException e) {
+            throw new UncheckedIOException("Could not listen for cache invalidations on UDP " + bind, e);
+        }
+        Thread receiver = new Thread(this::receive, "cache-invalidation-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "cache-invalidation-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        logger.info("Exchanging cache invalidations on UDP {} with {}", socket.getLocalSocketAddress(), this.peers);
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void publish(String cache, String key) {
+        sequence++;
+        send(encode(INVALIDATION, sequence, cache, key));
+    }
+
+    private synchronized void sendHeartbeat() {
+        send(encode(HEARTBEAT, sequence, null, null));
+    }
+
+    private void send(byte[] message) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(message, message.length, peer));
+            } catch (IOException e) {
+                // the receiver notices the gap in numbers and drops its whole cache
+                logger.warn("Could not send cache invalidation to {}: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+    private byte[] encode(byte type, long number, String cache, String key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeByte(type);
+            out.writeLong(origin.getMostSignificantBits());
+            out.writeLong(origin.getLeastSignificantBits());
+            out.writeLong(number);
+            if (type == INVALIDATION) {
+                out.writeUTF(cache);
+                out.writeBoolean(key != null);
+                if (key != null) {
+                    out.writeUTF(key);
+                }
+            }
+            if (signer != null) {
+                signer.update(bytes.toByteArray());
+                out.write(signer.doFinal());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign cache invalidations", e);
+        }
+    }
+
+    /**
+     * @return length of the message without its signature, or -1 if it isn't
+     * correctly signed
+     */
+    private int verify(Mac verifier, byte[] data, int length) {
+        if (verifier == null) {
+            return length;
+        }
+        if (length < MAC_LENGTH) {
+            return -1;
+        }
+        int messageLength = length - MAC_LENGTH;
+        verifier.update(data, 0, messageLength);
+        byte[] expected = verifier.doFinal();
+        return MessageDigest.isEqual(expected, Arrays.copyOfRange(data, messageLength, length)) ? messageLength : -1;
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[2048];
+        Mac verifier = signingKey == null ? null : newMac();
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+                SocketAddress source = packet.getSocketAddress();
+                if (!acceptedSources.contains(source)) {
+                    logger.warn("Dropped cache invalidation from {}, which isn't a configured peer", source);
+                    continue;
+                }
+                int length = verify(verifier, packet.getData(), packet.getLength());
+                if (length < 0) {
+                    logger.warn("Dropped cache invalidation from {} with an invalid signature", source);
+                    continue;
+                }
+                handle(new DataInputStream(new ByteArrayInputStream(packet.getData(), 0, length)));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    logger.warn("Dropped malformed cache invalidation from {}", packet.getSocketAddress(), e);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to apply cache invalidation", e);
+            }
+        }
+    }
+
+    private void handle(DataInputStream in) throws IOException {
+        if (in.readByte() != FORMAT) {
+            return;
+        }
+        byte type = in.readByte();
+        UUID sender = new UUID(in.readLong(), in.readLong());
+        long number = in.readLong();
+        if (sender.equals(origin)) {
+            return;
+        }
+
+        Long last = lastReceived.get(sender);
+        // the number of the last invalidation received before this one, if none was lost
+        long expected = type == INVALIDATION ? number - 1 : number;
+        if (last == null ? expected > 0 : expected > last) {
+            logger.warn("Missed cache invalidations from {}, dropping all cached entries", sender);
+            deliverAll();
+        }
+        if (last == null || number > last) {
+            lastReceived.put(sender, number);
+        }
+
+        if (type == INVALIDATION) {
+            String cache = in.readUTF();
+            String key = in.readBoolean() ? in.readUTF() : null;
+            deliver(cache, key);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeat.shutdownNow();
+        socket.close();
+    }
+}
@@ -1,14 +1,20 @@
 package com.jfahey.notesdemo.controller;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,7 +22,10 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.jfahey.notesdemo.dto.LoginRequest;
 import com.jfahey.notesdemo.dto.RegisterRequest;
+import com.jfahey.notesdemo.ratelimit.LoginRateLimiter;
 import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+import com.jfahey.notesdemo.security.exception.TooManyRequestsException;
 import com.jfahey.notesdemo.service.AuthService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -35,18 +44,41 @@ public class AuthApi {
     
     @Autowired 
     private JwtProvider jwtProvider;
+
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
      
+    /**
+     * Login is asynchronous: the request thread is released while the password
+     * is checked on the hashing executor. Attempts over the rate limit are
+     * refused with 429 before the user is even looked up; attempts that don't
+     * fail on their credentials are reported back to the rate limiter, which
+     * only holds failures against the username. The client address is
+     * the connection's, or the forwarded one if <code>server.forward-headers-strategy</code> is set.
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody @Valid LoginRequest request) {
-
-        try {
-            Authentication authentication = authService.login(request);
-
-            return jwtProvider.getLoginResponseFromAuth(authentication);
-             
-        } catch (BadCredentialsException ex) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
+    public CompletableFuture<ResponseEntity<?>> login(
+        @RequestBody @Valid LoginRequest request, HttpServletRequest httpRequest) {
+
+        String clientAddress = httpRequest.getRemoteAddr();
+        long retryAfterMs = loginRateLimiter.tryAcquire(clientAddress, request.getUsername());
+        if (retryAfterMs > 0)
+            throw new TooManyRequestsException("Too many login attempts, retry later.",
+                TimeUnit.MILLISECONDS.toSeconds(retryAfterMs + 999));
+
+        return authService.login(request)
+            .<ResponseEntity<?>>thenApply(auth -> {
+                ResponseEntity<?> response = jwtProvider.getLoginResponseFromAuth(auth);
+                loginRateLimiter.release(clientAddress, request.getUsername());
+                return response;
+            })
+            .exceptionally(ex -> {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof BadCredentialsException)
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+                loginRateLimiter.release(clientAddress, request.getUsername());
+                throw new CompletionException(cause);
+            });
     }
 
     @PostMapping("/register")
@@ -94,4 +126,18 @@ public class AuthApi {
 
         return resp;
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequests(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+            .body(e.getMessage());
+    }
+
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<String> handleServerBusy(ServerBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(e.getMessage());
+    }
 }
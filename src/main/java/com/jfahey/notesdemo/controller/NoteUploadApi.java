@@ -0,0 +1,177 @@
+package com.jfahey.notesdemo.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteUploadRequest;
+import com.jfahey.notesdemo.dto.NoteUploadStatus;
+import com.jfahey.notesdemo.dto.NoteVersion;
+import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.service.NotesService;
+import com.jfahey.notesdemo.upload.NoteUpload;
+import com.jfahey.notesdemo.upload.NoteUploadException;
+import com.jfahey.notesdemo.upload.NoteUploadStore;
+
+import jakarta.validation.Valid;
+
+/**
+ * Chunked, resumable upload of large note content, as an alternative to sending
+ * it inline in a JSON request body:
+ * <ol>
+ * <li><code>POST /notes/uploads</code> opens an upload for a new or existing note;</li>
+ * <li><code>PUT /notes/uploads/{id}?offset=n</code> appends a chunk of UTF-8 text
+ * (the raw request body), starting at byte <code>n</code>;</li>
+ * <li><code>GET /notes/uploads/{id}</code> tells how much was received, to resume from;</li>
+ * <li><code>POST /notes/uploads/{id}/commit</code> stores the content in the note in one transaction.</li>
+ * </ol>
+ * Chunks are streamed to disk as they arrive (see {@link NoteUploadStore}).
+ */
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+@RestController
+@RequestMapping("/notes/uploads")
+public class NoteUploadApi {
+
+    @Autowired
+    private NoteUploadStore uploadStore;
+
+    @Autowired
+    private NotesService notesService;
+
+    @PostMapping
+    public ResponseEntity<NoteUploadStatus> create(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestBody @Valid NoteUploadRequest request) throws IOException {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        if(request.getNoteId() == null && request.getTitle() == null)
+            return ResponseEntity.badRequest().build();
+
+        if(request.getNoteId() != null
+            && notesService.getNoteVersion(request.getNoteId(), userDetails.getUsername()).isEmpty())
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        NoteUpload upload = uploadStore.create(userDetails.getUsername(), request.getTitle(), request.getNoteId());
+        return ResponseEntity.created(URI.create("/notes/uploads/" + upload.getId())).body(status(upload));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<NoteUploadStatus> get(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String uploadId) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        return ResponseEntity.ok().body(status(uploadStore.get(uploadId, userDetails.getUsername())));
+    }
+
+    /**
+     * Append the request body to the upload.
+     * @param offset number of bytes received before this chunk, as reported by the upload's status
+     */
+    @PutMapping("/{uploadId}")
+    public ResponseEntity<NoteUploadStatus> append(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String uploadId,
+        @RequestParam long offset,
+        InputStream chunk) throws IOException {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        return ResponseEntity.ok().body(
+            status(uploadStore.append(uploadId, userDetails.getUsername(), offset, chunk)));
+    }
+
+    /**
+     * Store the uploaded content in the note: a new note is created (201), or the
+     * existing note's content replaced (200). The upload is closed afterwards.
+     * Only a {@link NoteSummary} is sent back, with the note's ETag: the content
+     * can be far larger than a note written inline, and the client has it already.
+     */
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<NoteSummary> commit(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String uploadId) throws IOException {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        String username = userDetails.getUsername();
+        NoteUpload upload = uploadStore.get(uploadId, username);
+        // uploads may exceed the inline content limit; every character took at least one uploaded byte
+        long maxContentLength = uploadStore.getMaxBytes();
+        if(upload.getNoteId() == null) {
+            Note savedNote = uploadStore.commit(uploadId, username,
+                (committed, content) -> notesService.saveNote(
+                    new Note(committed.getTitle(), username, content), maxContentLength));
+            return ResponseEntity.created(URI.create("/notes/get/" + savedNote.getId()))
+                .eTag(NoteVersion.of(savedNote).getETag())
+                .body(NoteSummary.of(savedNote));
+        }
+
+        Optional<Note> updatedNote = uploadStore.commit(uploadId, username,
+            (committed, content) -> notesService.updateNote(committed.getNoteId(), username, maxContentLength, note -> {
+                if(committed.getTitle() != null)
+                    note.setTitle(committed.getTitle());
+                note.setContent(content);
+                note.setLastUpdated(LocalDateTime.now());
+            }));
+        return updatedNote
+            .map(note -> ResponseEntity.ok().eTag(NoteVersion.of(note).getETag()).body(NoteSummary.of(note)))
+            .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> delete(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String uploadId) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        uploadStore.remove(uploadId, userDetails.getUsername());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Rejected uploads and chunks. When the server is too busy to take a chunk,
+     * the client is asked to retry it shortly.
+     */
+    @ExceptionHandler(NoteUploadException.class)
+    public ResponseEntity<String> handleUploadException(NoteUploadException e) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+        if(e.getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        return response.body(e.getMessage());
+    }
+
+    private NoteUploadStatus status(NoteUpload upload) {
+        return new NoteUploadStatus(upload.getId(), upload.getNoteId(), upload.getTitle(), upload.getSize(),
+            uploadStore.getMaxBytes(), uploadStore.getMaxChunkBytes());
+    }
+}
@@ -1,33 +1,69 @@
 package com.jfahey.notesdemo.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AnonymousAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jfahey.notesdemo.dto.CursorPage;
+import com.jfahey.notesdemo.dto.NoteBatchRequest;
+import com.jfahey.notesdemo.dto.NoteBatchResult;
+import com.jfahey.notesdemo.dto.NoteChangeCursor;
+import com.jfahey.notesdemo.dto.NoteChanges;
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+import com.jfahey.notesdemo.dto.NoteCursor;
+import com.jfahey.notesdemo.dto.NoteDelta;
 import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.dto.NoteSearchResult;
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteVersion;
 import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.security.exception.PreconditionFailedException;
 import com.jfahey.notesdemo.security.exception.ResourceNotFoundException;
 import com.jfahey.notesdemo.service.NotesService;
+import com.jfahey.notesdemo.sync.NoteEventHub;
 
 import jakarta.validation.Valid;
 
@@ -36,9 +72,20 @@ import jakarta.validation.Valid;
 @RequestMapping("/notes")
 public class NotesApi {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     @Autowired
     private NotesService notesService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NoteEventHub noteEventHub;
+
     @PostMapping
     public ResponseEntity<Note> create(
         @AuthenticationPrincipal UserDetails userDetails,
@@ -57,95 +104,465 @@ public class NotesApi {
         return ResponseEntity.created(noteURI).body(savedNote);
     }
 
+    /**
+     * Get a note by id. Supports conditional requests: when the client's
+     * <code>If-None-Match</code> ETag (or <code>If-Modified-Since</code> date)
+     * is still current, 304 is returned without loading the note.
+     */
     @GetMapping("/get/{id}")
     public ResponseEntity<Note> getNote(
         @AuthenticationPrincipal UserDetails userDetails,
-        @PathVariable @RequestBody Long id) {
+        @PathVariable @RequestBody Long id,
+        WebRequest request) {
 
-        return notesService.getNoteById(id)
-            //.filter(this::isUpdateAuthorized)
-            .filter(note -> isUpdateAuthorized(userDetails,note))
-            .map(ResponseEntity.ok()::body)
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        Optional<NoteVersion> version = notesService.getNoteVersion(id, userDetails.getUsername());
+        if(version.isEmpty())
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        if(request.checkNotModified(version.get().getETag(), version.get().getLastModified()))
+            return null;
+
+        return notesService.getNote(id, userDetails.getUsername())
+            .map(note -> {
+                NoteVersion current = NoteVersion.of(note);
+                return ResponseEntity.ok()
+                    .eTag(current.getETag())
+                    .lastModified(current.getLastModified())
+                    .body(note);
+            })
             .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
+    /**
+     * Download a note's content as UTF-8 plain text. The content is streamed from
+     * the database as it is written to the response, so memory use does not grow
+     * with the size of the note.
+     * <p>
+     * A single byte range (<code>Range: bytes=...</code>, optionally guarded by
+     * <code>If-Range</code>) is answered with 206, so large notes can be fetched
+     * in parts or resumed. Full responses are gzip-compressed when the client
+     * accepts it. Supports <code>If-None-Match</code> like {@link #getNote}.
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<StreamingResponseBody> getNoteContent(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable Long id,
+        @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+        @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        WebRequest request) throws IOException {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        Optional<NoteVersion> found = notesService.getNoteVersion(id, userDetails.getUsername());
+        if(found.isEmpty())
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        NoteVersion version = found.get();
+        if(request.checkNotModified(version.getETag(), version.getLastModified()))
+            return null;
+
+        MediaType textPlain = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+        HttpRange byteRange = requestedRange(range, ifRange, version);
+
+        if(byteRange != null) {
+            Optional<Long> size = notesService.getNoteContentSize(version);
+            if(size.isEmpty()) // deleted or changed since the version was read
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            long length = size.get();
+            long start = byteRange.getRangeStart(length);
+            long end = byteRange.getRangeEnd(length);
+            if(start >= length || end < start)
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+
+            StreamingResponseBody body = outputStream -> writeContent(version, start, end - start + 1, outputStream);
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(textPlain)
+                .contentLength(end - start + 1)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(version.getETag())
+                .lastModified(version.getLastModified())
+                .body(body);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(textPlain)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .lastModified(version.getLastModified());
+        if(!acceptsGzip(acceptEncoding))
+            return response.eTag(version.getETag())
+                .body(outputStream -> writeContent(version, 0, -1, outputStream));
+
+        // the compressed bytes differ from the plain ones, so the ETag is only weak
+        return response.eTag("W/" + version.getETag())
+            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+            .body(outputStream -> {
+                GZIPOutputStream gzip = new GZIPOutputStream(outputStream, 8192);
+                writeContent(version, 0, -1, gzip);
+                gzip.finish();
+            });
+    }
+
+    /**
+     * Replace a note's title and content. If an <code>If-Match</code> header is
+     * sent, the update is only applied while the note is still at that ETag
+     * (otherwise 412), so concurrent editors can't silently overwrite each other.
+     */
     @PutMapping("/update/{id}")
     public ResponseEntity<Note> updateNote(
         @AuthenticationPrincipal UserDetails userDetails,
         @PathVariable @RequestBody Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @RequestBody @Valid NoteRequest noteUpdate) {
 
-        return notesService.getNoteById(id)
-            //.filter(this::isUpdateAuthorized)
-            .filter(note -> isUpdateAuthorized(userDetails,note))
-            .map(note -> {
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        return notesService.updateNote(id, userDetails.getUsername(), note -> {
+                checkPrecondition(ifMatch, note);
                 note.setTitle(noteUpdate.getTitle());
                 note.setContent(noteUpdate.getContent());
                 note.setLastUpdated(LocalDateTime.now());
-                Note newNote = notesService.saveNote(note);
-                return ResponseEntity.ok().body(newNote);
             })
+            .map(note -> ResponseEntity.ok().eTag(NoteVersion.of(note).getETag()).body(note))
             .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
+    /**
+     * Edit a note incrementally: the delta's retain/insert/delete operations are
+     * applied to the stored content, so clients only send the changed text.
+     * Honors <code>If-Match</code> like {@link #updateNote}.
+     */
+    @PatchMapping("/update/{id}")
+    public ResponseEntity<Note> patchNote(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestBody @Valid NoteDelta delta) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        try {
+            return notesService.updateNote(id, userDetails.getUsername(), note -> {
+                    checkPrecondition(ifMatch, note);
+                    note.setContent(delta.applyTo(note.getContent()));
+                    if(delta.getTitle() != null)
+                        note.setTitle(delta.getTitle());
+                    note.setLastUpdated(LocalDateTime.now());
+                })
+                .map(note -> ResponseEntity.ok().eTag(NoteVersion.of(note).getETag()).body(note))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        } catch (IllegalArgumentException e) {
+            // delta doesn't fit the stored content
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<?> deleteNote(
         @AuthenticationPrincipal UserDetails userDetails,
         @PathVariable @RequestBody Long id) {
 
-        return notesService.getNoteById(id)
-            //.filter(this::isUpdateAuthorized)
-            .filter(note -> isUpdateAuthorized(userDetails,note))
-            .map(note -> {
-                notesService.deleteNote(note);
-                return ResponseEntity.ok().body("Note successfully deleted.");
-            })
-            .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        if(userDetails == null || !notesService.deleteNote(id, userDetails.getUsername()))
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+        return ResponseEntity.ok().body("Note successfully deleted.");
     }
      
+    /**
+     * Apply a mixed list of create, update and delete operations in one request
+     * and one transaction, e.g. when syncing offline edits.
+     * @return per-operation results, in request order
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<NoteBatchResult>> batch(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestBody @Valid NoteBatchRequest batchRequest) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        return ResponseEntity.ok().body(
+            notesService.applyBatch(userDetails.getUsername(), batchRequest.getOperations()));
+    }
+
+    /**
+     * List all of the user's notes. Supports conditional requests against a
+     * collection-wide ETag, so polling clients get an empty 304 response until
+     * one of their notes is created, updated or deleted. No
+     * <code>Last-Modified</code> date is sent: deleting a note doesn't move
+     * the latest modification time, so dates alone would miss deletions.
+     */
     @GetMapping({"/", "/all"})
-    public ResponseEntity<List<Note>> list(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<List<Note>> list(
+        @AuthenticationPrincipal UserDetails userDetails,
+        WebRequest request) {
 
         if(userDetails == null)
             return new ResponseEntity<>(Collections.emptyList(), HttpStatus.OK);
 
-        return new ResponseEntity<>(notesService.getNotesByUsername(userDetails.getUsername()), HttpStatus.OK);
+        NoteCollectionVersion version = notesService.getNoteCollectionVersion(userDetails.getUsername());
+        if(request.checkNotModified(version.getETag()))
+            return null;
+
+        return ResponseEntity.ok()
+            .eTag(version.getETag())
+            .body(notesService.getNotesByUsername(userDetails.getUsername()));
     }
 
     /**
-     * Check authorization for note updates based on the user's principal
-     * from the supplied <code>UserDetails</code> session object.
-     * @param userDetails object from which authorization is determined
-     * @param note the note being checked for update authorization
+     * Keyset-paginated listing of the user's notes, newest first.
+     * @param limit maximum number of notes in the page (capped at {@value #MAX_PAGE_SIZE})
+     * @param after cursor returned as <code>nextCursor</code> by the previous page, if any
      */
-    private boolean isUpdateAuthorized(UserDetails userDetails, Note note){
-        return userDetails != null && note.getUsername().equals(userDetails.getUsername());
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<Note>> page(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+        @RequestParam(required = false) String after) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        NoteCursor cursor;
+        try {
+            cursor = after == null ? null : NoteCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = pageSize(limit);
+        // fetch one extra note to find out whether another page follows
+        List<Note> notes = notesService.getNotesByUsername(userDetails.getUsername(), cursor, pageSize + 1);
+        return ResponseEntity.ok().body(toPage(notes, pageSize, NoteCursor::of));
     }
 
     /**
-     * Check authorization for note updates by statically retrieving the currently
-     * authenticated user's principal from {@link #getCurrentUsername()}.
-     * <p>
-     * (Note: this method uses the <code>SecurityContextHolder</code> to obtain user details.)
-     * @param note the note being checked for update authorization
-     * @return <code>true</code> if currently authenticated principal is the note owner
+     * Keyset-paginated listing of the user's note summaries (no note content), newest first.
+     * Accepts the same <code>limit</code>/<code>after</code> contract as {@link #page}.
      */
-    private boolean isUpdateAuthorized(Note note){
-        Optional<String> username = getCurrentUsername();
-        return username.isPresent() && note.getUsername().equals(username.get());
+    @GetMapping("/summaries")
+    public ResponseEntity<CursorPage<NoteSummary>> summaries(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+        @RequestParam(required = false) String after) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        NoteCursor cursor;
+        try {
+            cursor = after == null ? null : NoteCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        int pageSize = pageSize(limit);
+        List<NoteSummary> summaries = notesService.getNoteSummariesByUsername(
+            userDetails.getUsername(), cursor, pageSize + 1);
+        return ResponseEntity.ok().body(toPage(summaries, pageSize, NoteCursor::of));
+    }
+
+    /**
+     * Changes to the user's notes since a cursor, for clients keeping a local copy
+     * in sync: the notes created or updated since, and the ids of those deleted.
+     * Without a cursor, or with one too old to answer, the response is a
+     * <code>reset</code>: fetch {@link #list all notes}, then continue from its cursor.
+     * @param since cursor returned by the previous call
+     * @param limit maximum number of changes (capped at {@value #MAX_PAGE_SIZE})
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<NoteChanges> changes(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestParam(required = false) String since,
+        @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        NoteChangeCursor cursor;
+        try {
+            cursor = since == null ? null : NoteChangeCursor.decode(since);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok().body(
+            notesService.getChanges(userDetails.getUsername(), cursor, pageSize(limit)));
+    }
+
+    /**
+     * Server-sent events announcing the user's note changes as they are committed:
+     * <code>create</code>, <code>update</code> and <code>delete</code> events with
+     * the note id as data, or <code>reset</code> if events may have been lost.
+     * Clients should catch up through {@link #changes} after (re)connecting and on reset.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@AuthenticationPrincipal UserDetails userDetails) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            .body(noteEventHub.subscribe(userDetails.getUsername()));
+    }
+
+    /**
+     * Full-text search over the user's note titles and content.
+     * @param q free-text query; notes containing any of its words match
+     * @param limit maximum number of results (capped at {@value #MAX_SEARCH_LIMIT})
+     * @return matching notes, most relevant first, each with a content snippet
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<NoteSearchResult>> search(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestParam String q,
+        @RequestParam(defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        if(!StringUtils.hasText(q))
+            return ResponseEntity.badRequest().build();
+
+        int resultLimit = Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        return ResponseEntity.ok().body(
+            notesService.searchNotes(userDetails.getUsername(), q, resultLimit));
+    }
+
+    /**
+     * Streaming variant of {@link #list(UserDetails, WebRequest)}: the JSON array is written
+     * incrementally while the notes are read, so memory use does not grow with
+     * the number of notes the user has.
+     */
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll(@AuthenticationPrincipal UserDetails userDetails) {
+
+        if(userDetails == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        String username = userDetails.getUsername();
+        // avoid flushing the servlet response after every single note
+        ObjectWriter noteWriter = objectMapper.writerFor(Note.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                notesService.streamNotesByUsername(username, note -> {
+                    try {
+                        noteWriter.writeValue(generator, note);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Trim a listing fetched with one extra element down to <code>pageSize</code>,
+     * and derive the next cursor from its last element if more elements follow.
+     */
+    private <T> CursorPage<T> toPage(List<T> items, int pageSize, Function<T, NoteCursor> toCursor) {
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = toCursor.apply(items.get(pageSize - 1)).encode();
+        }
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * A stale <code>If-Match</code>, or a note changed by another request
+     * between being read and written, fails the update with 412.
+     */
+    @ExceptionHandler({PreconditionFailedException.class, ObjectOptimisticLockingFailureException.class})
+    public ResponseEntity<?> handleConcurrentUpdate(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Note was modified concurrently.");
+    }
+
+    private void writeContent(NoteVersion version, long offset, long length, OutputStream output) throws IOException {
+        // headers are already sent, so all that's left is to abort the response
+        if(!notesService.writeNoteContent(version, offset, length, output))
+            throw new IOException("Note " + version.getId() + " changed while its content was sent");
+    }
+
+    /**
+     * The byte range to serve for a content request, if any. Multiple ranges
+     * and malformed headers are ignored (the full content is sent), as is the
+     * range if an <code>If-Range</code> header no longer matches the note.
+     */
+    private HttpRange requestedRange(String range, String ifRange, NoteVersion version) {
+        if(range == null || !isCurrent(ifRange, version))
+            return null;
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Evaluate an <code>If-Range</code> header (an ETag, strongly compared, or an
+     * HTTP date) against the note's current version.
+     */
+    private static boolean isCurrent(String ifRange, NoteVersion version) {
+        if(ifRange == null)
+            return true;
+        String value = ifRange.trim();
+        if(value.startsWith("\"") || value.startsWith("W/"))
+            return value.equals(version.getETag());
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            // HTTP dates have second precision
+            return version.getLastModified() >= 0 && version.getLastModified() / 1000 == date / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null)
+            return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if(parts[0].trim().equalsIgnoreCase("gzip"))
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
     }
 
     /**
-     * Statically retrieve the currently authenticated user's username from 
-     * the Authentication principal via the {@link SecurityContextHolder}.
-     * @return <code>Optional</code> containing the username, empty if no user
-     * is currently authenticated or the session is anonymous.
+     * Evaluate an <code>If-Match</code> header against the note's current ETag.
+     * @param ifMatch header value: absent, <code>*</code>, or a list of ETags
+     * @throws PreconditionFailedException if the header is present and doesn't match the note
      */
-    private Optional<String> getCurrentUsername(){
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (!(authentication instanceof AnonymousAuthenticationToken)) {
-            return Optional.of(((UserDetails) authentication.getPrincipal()).getUsername());
+    private void checkPrecondition(String ifMatch, Note note) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return;
+        String eTag = NoteVersion.of(note).getETag();
+        for (String candidate : ifMatch.split(",")) {
+            // If-Match uses strong comparison, so weak ETags never match
+            if(candidate.trim().equals(eTag))
+                return;
         }
-        return Optional.empty();
+        throw new PreconditionFailedException("Note does not match " + ifMatch);
     }
 }
@@ -0,0 +1,36 @@
+package com.jfahey.notesdemo.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. <code>nextCursor</code> is
+ * <code>null</code> once the last page has been reached.
+ */
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+
+    public CursorPage() {}
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,74 @@
+package com.jfahey.notesdemo.dto;
+
+import org.hibernate.validator.constraints.Length;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * A single create, update or delete within a {@link NoteBatchRequest}.
+ * <code>id</code> is required for updates and deletes, <code>title</code>
+ * for creates and updates. Constraints are checked per operation, so one
+ * invalid operation fails on its own rather than the whole batch.
+ */
+public class NoteBatchOperation {
+
+    public enum Type {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+
+    @NotNull
+    private Type op;
+
+    private Long id;
+
+    @Length(max = 128)
+    private String title;
+
+    @Length(max = NoteRequest.MAX_CONTENT_LENGTH)
+    private String content;
+
+    public NoteBatchOperation() {}
+
+    public NoteBatchOperation(Type op, Long id, String title, String content) {
+        this.op = op;
+        this.id = id;
+        this.title = title;
+        this.content = content;
+    }
+
+    public Type getOp() {
+        return op;
+    }
+
+    public void setOp(Type op) {
+        this.op = op;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
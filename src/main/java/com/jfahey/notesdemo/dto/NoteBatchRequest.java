@@ -0,0 +1,31 @@
+package com.jfahey.notesdemo.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public class NoteBatchRequest {
+
+    public static final int MAX_OPERATIONS = 1000;
+
+    /** Operations must be present, but are otherwise validated one by one as they are applied. */
+    @NotEmpty
+    @Size(max = MAX_OPERATIONS)
+    private List<@NotNull NoteBatchOperation> operations;
+
+    public NoteBatchRequest() {}
+
+    public NoteBatchRequest(List<NoteBatchOperation> operations) {
+        this.operations = operations;
+    }
+
+    public List<NoteBatchOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<NoteBatchOperation> operations) {
+        this.operations = operations;
+    }
+}
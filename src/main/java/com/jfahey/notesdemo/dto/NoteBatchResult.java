@@ -0,0 +1,78 @@
+package com.jfahey.notesdemo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one operation of a batch, in request order. <code>status</code>
+ * is the HTTP status the equivalent single-note request would have returned.
+ */
+public class NoteBatchResult {
+
+    private int index;
+    private NoteBatchOperation.Type op;
+    private int status;
+    private Long id;
+    private LocalDateTime lastUpdated;
+    private String error;
+
+    public NoteBatchResult() {}
+
+    public NoteBatchResult(int index, NoteBatchOperation.Type op, int status, Long id,
+        LocalDateTime lastUpdated, String error) {
+
+        this.index = index;
+        this.op = op;
+        this.status = status;
+        this.id = id;
+        this.lastUpdated = lastUpdated;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public NoteBatchOperation.Type getOp() {
+        return op;
+    }
+
+    public void setOp(NoteBatchOperation.Type op) {
+        this.op = op;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
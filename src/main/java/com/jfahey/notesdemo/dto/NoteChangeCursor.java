@@ -0,0 +1,48 @@
+package com.jfahey.notesdemo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position within a user's note change log: the number of the last change the
+ * client has seen. Handed to clients as an opaque url-safe string, like {@link NoteCursor}.
+ */
+public class NoteChangeCursor {
+
+    private static final String PREFIX = "c";
+
+    private final long sequence;
+
+    public NoteChangeCursor(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     * @throws IllegalArgumentException if the cursor is not well formed
+     */
+    public static NoteChangeCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            long sequence = Long.parseLong(raw.substring(PREFIX.length()));
+            if (sequence < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new NoteChangeCursor(sequence);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((PREFIX + sequence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
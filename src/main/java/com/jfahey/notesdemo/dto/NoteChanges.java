@@ -0,0 +1,78 @@
+package com.jfahey.notesdemo.dto;
+
+import java.util.List;
+
+import com.jfahey.notesdemo.model.Note;
+
+/**
+ * A user's note changes since a cursor: the current state of notes created or
+ * updated since, and the ids of notes deleted since. Pass <code>cursor</code>
+ * as <code>since</code> to get the following changes; <code>hasMore</code>
+ * means they're available right away.
+ * <p>
+ * When <code>reset</code> is set the changes since the client's cursor are no
+ * longer known (or it sent none): it should fetch all of its notes instead,
+ * then continue from this response's <code>cursor</code>.
+ */
+public class NoteChanges {
+
+    private List<Note> upserts;
+    private List<Long> deleted;
+    private String cursor;
+    private boolean hasMore;
+    private boolean reset;
+
+    public NoteChanges() {}
+
+    public NoteChanges(List<Note> upserts, List<Long> deleted, String cursor, boolean hasMore, boolean reset) {
+        this.upserts = upserts;
+        this.deleted = deleted;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+        this.reset = reset;
+    }
+
+    public static NoteChanges reset(String cursor) {
+        return new NoteChanges(List.of(), List.of(), cursor, false, true);
+    }
+
+    public List<Note> getUpserts() {
+        return upserts;
+    }
+
+    public void setUpserts(List<Note> upserts) {
+        this.upserts = upserts;
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+}
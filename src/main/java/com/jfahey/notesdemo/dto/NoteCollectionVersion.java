@@ -0,0 +1,47 @@
+package com.jfahey.notesdemo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Version of a user's whole note collection for conditional requests,
+ * aggregated by the database without loading any notes.
+ * <p>
+ * Updates move the latest <code>lastUpdated</code>, deletions change the
+ * count, and ids are never reused, so replacing one note with another
+ * changes the id sum even when the count stays the same. There is
+ * deliberately no modification date: deletions leave the latest
+ * <code>lastUpdated</code> where it was, so only the ETag covers them.
+ */
+public class NoteCollectionVersion {
+
+    private final long count;
+    private final LocalDateTime lastUpdated;
+    private final long idSum;
+
+    public NoteCollectionVersion(Long count, LocalDateTime lastUpdated, Long idSum) {
+        this.count = count == null ? 0 : count;
+        this.lastUpdated = lastUpdated;
+        this.idSum = idSum == null ? 0 : idSum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public long getIdSum() {
+        return idSum;
+    }
+
+    /**
+     * @return quoted strong ETag, changing whenever a note of the collection
+     * is created, updated or deleted
+     */
+    public String getETag() {
+        return "\"" + Long.toHexString(count) + "-" + Long.toHexString(idSum)
+            + "-" + Long.toHexString(NoteVersion.epochMicros(lastUpdated)) + "\"";
+    }
+}
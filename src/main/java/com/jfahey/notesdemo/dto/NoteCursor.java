@@ -0,0 +1,73 @@
+package com.jfahey.notesdemo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Objects;
+
+import com.jfahey.notesdemo.model.Note;
+
+/**
+ * Keyset position within a user's note listing, ordered by
+ * <code>(lastUpdated desc, id desc)</code>.
+ * <p>
+ * Cursors are handed to clients as opaque url-safe strings, so the
+ * encoding can change without breaking the <code>after</code> contract.
+ */
+public class NoteCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private final LocalDateTime lastUpdated;
+    private final long id;
+
+    public NoteCursor(LocalDateTime lastUpdated, long id) {
+        // the keyset comparison can't place a note without a date
+        this.lastUpdated = Objects.requireNonNull(lastUpdated, "lastUpdated");
+        this.id = id;
+    }
+
+    public static NoteCursor of(Note note) {
+        return new NoteCursor(note.getLastUpdated(), note.getId());
+    }
+
+    public static NoteCursor of(NoteSummary summary) {
+        return new NoteCursor(summary.getLastUpdated(), summary.getId());
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     * @param cursor opaque cursor string supplied by the client
+     * @return the decoded keyset position
+     * @throws IllegalArgumentException if the cursor is not well formed
+     */
+    public static NoteCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            if (split < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new NoteCursor(
+                LocalDateTime.parse(raw.substring(0, split)),
+                Long.parseLong(raw.substring(split + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        String raw = lastUpdated + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
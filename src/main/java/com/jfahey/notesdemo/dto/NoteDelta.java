@@ -0,0 +1,74 @@
+package com.jfahey.notesdemo.dto;
+
+import java.util.List;
+
+import org.hibernate.validator.constraints.Length;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Incremental edit of a note: an optional new title, plus a sequence of
+ * retain/insert/delete operations applied to the current content from its
+ * start. Content after the last operation is kept as is, so small edits to
+ * large notes only need to send the changed text.
+ */
+public class NoteDelta {
+
+    @Length(max = 128)
+    private String title;
+
+    @NotNull
+    private List<@NotNull @Valid NoteDeltaOperation> ops;
+
+    public NoteDelta() {}
+
+    public NoteDelta(String title, List<NoteDeltaOperation> ops) {
+        this.title = title;
+        this.ops = ops;
+    }
+
+    /**
+     * Apply the operations to the given content.
+     * @param content current note content (<code>null</code> is treated as empty)
+     * @return the edited content
+     * @throws IllegalArgumentException if the operations run past the end of the content
+     */
+    public String applyTo(String content) {
+        String source = content == null ? "" : content;
+        StringBuilder result = new StringBuilder(source.length());
+        int position = 0;
+        for (NoteDeltaOperation op : ops) {
+            if (op.getInsert() != null) {
+                result.append(op.getInsert());
+            } else {
+                int count = op.getRetain() != null ? op.getRetain() : op.getDelete();
+                if (count > source.length() - position) {
+                    throw new IllegalArgumentException(
+                        "Delta exceeds content length " + source.length() + " at position " + position);
+                }
+                if (op.getRetain() != null) {
+                    result.append(source, position, position + count);
+                }
+                position += count;
+            }
+        }
+        return result.append(source, position, source.length()).toString();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<NoteDeltaOperation> getOps() {
+        return ops;
+    }
+
+    public void setOps(List<NoteDeltaOperation> ops) {
+        this.ops = ops;
+    }
+}
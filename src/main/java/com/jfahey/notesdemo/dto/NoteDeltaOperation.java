@@ -0,0 +1,70 @@
+package com.jfahey.notesdemo.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * A single step of a {@link NoteDelta}: exactly one of <code>retain</code>
+ * (keep the next n characters), <code>insert</code> (add text at the current
+ * position) or <code>delete</code> (drop the next n characters).
+ */
+public class NoteDeltaOperation {
+
+    @PositiveOrZero
+    private Integer retain;
+
+    private String insert;
+
+    @PositiveOrZero
+    private Integer delete;
+
+    public NoteDeltaOperation() {}
+
+    public static NoteDeltaOperation retain(int count) {
+        NoteDeltaOperation operation = new NoteDeltaOperation();
+        operation.setRetain(count);
+        return operation;
+    }
+
+    public static NoteDeltaOperation insert(String text) {
+        NoteDeltaOperation operation = new NoteDeltaOperation();
+        operation.setInsert(text);
+        return operation;
+    }
+
+    public static NoteDeltaOperation delete(int count) {
+        NoteDeltaOperation operation = new NoteDeltaOperation();
+        operation.setDelete(count);
+        return operation;
+    }
+
+    @AssertTrue(message = "exactly one of retain, insert or delete is required")
+    public boolean isSingleOperation() {
+        int set = (retain != null ? 1 : 0) + (insert != null ? 1 : 0) + (delete != null ? 1 : 0);
+        return set == 1;
+    }
+
+    public Integer getRetain() {
+        return retain;
+    }
+
+    public void setRetain(Integer retain) {
+        this.retain = retain;
+    }
+
+    public String getInsert() {
+        return insert;
+    }
+
+    public void setInsert(String insert) {
+        this.insert = insert;
+    }
+
+    public Integer getDelete() {
+        return delete;
+    }
+
+    public void setDelete(Integer delete) {
+        this.delete = delete;
+    }
+}
@@ -6,10 +6,17 @@ import jakarta.validation.constraints.NotNull;
 
 public class NoteRequest {
 
+    /**
+     * Maximum content length accepted inline in a request body; larger
+     * content is uploaded in chunks (see <code>NoteUploadApi</code>).
+     */
+    public static final int MAX_CONTENT_LENGTH = 1024 * 1024;
+
     @NotNull 
     @Length(max = 500)
     private String title;
 
+    @Length(max = MAX_CONTENT_LENGTH)
     private String content;
 
     public NoteRequest() {}
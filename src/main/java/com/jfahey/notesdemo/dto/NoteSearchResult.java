@@ -0,0 +1,66 @@
+package com.jfahey.notesdemo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A ranked full-text search hit: the note's summary fields, its relevance
+ * score and a snippet of content around the first matching term.
+ */
+public class NoteSearchResult {
+
+    private Long id;
+    private String title;
+    private LocalDateTime lastUpdated;
+    private float score;
+    private String snippet;
+
+    public NoteSearchResult() {}
+
+    public NoteSearchResult(Long id, String title, LocalDateTime lastUpdated, float score, String snippet) {
+        this.id = id;
+        this.title = title;
+        this.lastUpdated = lastUpdated;
+        this.score = score;
+        this.snippet = snippet;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+}
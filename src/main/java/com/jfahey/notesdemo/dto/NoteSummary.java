@@ -0,0 +1,81 @@
+package com.jfahey.notesdemo.dto;
+
+import java.time.LocalDateTime;
+
+import com.jfahey.notesdemo.model.Note;
+
+/**
+ * Lightweight, read-only view of a note for list views. Built directly by
+ * repository queries so the full note content is never loaded.
+ */
+public class NoteSummary {
+
+    /** Maximum number of content characters included in the excerpt. */
+    public static final int EXCERPT_LENGTH = 120;
+
+    private Long id;
+    private String title;
+    private LocalDateTime lastUpdated;
+    private int contentLength;
+    private String excerpt;
+
+    public NoteSummary() {}
+
+    public NoteSummary(Long id, String title, LocalDateTime lastUpdated, Integer contentLength, String excerpt) {
+        this.id = id;
+        this.title = title;
+        this.lastUpdated = lastUpdated;
+        this.contentLength = contentLength == null ? 0 : contentLength;
+        this.excerpt = excerpt;
+    }
+
+    /**
+     * Summarize a note whose content is already loaded, e.g. to answer a write
+     * without sending the content back.
+     */
+    public static NoteSummary of(Note note) {
+        String content = note.getContent() == null ? "" : note.getContent();
+        return new NoteSummary(note.getId(), note.getTitle(), note.getLastUpdated(), content.length(),
+            content.substring(0, Math.min(content.length(), EXCERPT_LENGTH)));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public int getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(int contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    public void setExcerpt(String excerpt) {
+        this.excerpt = excerpt;
+    }
+}
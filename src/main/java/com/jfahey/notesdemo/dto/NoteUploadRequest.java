@@ -0,0 +1,39 @@
+package com.jfahey.notesdemo.dto;
+
+import org.hibernate.validator.constraints.Length;
+
+/**
+ * Opens a chunked upload of note content. Without a <code>noteId</code> the
+ * upload creates a note (and needs a title); with one it replaces that note's
+ * content, and its title if one is given.
+ */
+public class NoteUploadRequest {
+
+    @Length(max = 128)
+    private String title;
+
+    private Long noteId;
+
+    public NoteUploadRequest() {}
+
+    public NoteUploadRequest(String title, Long noteId) {
+        this.title = title;
+        this.noteId = noteId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+}
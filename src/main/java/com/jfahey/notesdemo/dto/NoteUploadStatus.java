@@ -0,0 +1,74 @@
+package com.jfahey.notesdemo.dto;
+
+/**
+ * State of an open chunked upload. <code>received</code> is the offset at which
+ * the next chunk must start, e.g. when resuming an interrupted upload.
+ */
+public class NoteUploadStatus {
+
+    private String id;
+    private Long noteId;
+    private String title;
+    private long received;
+    private long maxBytes;
+    private long maxChunkBytes;
+
+    public NoteUploadStatus() {}
+
+    public NoteUploadStatus(String id, Long noteId, String title, long received, long maxBytes, long maxChunkBytes) {
+        this.id = id;
+        this.noteId = noteId;
+        this.title = title;
+        this.received = received;
+        this.maxBytes = maxBytes;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public void setMaxChunkBytes(long maxChunkBytes) {
+        this.maxChunkBytes = maxChunkBytes;
+    }
+}
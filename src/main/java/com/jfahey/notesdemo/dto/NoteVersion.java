@@ -0,0 +1,70 @@
+package com.jfahey.notesdemo.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+import com.jfahey.notesdemo.model.Note;
+
+/**
+ * Version of a single note for conditional requests: its owner, plus the
+ * <code>(id, lastUpdated)</code> pair its strong ETag is derived from.
+ * Built directly by repository queries so the note content is never loaded.
+ */
+public class NoteVersion {
+
+    private final Long id;
+    private final String username;
+    private final LocalDateTime lastUpdated;
+
+    public NoteVersion(Long id, String username, LocalDateTime lastUpdated) {
+        this.id = id;
+        this.username = username;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public static NoteVersion of(Note note) {
+        return new NoteVersion(note.getId(), note.getUsername(), note.getLastUpdated());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * @return quoted strong ETag, changing whenever the note is updated
+     */
+    public String getETag() {
+        return "\"" + Long.toHexString(id == null ? 0 : id) + "-" + Long.toHexString(epochMicros(lastUpdated)) + "\"";
+    }
+
+    /**
+     * @return last modification time in epoch milliseconds, or -1 if unknown
+     */
+    public long getLastModified() {
+        return lastModified(lastUpdated);
+    }
+
+    /**
+     * Timestamps are compared at the database's microsecond precision, so
+     * a freshly saved note and its reloaded copy share the same version.
+     */
+    static long epochMicros(LocalDateTime time) {
+        if (time == null) {
+            return 0;
+        }
+        return ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), time);
+    }
+
+    static long lastModified(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,51 @@
+package com.jfahey.notesdemo.model;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA entity listener turning changes to {@link Note}s and {@link User}s into
+ * {@link NoteChangedEvent}s and {@link UserChangedEvent}s. The caches, search
+ * index and event streams that depend on these entities listen for the events
+ * rather than for the entities, each choosing the transaction phase it needs.
+ */
+@Component
+public class EntityEventPublisher {
+
+    private final ApplicationEventPublisher events;
+
+    public EntityEventPublisher(ApplicationEventPublisher events) {
+        this.events = events;
+    }
+
+    @PostPersist
+    public void onCreated(Object entity) {
+        if (entity instanceof Note note) {
+            events.publishEvent(NoteChangedEvent.created(note));
+        } else if (entity instanceof User user) {
+            events.publishEvent(new UserChangedEvent(user.getUsername()));
+        }
+    }
+
+    @PostUpdate
+    public void onUpdated(Object entity) {
+        if (entity instanceof Note note) {
+            events.publishEvent(NoteChangedEvent.updated(note));
+        } else if (entity instanceof User user) {
+            events.publishEvent(new UserChangedEvent(user.getUsername()));
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        if (entity instanceof Note note) {
+            events.publishEvent(NoteChangedEvent.deleted(note.getId(), note.getUsername()));
+        } else if (entity instanceof User user) {
+            events.publishEvent(new UserChangedEvent(user.getUsername()));
+        }
+    }
+}
@@ -1,21 +1,44 @@
 package com.jfahey.notesdemo.model;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
+import org.hibernate.annotations.DynamicUpdate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.jfahey.notesdemo.dto.NoteSummary;
+
+import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 
 @Entity
-@Table(name = "notes")
+@Table(name = "notes", indexes = {
+    // a user's notes in listing order: serves lookups by username and keyset pagination
+    // without a sort (single notes are found by primary key, then checked for their username)
+    @Index(name = "idx_notes_username_last_updated", columnList = "username, lastUpdated desc, id desc")
+})
+@EntityListeners(EntityEventPublisher.class)
+@DynamicUpdate
 public class Note {
 
     @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notes_seq")
+    @SequenceGenerator(name = "notes_seq", sequenceName = "notes_seq", allocationSize = 50)
     private Long id;
      
     @Column(nullable = false, length = 128)
@@ -24,29 +47,93 @@ public class Note {
     @Column(nullable = false, length = 50)
     private String username;
 
+    /**
+     * Stored form of the content, possibly compressed (see {@link NoteContentCodec}).
+     * Only decoded when the content is actually read.
+     * <p>
+     * Loaded lazily (the entity is bytecode enhanced at build time): fetching a note
+     * doesn't read its content unless the query asks for it (an entity graph including
+     * <code>content</code>) or the content is accessed while the note is still managed.
+     */
     @Lob
+    @Basic(fetch = FetchType.LAZY)
     @Column
     private String content;
 
+    @Transient
+    private String decodedContent;
+
+    /** Whether the content was set since the note was last saved. */
+    @Transient
+    private boolean contentModified;
+
+    /** Length of the (uncompressed) content, so summaries don't need to read it. */
+    @Column
+    private Integer contentLength;
+
+    /** Size of the content encoded as UTF-8, so byte ranges can be served without a counting pass. */
     @Column
+    private Long contentBytes;
+
+    /** Start of the content, so summaries don't need to read it. */
+    @Column(length = NoteSummary.EXCERPT_LENGTH)
+    private String excerpt;
+
+    /** Part of the listing keyset (see <code>NoteCursor</code>), so never null. */
+    @Column(nullable = false)
     private LocalDateTime lastUpdated;
+
+    /** Incremented on every update; concurrent updates of a stale copy are rejected. */
+    @Version
+    private Long version;
     
     public Note() {}
 
     public Note(String title, String username, String content){
         this.title = title;
         this.username = username;
-        this.content = content;
+        setContent(content);
         this.lastUpdated = LocalDateTime.now();
     }
 
     public Note(String title, String username, String content, LocalDateTime lastUpdated){
         this.title = title;
         this.username = username;
-        this.content = content;
+        setContent(content);
         this.lastUpdated = lastUpdated;
     }
 
+    /**
+     * Detached copy of a note whose content is loaded, sharing its (immutable) field values.
+     */
+    public Note(Note note) {
+        this.id = note.id;
+        this.title = note.title;
+        this.username = note.username;
+        this.content = note.content;
+        this.decodedContent = note.getContent();
+        this.contentLength = note.contentLength;
+        this.contentBytes = note.contentBytes;
+        this.excerpt = note.excerpt;
+        this.lastUpdated = note.lastUpdated;
+        this.version = note.version;
+    }
+
+    /** Notes created without a modification date (e.g. through setters) are dated when first saved. */
+    @PrePersist
+    void defaultLastUpdated() {
+        if (lastUpdated == null) {
+            lastUpdated = LocalDateTime.now();
+        }
+    }
+
+    /** Runs after the entity listeners, whose {@link NoteChangedEvent} checks {@link #isContentModified()}. */
+    @PostPersist
+    @PostUpdate
+    void clearContentModified() {
+        contentModified = false;
+    }
+
     public Long getId() {
         return id;
     }
@@ -72,11 +159,25 @@ public class Note {
     }
 
     public String getContent() {
-        return content;
+        if (decodedContent == null && content != null) {
+            decodedContent = NoteContentCodec.decode(content);
+        }
+        return decodedContent;
     }
 
     public void setContent(String content) {
-        this.content = content;
+        this.decodedContent = content;
+        this.contentModified = true;
+        this.content = NoteContentCodec.encode(content);
+        this.contentLength = content == null ? null : content.length();
+        this.contentBytes = content == null ? null : NoteContentCodec.utf8Length(content);
+        this.excerpt = content == null ? null
+            : content.substring(0, Math.min(content.length(), NoteSummary.EXCERPT_LENGTH));
+    }
+
+    @JsonIgnore
+    public boolean isContentModified() {
+        return contentModified;
     }
 
     public LocalDateTime getLastUpdated() {
@@ -84,6 +185,14 @@ public class Note {
     }
 
     public void setLastUpdated(LocalDateTime lastUpdated) {
-        this.lastUpdated = lastUpdated;
+        this.lastUpdated = Objects.requireNonNull(lastUpdated, "lastUpdated");
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
     }
 }
@@ -0,0 +1,89 @@
+package com.jfahey.notesdemo.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Entry of a user's note change log: the note was created or updated
+ * (<code>UPSERT</code>), or deleted (<code>DELETE</code>, a tombstone).
+ * <p>
+ * Entries are numbered per user ({@link NoteChangeFeed}), in commit order.
+ * Only the latest entry of each note is kept, so the log holds one entry per
+ * existing note plus the tombstones not yet compacted away.
+ */
+@Entity
+@Table(name = "note_changes", indexes = {
+    // reading a user's changes since a cursor, in order
+    @Index(name = "uk_note_changes_username_sequence", columnList = "username, sequence", unique = true),
+    // replacing a note's previous entry
+    @Index(name = "idx_note_changes_username_note_id", columnList = "username, noteId")
+})
+public class NoteChange {
+
+    public enum Type { UPSERT, DELETE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_changes_seq")
+    @SequenceGenerator(name = "note_changes_seq", sequenceName = "note_changes_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String username;
+
+    @Column(nullable = false)
+    private long sequence;
+
+    @Column(nullable = false)
+    private long noteId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Type type;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+
+    public NoteChange() {}
+
+    public NoteChange(String username, long sequence, long noteId, Type type, LocalDateTime changedAt) {
+        this.username = username;
+        this.sequence = sequence;
+        this.noteId = noteId;
+        this.type = type;
+        this.changedAt = changedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getNoteId() {
+        return noteId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jfahey.notesdemo.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Position of a user's note change log: the number of the last change
+ * recorded, and how far its tombstones have been compacted away. Clients
+ * whose cursor is older than that missed deletions and must sync in full.
+ */
+@Entity
+@Table(name = "note_change_feeds")
+public class NoteChangeFeed {
+
+    @Id
+    @Column(length = 50)
+    private String username;
+
+    @Column(nullable = false)
+    private long lastSequence;
+
+    @Column(nullable = false)
+    private long compactedThrough;
+
+    public NoteChangeFeed() {}
+
+    public NoteChangeFeed(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /** @return the number of the next change */
+    public long nextSequence() {
+        return ++lastSequence;
+    }
+
+    public long getCompactedThrough() {
+        return compactedThrough;
+    }
+
+    public void setCompactedThrough(long compactedThrough) {
+        this.compactedThrough = compactedThrough;
+    }
+}
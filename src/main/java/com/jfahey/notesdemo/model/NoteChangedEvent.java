@@ -0,0 +1,38 @@
+package com.jfahey.notesdemo.model;
+
+import org.hibernate.Hibernate;
+
+/**
+ * Application event for a created, changed or deleted {@link Note}, published
+ * by {@link EntityEventPublisher} whichever code path made the change. Listeners
+ * that must only see committed changes use <code>@TransactionalEventListener</code>.
+ * <p>
+ * The note is snapshotted when the change is flushed. Its content is only
+ * included if it was set, so unchanged content is never loaded or decoded.
+ *
+ * @param title the title; <code>null</code> for deletions
+ * @param content the content, if {@link #contentChanged()}
+ */
+public record NoteChangedEvent(Type type, long id, String username, String title, String content,
+    boolean contentChanged) {
+
+    public enum Type { CREATE, UPDATE, DELETE }
+
+    public static NoteChangedEvent created(Note note) {
+        return new NoteChangedEvent(Type.CREATE, note.getId(), note.getUsername(), note.getTitle(),
+            note.getContent(), true);
+    }
+
+    public static NoteChangedEvent updated(Note note) {
+        boolean contentChanged = Hibernate.isPropertyInitialized(note, "content") && note.isContentModified();
+        return new NoteChangedEvent(Type.UPDATE, note.getId(), note.getUsername(), note.getTitle(),
+            contentChanged ? note.getContent() : null, contentChanged);
+    }
+
+    /**
+     * For notes deleted by bulk statements, which don't trigger entity listeners.
+     */
+    public static NoteChangedEvent deleted(long id, String username) {
+        return new NoteChangedEvent(Type.DELETE, id, username, null, null, false);
+    }
+}
@@ -0,0 +1,201 @@
+package com.jfahey.notesdemo.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Storage format of {@link Note} content.
+ * <p>
+ * Content of at least {@value #COMPRESSION_THRESHOLD} characters is stored
+ * Deflate-compressed and base64 encoded (the column stays a character LOB),
+ * behind the {@link #MARKER} prefix. Anything without the marker, including
+ * rows written before compression was introduced, is plain content.
+ */
+public final class NoteContentCodec {
+
+    /** Content shorter than this is always stored as is. */
+    public static final int COMPRESSION_THRESHOLD = 4 * 1024;
+
+    /** Prefix of compressed content: a control character plus format version. */
+    static final String MARKER = "\u0001z1:";
+
+    private NoteContentCodec() {}
+
+    /**
+     * @return the stored form of the content: compressed if that is smaller, plain otherwise
+     */
+    public static String encode(String content) {
+        if (content == null) {
+            return null;
+        }
+        // plain content that happens to look compressed must be compressed to read back correctly
+        boolean ambiguous = content.startsWith(MARKER);
+        if (content.length() < COMPRESSION_THRESHOLD && !ambiguous) {
+            return content;
+        }
+        String encoded = MARKER + Base64.getEncoder().encodeToString(
+            deflate(content.getBytes(StandardCharsets.UTF_8)));
+        return encoded.length() < content.length() || ambiguous ? encoded : content;
+    }
+
+    /**
+     * @return the content for a stored value produced by {@link #encode(String)}
+     */
+    public static String decode(String stored) {
+        if (!isCompressed(stored)) {
+            return stored;
+        }
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(MARKER.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streaming counterpart of {@link #decode(String)}: reads the content of a stored
+     * value as it is read from the underlying reader, without holding either form
+     * of the content in memory.
+     * @param stored reader over a value produced by {@link #encode(String)}
+     */
+    public static Reader decodingReader(Reader stored) throws IOException {
+        PushbackReader reader = new PushbackReader(stored, MARKER.length());
+        char[] prefix = new char[MARKER.length()];
+        int read = 0;
+        int count;
+        while (read < prefix.length && (count = reader.read(prefix, read, prefix.length - read)) > 0) {
+            read += count;
+        }
+        if (read == prefix.length && MARKER.contentEquals(CharBuffer.wrap(prefix))) {
+            InputStream compressed = Base64.getDecoder().wrap(new AsciiInputStream(reader));
+            return new InputStreamReader(new InflaterInputStream(compressed), StandardCharsets.UTF_8);
+        }
+        reader.unread(prefix, 0, read);
+        return reader;
+    }
+
+    /**
+     * @return number of bytes the content encodes to in UTF-8, without encoding it.
+     * Unpaired surrogates count as the one byte replacement they are encoded as.
+     */
+    public static long utf8Length(String content) {
+        long bytes = 0;
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    public static boolean isCompressed(String stored) {
+        return stored != null && stored.startsWith(MARKER);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed note content");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed note content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Bytes of a reader over (base64) ASCII text. */
+    private static final class AsciiInputStream extends InputStream {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+
+        AsciiInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            for (int i = 0; i < count; i++) {
+                bytes[offset + i] = (byte) buffer[position++];
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private boolean fill() throws IOException {
+            int count = reader.read(buffer);
+            if (count < 0) {
+                return false;
+            }
+            position = 0;
+            limit = count;
+            return true;
+        }
+    }
+}
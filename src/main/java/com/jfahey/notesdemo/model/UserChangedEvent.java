@@ -0,0 +1,7 @@
+package com.jfahey.notesdemo.model;
+
+/**
+ * Application event for a created, changed or removed {@link User}, published
+ * by {@link EntityEventPublisher} whichever code path made the change.
+ */
+public record UserChangedEvent(String username) {}
@@ -0,0 +1,29 @@
+package com.jfahey.notesdemo.ratelimit;
+
+/**
+ * Throttles login attempts, before any user lookup or password hashing is
+ * done for them. The default, {@link TokenBucketLoginRateLimiter}, keeps its
+ * state in memory; declaring another <code>LoginRateLimiter</code> bean
+ * (e.g. backed by a store shared between instances) replaces it (see
+ * {@link LoginRateLimiterAutoConfiguration}).
+ */
+public interface LoginRateLimiter {
+
+    /**
+     * Records a login attempt, counting it against both its client address and
+     * its username up front, so concurrent attempts can't all get through
+     * before any of them has failed.
+     * @param clientAddress the address the attempt came from
+     * @param username the username tried, whether or not it exists
+     * @return 0 if the attempt may proceed, otherwise the milliseconds until it may be retried
+     */
+    long tryAcquire(String clientAddress, String username);
+
+    /**
+     * Records that an attempt let through by {@link #tryAcquire} didn't fail on
+     * its credentials (the login succeeded, or it was never checked), handing
+     * back what it took from the username. Only failures count against the
+     * username, so its owner logging in doesn't use up its attempts.
+     */
+    void release(String clientAddress, String username);
+}
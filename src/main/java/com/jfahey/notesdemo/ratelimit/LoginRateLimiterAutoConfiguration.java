@@ -0,0 +1,31 @@
+package com.jfahey.notesdemo.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * The default {@link TokenBucketLoginRateLimiter}, for both the servlet and the
+ * reactive application. An auto-configuration (listed in
+ * <code>META-INF/spring/...AutoConfiguration.imports</code>, so component
+ * scanning skips it) is processed after the application's own configuration,
+ * which makes backing off for an application-declared limiter reliable.
+ */
+@AutoConfiguration
+public class LoginRateLimiterAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(LoginRateLimiter.class)
+    public TokenBucketLoginRateLimiter loginRateLimiter(
+        @Value("${app.auth.ratelimit.address.burst:20}") int addressBurst,
+        @Value("${app.auth.ratelimit.address.perminute:10}") int addressPerMinute,
+        @Value("${app.auth.ratelimit.username.burst:5}") int usernameBurst,
+        @Value("${app.auth.ratelimit.username.perminute:2}") int usernamePerMinute,
+        @Value("${app.auth.ratelimit.maxkeys:100000}") int maxKeys) {
+
+        return new TokenBucketLoginRateLimiter(
+            addressBurst > 0 ? new TokenBuckets(addressBurst, addressPerMinute, maxKeys) : null,
+            usernameBurst > 0 ? new TokenBuckets(usernameBurst, usernamePerMinute, maxKeys) : null);
+    }
+}
@@ -0,0 +1,86 @@
+package com.jfahey.notesdemo.ratelimit;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * In-memory {@link LoginRateLimiter} with a {@link TokenBuckets} per client
+ * address, against password spraying from one source, and per username,
+ * against credential stuffing of one account from many sources. Usernames
+ * are compared case-insensitively so variants of one name share a bucket.
+ * <p>
+ * The address bucket is the main throttle and is charged for every attempt.
+ * The username bucket is charged up front as well, so in-flight attempts
+ * can't overrun it, but its token is handed back unless the attempt fails on
+ * its credentials, so that logging in successfully doesn't use it up.
+ * <p>
+ * A limit with a burst of 0 is disabled.
+ */
+public class TokenBucketLoginRateLimiter implements LoginRateLimiter, MeterBinder {
+
+    private final TokenBuckets byAddress;
+    private final TokenBuckets byUsername;
+    private final LongAdder addressRejections = new LongAdder();
+    private final LongAdder usernameRejections = new LongAdder();
+
+    public TokenBucketLoginRateLimiter(TokenBuckets byAddress, TokenBuckets byUsername) {
+        this.byAddress = byAddress;
+        this.byUsername = byUsername;
+    }
+
+    @Override
+    public long tryAcquire(String clientAddress, String username) {
+        long waitNanos = byAddress == null ? 0 : byAddress.tryAcquire(clientAddress);
+        if (waitNanos > 0) {
+            addressRejections.increment();
+            return toMillis(waitNanos);
+        }
+        waitNanos = byUsername == null ? 0 : byUsername.tryAcquire(username.toLowerCase(Locale.ROOT));
+        if (waitNanos > 0) {
+            usernameRejections.increment();
+            return toMillis(waitNanos);
+        }
+        return 0;
+    }
+
+    @Override
+    public void release(String clientAddress, String username) {
+        if (byUsername != null) {
+            byUsername.release(username.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, "address", byAddress, addressRejections);
+        bindTo(registry, "username", byUsername, usernameRejections);
+    }
+
+    private static void bindTo(MeterRegistry registry, String key, TokenBuckets buckets, LongAdder rejections) {
+        if (buckets == null) {
+            return;
+        }
+        FunctionCounter.builder("auth.login.ratelimit.rejected", rejections, LongAdder::sum)
+            .description("Login attempts refused by the rate limiter")
+            .tag("key", key)
+            .register(registry);
+        Gauge.builder("auth.login.ratelimit.keys", buckets, TokenBuckets::size)
+            .description("Login rate limiter buckets held in memory")
+            .tag("key", key)
+            .register(registry);
+        FunctionCounter.builder("auth.login.ratelimit.evictions", buckets, TokenBuckets::evictionCount)
+            .description("Login rate limiter buckets evicted while still in use")
+            .tag("key", key)
+            .register(registry);
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+}
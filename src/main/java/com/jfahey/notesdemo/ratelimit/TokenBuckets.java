@@ -0,0 +1,142 @@
+package com.jfahey.notesdemo.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per key: each bucket holds up to <code>burst</code> tokens
+ * and regains <code>permitsPerMinute</code> tokens a minute; an attempt takes
+ * one token, or is refused while the bucket is empty.
+ * <p>
+ * A bucket's whole state is a single timestamp (the time at which it will be
+ * full again, as in the generic cell rate algorithm), so taking a token is one
+ * compare-and-set, without locks. Keys are spread over shards, each bounded to
+ * its share of <code>maxKeys</code>. When a shard is full, buckets that have
+ * refilled are dropped first, as they are indistinguishable from new ones;
+ * only if every bucket is still in use (e.g. many addresses at once) are
+ * in-use buckets evicted, which forgets their recent attempts.
+ */
+public final class TokenBuckets {
+
+    private static final int SHARDS = 16;
+
+    private final Shard[] shards = new Shard[SHARDS];
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeysPerShard;
+    private final LongSupplier clock;
+
+    private final LongAdder evictions = new LongAdder();
+
+    public TokenBuckets(int burst, int permitsPerMinute, int maxKeys) {
+        this(burst, permitsPerMinute, maxKeys, System::nanoTime);
+    }
+
+    TokenBuckets(int burst, int permitsPerMinute, int maxKeys, LongSupplier clock) {
+        if (burst <= 0 || permitsPerMinute <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("burst, permitsPerMinute and maxKeys must be positive");
+        }
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.maxKeysPerShard = Math.max(1, maxKeys / SHARDS);
+        this.clock = clock;
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Takes a token from <code>key</code>'s bucket.
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(String key) {
+        Shard shard = shard(key);
+        AtomicLong fullAt = shard.buckets.get(key);
+        if (fullAt == null) {
+            if (shard.buckets.size() >= maxKeysPerShard) {
+                shard.makeRoom();
+            }
+            fullAt = shard.buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long base = isFull(current, now) ? now : current;
+            long next = base + intervalNanos;
+            if (next - now > burstNanos) {
+                return next - now - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire}, e.g. when the attempt it
+     * paid for turns out not to count; never fills a bucket beyond its burst.
+     */
+    public void release(String key) {
+        AtomicLong fullAt = shard(key).buckets.get(key);
+        if (fullAt == null) {
+            return;
+        }
+        while (true) {
+            long current = fullAt.get();
+            if (isFull(current, clock.getAsLong()) || fullAt.compareAndSet(current, current - intervalNanos)) {
+                return;
+            }
+        }
+    }
+
+    private Shard shard(String key) {
+        return shards[(key.hashCode() ^ (key.hashCode() >>> 16)) & (SHARDS - 1)];
+    }
+
+    private static boolean isFull(long fullAt, long now) {
+        return fullAt == Long.MIN_VALUE || fullAt - now <= 0;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            size += shard.buckets.size();
+        }
+        return size;
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private final class Shard {
+
+        final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        /** Frees at least one slot; concurrent callers let a single one do the sweep. */
+        void makeRoom() {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long now = clock.getAsLong();
+                buckets.values().removeIf(fullAt -> isFull(fullAt.get(), now));
+                Iterator<AtomicLong> iterator = buckets.values().iterator();
+                while (buckets.size() >= maxKeysPerShard && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                    evictions.increment();
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.jfahey.notesdemo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.jfahey.notesdemo.model.NoteChangeFeed;
+
+public interface NoteChangeFeedRepository extends JpaRepository<NoteChangeFeed, String> {
+}
@@ -0,0 +1,56 @@
+package com.jfahey.notesdemo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.jfahey.notesdemo.model.NoteChange;
+
+/**
+ * Queries on a user's note change log, all served by its
+ * <code>(username, sequence)</code> and <code>(username, noteId)</code> indexes.
+ */
+public interface NoteChangeRepository extends JpaRepository<NoteChange, Long> {
+
+    /**
+     * A user's changes numbered after <code>since</code>, oldest first.
+     */
+    @Query("select c from NoteChange c where c.username = :username and c.sequence > :since "
+        + "order by c.username, c.sequence")
+    List<NoteChange> findByUsernameAfter(
+        @Param("username") String username, @Param("since") long since, Pageable pageable);
+
+    /**
+     * Remove the entries of notes about to get a newer one.
+     */
+    @Modifying
+    @Query("delete from NoteChange c where c.username = :username and c.noteId in :noteIds")
+    int deleteByUsernameAndNoteIdIn(@Param("username") String username, @Param("noteIds") Collection<Long> noteIds);
+
+    /**
+     * Number of the newest of a user's entries of the type made before the given time.
+     */
+    @Query("select max(c.sequence) from NoteChange c "
+        + "where c.username = :username and c.type = :type and c.changedAt < :before")
+    Long findLastSequenceBefore(
+        @Param("username") String username, @Param("type") NoteChange.Type type, @Param("before") LocalDateTime before);
+
+    /**
+     * Numbers of a user's entries of the type, newest first.
+     */
+    @Query("select c.sequence from NoteChange c where c.username = :username and c.type = :type "
+        + "order by c.sequence desc")
+    List<Long> findSequencesByType(
+        @Param("username") String username, @Param("type") NoteChange.Type type, Pageable pageable);
+
+    @Modifying
+    @Query("delete from NoteChange c where c.username = :username and c.type = :type and c.sequence <= :through")
+    int deleteByTypeThrough(
+        @Param("username") String username, @Param("type") NoteChange.Type type, @Param("through") long through);
+}
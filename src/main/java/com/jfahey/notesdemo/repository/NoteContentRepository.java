@@ -0,0 +1,81 @@
+package com.jfahey.notesdemo.repository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.jfahey.notesdemo.model.NoteContentCodec;
+
+/**
+ * Streaming access to note content, bypassing the entity: the content column is
+ * read as a character stream through JDBC (and decompressed on the fly), so it
+ * is never materialized as a <code>String</code>.
+ */
+@Repository
+public class NoteContentRepository {
+
+    private static final String SELECT_CONTENT =
+        "select n.content, n.last_updated from notes n where n.id = ? and n.username = ?";
+    private static final String SELECT_CONTENT_BYTES =
+        "select n.content_bytes, n.last_updated from notes n where n.id = ? and n.username = ?";
+
+    /**
+     * Consumer of a note's content. The reader is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface ContentReader<T> {
+        T read(Reader content) throws IOException;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteContentRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stored UTF-8 size of the content of a note owned by the user, at the version
+     * last updated at <code>lastUpdated</code>, without reading the content.
+     * @return the size; empty if there is no such note at that version, or the
+     * size isn't stored (rows written before it was)
+     */
+    public Optional<Long> readContentBytes(long id, String username, LocalDateTime lastUpdated) {
+        return jdbcTemplate.query(SELECT_CONTENT_BYTES, rs -> {
+            if (!rs.next() || !Objects.equals(rs.getObject(2, LocalDateTime.class), lastUpdated)) {
+                return Optional.<Long>empty();
+            }
+            return Optional.ofNullable(rs.getObject(1, Long.class));
+        }, id, username);
+    }
+
+    /**
+     * Read the content of a note owned by the user, provided it was last updated at
+     * <code>lastUpdated</code> (i.e. it is still at the version the caller has seen).
+     * @return the reader's result, or empty if there is no such note at that version
+     */
+    public <T> Optional<T> readContent(long id, String username, LocalDateTime lastUpdated,
+        ContentReader<T> reader) throws IOException {
+
+        try {
+            return jdbcTemplate.query(SELECT_CONTENT, rs -> {
+                if (!rs.next() || !Objects.equals(rs.getObject(2, LocalDateTime.class), lastUpdated)) {
+                    return Optional.<T>empty();
+                }
+                try (Reader stored = rs.getCharacterStream(1)) {
+                    Reader content = NoteContentCodec.decodingReader(stored == null ? Reader.nullReader() : stored);
+                    return Optional.ofNullable(reader.read(content));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, id, username);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,15 +1,172 @@
 package com.jfahey.notesdemo.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteVersion;
 import com.jfahey.notesdemo.model.Note;
 
+import jakarta.persistence.QueryHint;
+
+/**
+ * Listing queries order by <code>(username, lastUpdated desc, id desc)</code>. The username is
+ * constant within a listing, but naming it lets the database read rows straight off the
+ * <code>idx_notes_username_last_updated</code> index in order instead of sorting them.
+ * <p>
+ * Note content is a lazy attribute. Queries whose callers go on to read the content
+ * of every note select it in the same statement (<code>@EntityGraph</code> on
+ * <code>content</code>); the others leave it unread, so e.g. ownership checks and
+ * updates don't transfer note bodies.
+ */
 public interface NoteRepository extends JpaRepository<Note, Long> {
-    
-    List<Note> findByUsername(String username);
 
-    List<Note> findByIdAndUsername(Long id, String username);
-    
+    /**
+     * All of a user's notes, oldest first (the order clients of the full listing rely on).
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.username = :username order by n.id")
+    List<Note> findByUsername(@Param("username") String username);
+
+    /**
+     * A note, only if it belongs to the user. Ownership is checked by the
+     * query, not in Java. The content is not read until it is accessed.
+     */
+    Optional<Note> findByIdAndUsername(Long id, String username);
+
+    /**
+     * A note including its content, whoever it belongs to.
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.id = :id")
+    Optional<Note> findWithContentById(@Param("id") Long id);
+
+    /**
+     * A note including its content, only if it belongs to the user.
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.id = :id and n.username = :username")
+    Optional<Note> findWithContentByIdAndUsername(@Param("id") Long id, @Param("username") String username);
+
+    /**
+     * The user's notes among the given ids. Their content is not read until it is accessed.
+     */
+    List<Note> findAllByIdInAndUsername(Collection<Long> ids, String username);
+
+    /**
+     * The user's notes among the given ids, including their content.
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.id in :ids and n.username = :username")
+    List<Note> findAllWithContentByIdInAndUsername(@Param("ids") Collection<Long> ids, @Param("username") String username);
+
+    /**
+     * Version of a note owned by the user, without loading its content.
+     */
+    @Query("select new com.jfahey.notesdemo.dto.NoteVersion(n.id, n.username, n.lastUpdated) "
+        + "from Note n where n.id = :id and n.username = :username")
+    Optional<NoteVersion> findVersionByIdAndUsername(@Param("id") Long id, @Param("username") String username);
+
+    /**
+     * Delete a note owned by the user with a single statement.
+     * <p>
+     * (Bulk statements bypass entity listeners and the persistence context;
+     * callers are responsible for any follow-up, e.g. search index updates.)
+     * @return number of notes deleted, 0 if the note doesn't exist or isn't the user's
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Note n where n.id = :id and n.username = :username")
+    int deleteByIdAndUsername(@Param("id") Long id, @Param("username") String username);
+
+    /**
+     * Aggregate version of all of a user's notes, without loading any of them.
+     */
+    @Query("select new com.jfahey.notesdemo.dto.NoteCollectionVersion(count(n), max(n.lastUpdated), sum(n.id)) "
+        + "from Note n where n.username = :username")
+    NoteCollectionVersion findCollectionVersionByUsername(@Param("username") String username);
+
+    /**
+     * First page of a user's notes, newest first.
+     * Only the page size of the <code>Pageable</code> is used (no count query is issued).
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.username = :username "
+        + "order by n.username, n.lastUpdated desc, n.id desc")
+    List<Note> findPageByUsername(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Next page of a user's notes, strictly after the <code>(lastUpdated, id)</code> keyset position.
+     */
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.username = :username "
+        + "and (n.lastUpdated < :lastUpdated or (n.lastUpdated = :lastUpdated and n.id < :id)) "
+        + "order by n.username, n.lastUpdated desc, n.id desc")
+    List<Note> findPageByUsernameAfter(
+        @Param("username") String username,
+        @Param("lastUpdated") LocalDateTime lastUpdated,
+        @Param("id") Long id,
+        Pageable pageable);
+
+    /**
+     * Stream a user's notes in listing order. Must be consumed within a transaction
+     * and closed by the caller.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n where n.username = :username "
+        + "order by n.username, n.lastUpdated desc, n.id desc")
+    Stream<Note> streamByUsername(@Param("username") String username);
+
+    /**
+     * Stream every note, e.g. to rebuild the search index. Must be consumed
+     * within a transaction and closed by the caller.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    @EntityGraph(attributePaths = "content")
+    @Query("select n from Note n")
+    Stream<Note> streamAll();
+
+    /**
+     * First page of a user's note summaries, newest first. The excerpt and length
+     * are read from their own columns, so note content is never transferred (or
+     * decompressed); only rows written before those columns existed fall back to
+     * computing them from the content.
+     * <p>
+     * (Native, since Hibernate does not allow <code>substring</code> on <code>@Lob</code> attributes.)
+     */
+    @Query(nativeQuery = true, value = "select n.id as id, n.title as title, n.last_updated as lastUpdated, "
+        + "coalesce(n.content_length, char_length(n.content)) as contentLength, "
+        + "coalesce(n.excerpt, substring(n.content, 1, " + NoteSummary.EXCERPT_LENGTH + ")) as excerpt "
+        + "from notes n where n.username = :username "
+        + "order by n.username, n.last_updated desc, n.id desc")
+    List<NoteSummaryView> findSummaryPageByUsername(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Next page of a user's note summaries, strictly after the <code>(lastUpdated, id)</code> keyset position.
+     */
+    @Query(nativeQuery = true, value = "select n.id as id, n.title as title, n.last_updated as lastUpdated, "
+        + "coalesce(n.content_length, char_length(n.content)) as contentLength, "
+        + "coalesce(n.excerpt, substring(n.content, 1, " + NoteSummary.EXCERPT_LENGTH + ")) as excerpt "
+        + "from notes n where n.username = :username "
+        + "and (n.last_updated < :lastUpdated or (n.last_updated = :lastUpdated and n.id < :id)) "
+        + "order by n.username, n.last_updated desc, n.id desc")
+    List<NoteSummaryView> findSummaryPageByUsernameAfter(
+        @Param("username") String username,
+        @Param("lastUpdated") LocalDateTime lastUpdated,
+        @Param("id") Long id,
+        Pageable pageable);
+
 }
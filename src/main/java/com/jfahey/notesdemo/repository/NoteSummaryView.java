@@ -0,0 +1,15 @@
+package com.jfahey.notesdemo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of the summary columns of a note, as selected by the
+ * summary queries of {@link NoteRepository}.
+ */
+public interface NoteSummaryView {
+    Long getId();
+    String getTitle();
+    LocalDateTime getLastUpdated();
+    Integer getContentLength();
+    String getExcerpt();
+}
@@ -3,10 +3,15 @@ package com.jfahey.notesdemo.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.jfahey.notesdemo.model.User;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
 
@@ -17,5 +22,12 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByEmail(String email);
 
     Boolean existsByEmail(String email);
+
+    /**
+     * The user, with its row locked until the end of the transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from User u where u.username = :username")
+    Optional<User> findForUpdateByUsername(@Param("username") String username);
     
 }
\ No newline at end of file
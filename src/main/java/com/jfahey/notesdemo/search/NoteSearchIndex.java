@@ -0,0 +1,535 @@
+package com.jfahey.notesdemo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+
+/**
+ * In-memory inverted index over note titles and content, partitioned by user.
+ * Queries are ranked with BM25 and only ever see the querying user's notes.
+ * <p>
+ * Postings are kept as parallel primitive arrays keyed by an internal document
+ * number. Re-indexing or removing a note only marks its old document dead;
+ * dead documents are skipped by queries and dropped when a user's index is
+ * compacted, once they outnumber the live ones.
+ * <p>
+ * The index is {@linkplain #rebuild rebuilt} from a snapshot into a fresh copy,
+ * which replaces the live one once loaded, one rebuild at a time. Meanwhile
+ * searches keep using the live copy; writes are applied to it and queued, then
+ * applied again on top of the snapshot. Only before the first rebuild (see
+ * {@link #beginRebuild}) do searches wait.
+ */
+@Component
+public class NoteSearchIndex {
+
+    /** Title terms count this many times towards a note's term frequencies. */
+    static final int TITLE_BOOST = 2;
+
+    /** Maximum number of characters in a result snippet. */
+    public static final int SNIPPET_LENGTH = 160;
+
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MIN_COMPACTION_DEAD_DOCS = 1024;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final long REBUILD_WAIT_SECONDS = 10;
+
+    /** The live index, by user. Only replaced while holding this. */
+    private volatile Map<String, UserIndex> users = new ConcurrentHashMap<>();
+
+    /** Writes queued while a rebuild loads its snapshot; null when not rebuilding. Guarded by this. */
+    private List<Consumer<Map<String, UserIndex>>> deferred;
+    private volatile CountDownLatch rebuilt = new CountDownLatch(0);
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Add a note to its owner's index, replacing any previously indexed version.
+     */
+    public void index(long noteId, String username, String title, String content) {
+        write(index -> load(index, noteId, username, title, content));
+    }
+
+    /**
+     * Re-index a note whose title changed but whose content didn't, reusing the
+     * content terms already indexed. Notes that aren't indexed are ignored.
+     */
+    public void reindexTitle(long noteId, String username, String title) {
+        write(index -> {
+            UserIndex userIndex = index.get(username);
+            if (userIndex != null) {
+                userIndex.reindexTitle(noteId, title);
+            }
+        });
+    }
+
+    /**
+     * Drop a note from its owner's index. Unknown notes are ignored.
+     */
+    public void remove(long noteId, String username) {
+        write(index -> {
+            UserIndex userIndex = index.get(username);
+            if (userIndex != null) {
+                userIndex.remove(noteId);
+            }
+        });
+    }
+
+    /**
+     * Make searches wait until the next {@link #rebuild} completes, e.g. while
+     * the application is still starting up and the index is empty.
+     */
+    public synchronized void beginRebuild() {
+        if (deferred == null) {
+            deferred = new ArrayList<>();
+            rebuilt = new CountDownLatch(1);
+        }
+    }
+
+    /**
+     * Replace the index contents with a snapshot, handed to the given loader.
+     * Writes made while the snapshot loads are applied after it, so they win
+     * over the (possibly older) snapshot. Waits for any rebuild already running.
+     * If loading fails, the live index is kept.
+     */
+    public void rebuild(Consumer<Loader> snapshot) {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                if (deferred == null) {
+                    deferred = new ArrayList<>();
+                }
+            }
+            Map<String, UserIndex> fresh = new ConcurrentHashMap<>();
+            boolean loaded = false;
+            try {
+                snapshot.accept((noteId, username, title, content) -> load(fresh, noteId, username, title, content));
+                loaded = true;
+            } finally {
+                finishRebuild(loaded ? fresh : null);
+            }
+        }
+    }
+
+    /** Receives the notes of a {@link #rebuild} snapshot. */
+    @FunctionalInterface
+    public interface Loader {
+        void index(long noteId, String username, String title, String content);
+    }
+
+    /**
+     * @return number of notes currently indexed for the user
+     */
+    public int size(String username) {
+        UserIndex index = users.get(username);
+        return index == null ? 0 : index.size();
+    }
+
+    /**
+     * Rank the user's notes against the query terms, best match first.
+     * A note matches if it contains any of the terms.
+     * @param limit maximum number of hits returned
+     */
+    public List<Hit> search(String username, String query, int limit) {
+        awaitRebuild();
+        UserIndex index = users.get(username);
+        Set<String> terms = terms(query);
+        if (index == null || terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return index.search(terms, limit);
+    }
+
+    /**
+     * Distinct, normalized terms of a piece of text, in order of first occurrence.
+     */
+    public static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        forEachToken(text, (term, start) -> terms.add(term));
+        return terms;
+    }
+
+    /**
+     * Cut a window of at most {@value #SNIPPET_LENGTH} characters out of the text,
+     * around the first occurrence of any of the query terms (or from the start of
+     * the text if none occurs). Truncation is marked with an ellipsis.
+     */
+    public static String snippet(String text, Set<String> terms) {
+        if (text == null) {
+            return "";
+        }
+        if (text.length() <= SNIPPET_LENGTH) {
+            return text;
+        }
+        int[] match = {-1};
+        forEachToken(text, (term, start) -> {
+            if (match[0] < 0 && terms.contains(term)) {
+                match[0] = start;
+            }
+        });
+
+        int hit = match[0];
+        int start = hit < 0 ? 0 : Math.min(Math.max(0, hit - SNIPPET_LENGTH / 4), text.length() - SNIPPET_LENGTH);
+        int end = start + SNIPPET_LENGTH;
+        // don't cut through words where it can be avoided
+        if (start > 0) {
+            int space = text.indexOf(' ', start);
+            if (space >= 0 && space < hit) {
+                start = space + 1;
+            }
+        }
+        if (end < text.length()) {
+            int space = text.lastIndexOf(' ', end);
+            if (space > Math.max(start, hit)) {
+                end = space;
+            }
+        }
+        return (start > 0 ? "…" : "") + text.substring(start, end).strip()
+            + (end < text.length() ? "…" : "");
+    }
+
+    @FunctionalInterface
+    private interface TokenConsumer {
+        void accept(String term, int start);
+    }
+
+    /**
+     * Split text into lower-cased runs of letters and digits.
+     */
+    private static void forEachToken(String text, TokenConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(cp = text.codePointAt(i))) {
+                i += Character.charCount(cp);
+            }
+            if (i - start <= MAX_TERM_LENGTH) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT), start);
+            }
+        }
+    }
+
+    private static void load(Map<String, UserIndex> index, long noteId, String username, String title,
+        String content) {
+        index.computeIfAbsent(username, name -> new UserIndex()).index(noteId, title, content);
+    }
+
+    /** Apply a write to the live index, and queue it for the snapshot being loaded, if any. */
+    private void write(Consumer<Map<String, UserIndex>> write) {
+        Map<String, UserIndex> live;
+        synchronized (this) {
+            live = users;
+            if (deferred != null) {
+                deferred.add(write);
+            }
+        }
+        write.accept(live);
+    }
+
+    /**
+     * Apply the queued writes (and any queued meanwhile) in order to the loaded
+     * snapshot and make it the live index, then let searches through.
+     * @param fresh the loaded snapshot, or null to keep the live index
+     */
+    private void finishRebuild(Map<String, UserIndex> fresh) {
+        while (true) {
+            List<Consumer<Map<String, UserIndex>>> writes;
+            synchronized (this) {
+                if (fresh == null || deferred.isEmpty()) {
+                    if (fresh != null) {
+                        users = fresh;
+                    }
+                    deferred = null;
+                    rebuilt.countDown();
+                    return;
+                }
+                writes = deferred;
+                deferred = new ArrayList<>();
+            }
+            writes.forEach(write -> write.accept(fresh));
+        }
+    }
+
+    private void awaitRebuild() {
+        try {
+            if (rebuilt.await(REBUILD_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ServerBusyException("Search index is being rebuilt, retry later.");
+    }
+
+    /**
+     * A ranked search result: the note id and its BM25 score.
+     */
+    public record Hit(long noteId, float score) {}
+
+    /** Growable parallel arrays of (document, term frequency). */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+
+    /**
+     * Distinct terms of a piece of text with their frequencies, and its length in
+     * terms. Kept per document so a title can be re-indexed without the content.
+     */
+    private record TermCounts(String[] terms, int[] freqs, int length) {
+
+        static TermCounts of(String text) {
+            Map<String, Integer> freqs = new HashMap<>();
+            int[] length = {0};
+            forEachToken(text, (term, start) -> {
+                freqs.merge(term, 1, Integer::sum);
+                length[0]++;
+            });
+            String[] terms = new String[freqs.size()];
+            int[] counts = new int[freqs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+                terms[i] = entry.getKey();
+                counts[i++] = entry.getValue();
+            }
+            return new TermCounts(terms, counts, length[0]);
+        }
+    }
+
+    private static final class UserIndex {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Map<String, Postings> postings = new HashMap<>();
+        private Map<Long, Integer> docsByNote = new HashMap<>();
+        private long[] noteIds = new long[16];
+        private int[] docLengths = new int[16];
+        private TermCounts[] contents = new TermCounts[16];
+        private BitSet live = new BitSet();
+        private int docCount;
+        private long liveLength;
+
+        void index(long noteId, String title, String content) {
+            TermCounts titleTerms = TermCounts.of(title);
+            TermCounts contentTerms = TermCounts.of(content);
+            lock.writeLock().lock();
+            try {
+                add(noteId, titleTerms, contentTerms);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void reindexTitle(long noteId, String title) {
+            TermCounts titleTerms = TermCounts.of(title);
+            lock.writeLock().lock();
+            try {
+                Integer doc = docsByNote.get(noteId);
+                if (doc != null) {
+                    add(noteId, titleTerms, contents[doc]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long noteId) {
+            lock.writeLock().lock();
+            try {
+                kill(noteId);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return docsByNote.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<Hit> search(Set<String> terms, int limit) {
+            lock.readLock().lock();
+            try {
+                int liveDocs = docsByNote.size();
+                if (liveDocs == 0) {
+                    return List.of();
+                }
+                float averageLength = Math.max(1f, (float) liveLength / liveDocs);
+                float[] scores = new float[docCount];
+                BitSet matched = new BitSet(docCount);
+
+                for (String term : terms) {
+                    Postings list = postings.get(term);
+                    if (list == null) {
+                        continue;
+                    }
+                    int df = 0;
+                    for (int i = 0; i < list.size; i++) {
+                        if (live.get(list.docs[i])) {
+                            df++;
+                        }
+                    }
+                    if (df == 0) {
+                        continue;
+                    }
+                    float idf = (float) Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+                    for (int i = 0; i < list.size; i++) {
+                        int doc = list.docs[i];
+                        if (!live.get(doc)) {
+                            continue;
+                        }
+                        float tf = list.freqs[i];
+                        float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                        scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                        matched.set(doc);
+                    }
+                }
+
+                // min-heap of the best hits seen so far; ties go to the newer note
+                PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, (a, b) -> a.score() != b.score()
+                    ? Float.compare(a.score(), b.score())
+                    : Long.compare(a.noteId(), b.noteId()));
+                for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                    top.add(new Hit(noteIds[doc], scores[doc]));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+                List<Hit> hits = new ArrayList<>(top);
+                hits.sort(top.comparator().reversed());
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Index a new document for the note, replacing its current one. Caller holds the write lock. */
+        private void add(long noteId, TermCounts title, TermCounts content) {
+            Map<String, Integer> freqs = new HashMap<>();
+            for (int i = 0; i < title.terms().length; i++) {
+                freqs.put(title.terms()[i], TITLE_BOOST * title.freqs()[i]);
+            }
+            for (int i = 0; i < content.terms().length; i++) {
+                freqs.merge(content.terms()[i], content.freqs()[i], Integer::sum);
+            }
+            int length = TITLE_BOOST * title.length() + content.length();
+
+            kill(noteId);
+            int doc = docCount++;
+            if (doc == noteIds.length) {
+                noteIds = Arrays.copyOf(noteIds, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+                contents = Arrays.copyOf(contents, doc * 2);
+            }
+            noteIds[doc] = noteId;
+            docLengths[doc] = length;
+            contents[doc] = content;
+            live.set(doc);
+            liveLength += length;
+            docsByNote.put(noteId, doc);
+            freqs.forEach((term, freq) -> postings.computeIfAbsent(term, t -> new Postings()).add(doc, freq));
+            compactIfNeeded();
+        }
+
+        /** Mark the note's current document (if any) dead. Caller holds the write lock. */
+        private void kill(long noteId) {
+            Integer doc = docsByNote.remove(noteId);
+            if (doc != null) {
+                live.clear(doc);
+                liveLength -= docLengths[doc];
+                contents[doc] = null;
+            }
+        }
+
+        /**
+         * Renumber the live documents densely and rewrite the postings without the
+         * dead ones. Caller holds the write lock.
+         */
+        private void compactIfNeeded() {
+            int liveDocs = docsByNote.size();
+            int deadDocs = docCount - liveDocs;
+            if (deadDocs < MIN_COMPACTION_DEAD_DOCS || deadDocs < liveDocs) {
+                return;
+            }
+            int[] renumbered = new int[docCount];
+            long[] compactIds = new long[Math.max(16, liveDocs)];
+            int[] compactLengths = new int[compactIds.length];
+            TermCounts[] compactContents = new TermCounts[compactIds.length];
+            Map<Long, Integer> compactDocs = new HashMap<>();
+            int next = 0;
+            for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+                renumbered[doc] = next;
+                compactIds[next] = noteIds[doc];
+                compactLengths[next] = docLengths[doc];
+                compactContents[next] = contents[doc];
+                compactDocs.put(noteIds[doc], next);
+                next++;
+            }
+
+            Map<String, Postings> compactPostings = new HashMap<>();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                Postings list = entry.getValue();
+                Postings compact = null;
+                for (int i = 0; i < list.size; i++) {
+                    if (live.get(list.docs[i])) {
+                        if (compact == null) {
+                            compact = new Postings();
+                        }
+                        compact.add(renumbered[list.docs[i]], list.freqs[i]);
+                    }
+                }
+                if (compact != null) {
+                    compactPostings.put(entry.getKey(), compact);
+                }
+            }
+
+            postings = compactPostings;
+            docsByNote = compactDocs;
+            noteIds = compactIds;
+            docLengths = compactLengths;
+            contents = compactContents;
+            live = new BitSet(next);
+            live.set(0, next);
+            docCount = next;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.jfahey.notesdemo.search;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+
+/**
+ * Keeps the {@link NoteSearchIndex} in step with the notes table, applying
+ * each {@link NoteChangedEvent} once the transaction that made the change
+ * commits, so rolled back changes never become searchable. Other instances
+ * are then told to re-index the note through the {@link NoteSearchReplicator}.
+ */
+@Component
+public class NoteSearchIndexer {
+
+    private final NoteSearchIndex searchIndex;
+    private final NoteSearchReplicator replicator;
+
+    public NoteSearchIndexer(NoteSearchIndex searchIndex, NoteSearchReplicator replicator) {
+        this.searchIndex = searchIndex;
+        this.replicator = replicator;
+    }
+
+    /**
+     * Content is only re-indexed if it was set; otherwise just the title is.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNoteChanged(NoteChangedEvent event) {
+        long id = event.id();
+        String username = event.username();
+        if (event.type() == NoteChangedEvent.Type.DELETE) {
+            searchIndex.remove(id, username);
+        } else if (event.contentChanged()) {
+            searchIndex.index(id, username, event.title(), event.content());
+        } else {
+            searchIndex.reindexTitle(id, username, event.title());
+        }
+        replicator.publish(id, username);
+    }
+}
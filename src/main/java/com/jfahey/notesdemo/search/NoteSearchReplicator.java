@@ -0,0 +1,100 @@
+package com.jfahey.notesdemo.search;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jfahey.notesdemo.cache.CacheInvalidationBus;
+import com.jfahey.notesdemo.repository.NoteRepository;
+import com.jfahey.notesdemo.service.NotesService;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the {@link NoteSearchIndex} of every instance in step with notes
+ * changed on the others. The index is an in-process copy of the notes table,
+ * so changes are announced on the {@link CacheInvalidationBus} like cache
+ * invalidations; receivers re-read the note from the database and re-index
+ * (or drop) it. When announcements may have been lost the whole index is rebuilt.
+ * <p>
+ * Received changes are applied one at a time on a thread of their own, so
+ * database reads don't hold up the bus. Rebuild requests are coalesced: at
+ * most one rebuild is waiting at a time, and the old index keeps answering
+ * searches while a rebuild loads.
+ */
+@Component
+public class NoteSearchReplicator {
+
+    static final String CHANNEL = "noteSearch";
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteSearchReplicator.class);
+
+    private final CacheInvalidationBus bus;
+    private final NoteSearchIndex searchIndex;
+    private final NoteRepository noteRepository;
+    private final ObjectProvider<NotesService> notesService;
+    private final TransactionTemplate readOnly;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "search-index-replicator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NoteSearchReplicator(CacheInvalidationBus bus, NoteSearchIndex searchIndex, NoteRepository noteRepository,
+        ObjectProvider<NotesService> notesService, PlatformTransactionManager transactionManager) {
+        this.bus = bus;
+        this.searchIndex = searchIndex;
+        this.noteRepository = noteRepository;
+        this.notesService = notesService;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        bus.subscribe(CHANNEL, key -> {
+            if (key == null && !rebuildPending.compareAndSet(false, true))
+                return;
+            updater.execute(() -> apply(key));
+        });
+    }
+
+    /**
+     * Tell the other instances a note changed (or was deleted); called once the
+     * change is committed and indexed locally.
+     */
+    public void publish(long id, String username) {
+        bus.publish(CHANNEL, id + ":" + username);
+    }
+
+    private void apply(String key) {
+        try {
+            if (key == null) {
+                // cleared before loading, so a request arriving meanwhile queues one more rebuild
+                rebuildPending.set(false);
+                notesService.getObject().rebuildSearchIndex();
+                return;
+            }
+            int separator = key.indexOf(':');
+            long id = Long.parseLong(key.substring(0, separator));
+            String username = key.substring(separator + 1);
+            readOnly.executeWithoutResult(status -> noteRepository.findWithContentByIdAndUsername(id, username)
+                .ifPresentOrElse(
+                    note -> searchIndex.index(id, username, note.getTitle(), note.getContent()),
+                    () -> searchIndex.remove(id, username)));
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply search index change {}", key, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        updater.shutdownNow();
+    }
+}
@@ -24,7 +24,7 @@ public class JwtFilter  extends OncePerRequestFilter {
 
     @Autowired
     private UserDetailsServiceProvider userDetailsService;
- 
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                 HttpServletResponse response, FilterChain filterChain)
@@ -32,10 +32,12 @@ public class JwtFilter  extends OncePerRequestFilter {
  
         String token = jwtProvider.getTokenFromRequest(request);
 
-        // validate jwt token
-        if(StringUtils.hasText(token) && jwtProvider.validateAccessToken(token)){
+        // validate jwt token and extract its subject in a single parse
+        JwtValidationResult result = StringUtils.hasText(token) ? jwtProvider.parseAccessToken(token) : null;
+
+        if(result != null && result.isValid()){
 
-            String username = jwtProvider.getUsernameFromToken(token);
+            String username = result.getSubject();
 
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
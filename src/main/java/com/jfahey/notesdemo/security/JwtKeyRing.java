@@ -0,0 +1,78 @@
+package com.jfahey.notesdemo.security;
+
+import java.security.Key;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.util.StringUtils;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+
+/**
+ * HMAC keys for signing and verifying access tokens, derived once at startup.
+ * <p>
+ * New tokens are signed with the active key and carry its id in the
+ * <code>kid</code> header. Tokens are verified with the key named by their
+ * <code>kid</code>, so retired keys can stay accepted (until the tokens they
+ * signed expire) while a new key is rolled out. Tokens without a
+ * <code>kid</code> are verified with the active key.
+ * <p>
+ * Secrets are base64 encoded, as they always were for
+ * <code>signWith(SignatureAlgorithm, String)</code>.
+ */
+public class JwtKeyRing {
+
+    public static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.HS512;
+
+    private final String activeKeyId;
+    private final Key activeKey;
+    private final Map<String, Key> verificationKeys;
+
+    /**
+     * @param activeKeyId id of the key used to sign new tokens
+     * @param activeSecret base64 encoded secret of the active key
+     * @param previousKeys comma separated <code>kid:secret</code> pairs that are
+     * still accepted for verification, may be empty
+     */
+    public JwtKeyRing(String activeKeyId, String activeSecret, String previousKeys) {
+        this.activeKeyId = activeKeyId;
+        this.activeKey = hmacKey(activeSecret);
+
+        Map<String, Key> keys = new HashMap<>();
+        if (StringUtils.hasText(previousKeys)) {
+            for (String entry : previousKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2 || !StringUtils.hasText(parts[0]) || !StringUtils.hasText(parts[1])) {
+                    throw new IllegalArgumentException("Expected kid:secret but was: " + entry);
+                }
+                keys.put(parts[0], hmacKey(parts[1]));
+            }
+        }
+        keys.put(activeKeyId, activeKey);
+        this.verificationKeys = Collections.unmodifiableMap(keys);
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public Key getActiveKey() {
+        return activeKey;
+    }
+
+    /**
+     * @param keyId the <code>kid</code> header of a token, may be <code>null</code>
+     * @return the key to verify the token with, <code>null</code> if the id is unknown
+     */
+    public Key getVerificationKey(String keyId) {
+        return keyId == null ? activeKey : verificationKeys.get(keyId);
+    }
+
+    private static Key hmacKey(String base64Secret) {
+        return new SecretKeySpec(TextCodec.BASE64.decode(base64Secret), ALGORITHM.getJcaName());
+    }
+}
@@ -1,5 +1,11 @@
 package com.jfahey.notesdemo.security;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 
 import org.slf4j.Logger;
@@ -10,33 +16,93 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 
+import com.jfahey.notesdemo.cache.ExpiringCache;
+import com.jfahey.notesdemo.cache.ExpiringCacheMetrics;
+
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Component
-public class JwtProvider {
+public class JwtProvider implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtProvider.class);
 
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
+    /** Id (<code>kid</code>) of the active signing key, <code>app.jwt.secret</code>. */
+    @Value("${app.jwt.kid:default}")
+    private String jwtKeyId;
+
+    /** Retired <code>kid:secret</code> pairs still accepted for verification. */
+    @Value("${app.jwt.previouskeys:}")
+    private String jwtPreviousKeys;
+
     @Value("${app.jwt.expirationms}")
     private long jwtExpirationMs;
 
+    /** Maximum number of verified tokens remembered; 0 disables the cache. */
+    @Value("${app.jwt.tokencache.maxsize:10000}")
+    private int tokenCacheSize;
+
     private IJwtHandler jwtHandler;
 
+    private JwtKeyRing keyRing;
+
+    /**
+     * Shared parser, configured once. Parsing doesn't mutate the parser,
+     * so it is safe to use from any number of threads.
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * Tokens whose signature has already been verified, keyed by the SHA-256
+     * digest of the token. Entries never outlive the token's expiry.
+     */
+    private ExpiringCache<String, JwtValidationResult> verifiedTokens;
+
     public JwtProvider(){
         this.jwtHandler = new DefaultJwtHandler();
     }
 
+    @PostConstruct
+    void init() {
+        this.keyRing = new JwtKeyRing(jwtKeyId, jwtSecret, jwtPreviousKeys);
+        this.jwtParser = Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                Key key = keyRing.getVerificationKey(header.getKeyId());
+                if (key == null) {
+                    throw new SignatureException("Unknown JWT key id: " + header.getKeyId());
+                }
+                return key;
+            }
+        });
+        if (tokenCacheSize > 0) {
+            this.verifiedTokens = new ExpiringCache<>(tokenCacheSize, Duration.ofMillis(jwtExpirationMs));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (verifiedTokens != null) {
+            new ExpiringCacheMetrics(verifiedTokens, "verifiedTokens", Tags.empty()).bindTo(registry);
+        }
+    }
+
     public String generateTokenFromAuth(Authentication authentication){
 
         // TODO: implement customer UserDetails mapper
@@ -48,16 +114,16 @@ public class JwtProvider {
         Date date = new Date();
 
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, keyRing.getActiveKeyId())
                 .setSubject(subject)
                 .setIssuedAt(date)
                 .setExpiration(new Date(date.getTime() + jwtExpirationMs))
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .signWith(JwtKeyRing.ALGORITHM, keyRing.getActiveKey())
                 .compact();
     }
 
     public String getUsernameFromToken(String token) {
-        return Jwts.parser()
-            .setSigningKey(jwtSecret)
+        return jwtParser
             .parseClaimsJws(token)
             .getBody()
             .getSubject();
@@ -66,25 +132,70 @@ public class JwtProvider {
       }
 
     public boolean validateAccessToken(String token) {
+        return parseAccessToken(token).isValid();
+    }
+
+    /**
+     * Verify the token and extract its claims with a single parse, so callers
+     * don't pay for signature verification twice (validate, then read the subject).
+     * <p>
+     * Repeat presentations of an already verified, unexpired token are answered
+     * from the verified-token cache without re-verifying the signature.
+     * @param token the compact JWS access token
+     * @return the verified claims, or the reason the token was rejected
+     */
+    public JwtValidationResult parseAccessToken(String token) {
+        if (verifiedTokens == null || token == null || token.isEmpty()) {
+            return verifyAccessToken(token);
+        }
+
+        String digest = digest(token);
+        JwtValidationResult result = verifiedTokens.get(digest);
+        if (result == null) {
+            result = verifyAccessToken(token);
+            if (result.isValid()) {
+                Date expiration = result.getExpiration();
+                verifiedTokens.put(digest, result,
+                    expiration == null ? Long.MAX_VALUE : expiration.getTime());
+            }
+        }
+        return result;
+    }
+
+    private JwtValidationResult verifyAccessToken(String token) {
         // TODO: throw better exceptions (application specific)
         try {
-            Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token);
-            return true;
+            Claims claims = jwtParser
+                .parseClaimsJws(token)
+                .getBody();
+            return JwtValidationResult.valid(claims);
         } catch (ExpiredJwtException e) {
-            logger.error("JWT expired", e.getMessage());
+            logger.error("JWT expired: {}", e.getMessage());
+            return JwtValidationResult.invalid(JwtValidationResult.Status.EXPIRED);
         } catch (IllegalArgumentException e) {
-            logger.error("JWT is empty", e.getMessage());
+            logger.error("JWT is empty: {}", e.getMessage());
+            return JwtValidationResult.invalid(JwtValidationResult.Status.EMPTY);
         } catch (MalformedJwtException e) {
-            logger.error("JWT is invalid", e.getMessage());
+            logger.error("JWT is invalid: {}", e.getMessage());
+            return JwtValidationResult.invalid(JwtValidationResult.Status.MALFORMED);
         } catch (UnsupportedJwtException e) {
-            logger.error("JWT is not supported", e.getMessage());
+            logger.error("JWT is not supported: {}", e.getMessage());
+            return JwtValidationResult.invalid(JwtValidationResult.Status.UNSUPPORTED);
         } catch (SignatureException e) {
-            logger.error("JWT signature validation failed", e.getMessage());
+            logger.error("JWT signature validation failed: {}", e.getMessage());
+            return JwtValidationResult.invalid(JwtValidationResult.Status.INVALID_SIGNATURE);
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
         }
-         
-        return false;
     }
 
     public String getTokenFromRequest(HttpServletRequest request){
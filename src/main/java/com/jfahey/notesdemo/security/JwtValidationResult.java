@@ -0,0 +1,63 @@
+package com.jfahey.notesdemo.security;
+
+import java.util.Date;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Outcome of a single parse of an access token: either the verified claims,
+ * or the reason the token was rejected.
+ */
+public class JwtValidationResult {
+
+    public enum Status {
+        VALID,
+        EMPTY,
+        EXPIRED,
+        MALFORMED,
+        UNSUPPORTED,
+        INVALID_SIGNATURE
+    }
+
+    private final Status status;
+    private final Claims claims;
+
+    private JwtValidationResult(Status status, Claims claims) {
+        this.status = status;
+        this.claims = claims;
+    }
+
+    public static JwtValidationResult valid(Claims claims) {
+        return new JwtValidationResult(Status.VALID, claims);
+    }
+
+    public static JwtValidationResult invalid(Status status) {
+        if (status == Status.VALID) {
+            throw new IllegalArgumentException("Invalid result requires a failure status");
+        }
+        return new JwtValidationResult(status, null);
+    }
+
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the verified claims, <code>null</code> unless the token is valid
+     */
+    public Claims getClaims() {
+        return claims;
+    }
+
+    public String getSubject() {
+        return claims == null ? null : claims.getSubject();
+    }
+
+    public Date getExpiration() {
+        return claims == null ? null : claims.getExpiration();
+    }
+}
@@ -0,0 +1,171 @@
+package com.jfahey.notesdemo.security;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs password hashing (BCrypt, deliberately slow) on its own small pool
+ * of threads, one per CPU by default, so a burst of logins or registrations
+ * can't take the CPU from every other request.
+ * <p>
+ * The queue in front of the pool is bounded: when it is full, work is
+ * rejected straight away with a {@link ServerBusyException} (503), and work
+ * that waited longer than <code>app.auth.hashing.queuetimeoutms</code> is
+ * dropped without hashing, as its client has likely given up by then.
+ * <p>
+ * Queue wait, hashing time and rejections are measured per {@link Operation}.
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder {
+
+    public enum Operation {
+        LOGIN, REGISTER;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeoutNanos;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    public PasswordHashingExecutor(
+        @Value("${app.auth.hashing.threads:0}") int threads,
+        @Value("${app.auth.hashing.queuecapacity:64}") int queueCapacity,
+        @Value("${app.auth.hashing.queuetimeoutms:2000}") long queueTimeoutMs) {
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * @return the eventual result of <code>task</code>, or a {@link ServerBusyException}
+     * if it waited too long to be run
+     * @throws ServerBusyException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Operation operation, Supplier<T> task) {
+        Stats operationStats = stats.get(operation);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                operationStats.waited.record(startedAt - queuedAt);
+                if (startedAt - queuedAt > queueTimeoutNanos) {
+                    operationStats.timedOut.increment();
+                    result.completeExceptionally(new ServerBusyException("Server busy, retry later."));
+                    return;
+                }
+                // recorded before completing, so that callers see their own hash measured
+                T value;
+                try {
+                    value = task.get();
+                } catch (RuntimeException e) {
+                    operationStats.hashed.record(System.nanoTime() - startedAt);
+                    result.completeExceptionally(e);
+                    return;
+                }
+                operationStats.hashed.record(System.nanoTime() - startedAt);
+                result.complete(value);
+            });
+        } catch (RejectedExecutionException e) {
+            operationStats.rejected.increment();
+            throw new ServerBusyException("Server busy, retry later.");
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Password hashing tasks running")
+            .register(registry);
+        Gauge.builder("auth.hashing.queued", executor, e -> e.getQueue().size())
+            .description("Password hashing tasks waiting for a thread")
+            .register(registry);
+        stats.forEach((operation, operationStats) -> {
+            Tags tags = Tags.of("operation", operation.tag());
+            operationStats.waited.bindTo(registry, "auth.hashing.wait", "Time spent queued for password hashing", tags);
+            operationStats.hashed.bindTo(registry, "auth.hashing.duration", "Time spent hashing passwords", tags);
+            FunctionCounter.builder("auth.hashing.rejected", operationStats.rejected, LongAdder::sum)
+                .description("Password hashing requests turned away")
+                .tags(tags.and("reason", "queue_full"))
+                .register(registry);
+            FunctionCounter.builder("auth.hashing.rejected", operationStats.timedOut, LongAdder::sum)
+                .description("Password hashing requests turned away")
+                .tags(tags.and("reason", "queue_timeout"))
+                .register(registry);
+        });
+    }
+
+    private static final class Stats {
+        final Timing waited = new Timing();
+        final Timing hashed = new Timing();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder timedOut = new LongAdder();
+    }
+
+    private static final class Timing {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        void bindTo(MeterRegistry registry, String name, String description, Tags tags) {
+            FunctionTimer.builder(name, this, t -> t.count.sum(), t -> t.totalNanos.sum(), TimeUnit.NANOSECONDS)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        }
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "password-hashing-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.jfahey.notesdemo.security;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.jfahey.notesdemo.cache.CacheInvalidationBus;
+import com.jfahey.notesdemo.cache.ExpiringCache;
+import com.jfahey.notesdemo.cache.ExpiringCacheMetrics;
+import com.jfahey.notesdemo.model.UserChangedEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Cache of principals by username, read through by {@link UserDetailsServiceProvider},
+ * so neither token authentication in {@link JwtFilter} nor password checks at
+ * login need a users table lookup on every request.
+ * <p>
+ * Entries are bounded in number and expire after a TTL; they are evicted
+ * early whenever the underlying user changes (see {@link #onUserChanged}),
+ * here and, through the {@link CacheInvalidationBus}, on the other instances.
+ */
+@Component
+public class PrincipalCache implements MeterBinder {
+
+    static final String PRINCIPALS = "principals";
+
+    private final CacheInvalidationBus invalidationBus;
+    private final ExpiringCache<String, UserDetails> cache;
+
+    public PrincipalCache(
+        CacheInvalidationBus invalidationBus,
+        @Value("${app.security.principalcache.maxsize:10000}") int maximumSize,
+        @Value("${app.security.principalcache.ttlms:300000}") long ttlMs) {
+
+        this.cache = new ExpiringCache<>(maximumSize, Duration.ofMillis(ttlMs));
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(PRINCIPALS, username -> {
+            if (username == null) {
+                cache.invalidateAll();
+            } else {
+                cache.invalidate(username);
+            }
+        });
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return cache.get(username, loader);
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+        invalidationBus.publish(PRINCIPALS, username);
+    }
+
+    /**
+     * Evict a changed user once the transaction that changed it completes, so
+     * neither this instance nor another can cache the row as it was before the commit.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evict(event.username());
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+        invalidationBus.publish(PRINCIPALS, null);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExpiringCacheMetrics(cache, "principals", Tags.empty()).bindTo(registry);
+    }
+}
@@ -8,7 +8,6 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.jfahey.notesdemo.model.User;
 import com.jfahey.notesdemo.repository.UserRepository;
@@ -19,9 +18,20 @@ public class UserDetailsServiceProvider implements UserDetailsService {
   @Autowired
   UserRepository userRepository;
 
+  @Autowired
+  PrincipalCache principalCache;
+
+  /**
+   * Reads through the {@link PrincipalCache}. Returns a copy of the cached principal,
+   * since authentication erases the credentials of the principal it is given.
+   */
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    UserDetails cached = principalCache.get(username, this::loadFromDatabase);
+    return org.springframework.security.core.userdetails.User.withUserDetails(cached).build();
+  }
+
+  private UserDetails loadFromDatabase(String username) {
     User user = userRepository.findByUsername(username)
         .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
     
@@ -0,0 +1,14 @@
+package com.jfahey.notesdemo.security.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PAYLOAD_TOO_LARGE)
+public class ContentTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ContentTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.jfahey.notesdemo.security.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class ServerBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
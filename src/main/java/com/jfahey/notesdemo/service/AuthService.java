@@ -1,5 +1,7 @@
 package com.jfahey.notesdemo.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.security.core.Authentication;
 
 import com.jfahey.notesdemo.dto.LoginRequest;
@@ -7,7 +9,12 @@ import com.jfahey.notesdemo.dto.RegisterRequest;
 
 public interface AuthService {
 
-    public Authentication login(LoginRequest request);
+    /**
+     * Checks the credentials on the password hashing executor, without blocking the caller.
+     * @return the authentication, or a failure with the authentication exception
+     * @throws com.jfahey.notesdemo.security.exception.ServerBusyException if too many hashes are pending
+     */
+    public CompletableFuture<Authentication> login(LoginRequest request);
 
     public boolean isRegisteredUsername(String username);
 
@@ -1,13 +1,41 @@
 package com.jfahey.notesdemo.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import com.jfahey.notesdemo.dto.NoteBatchOperation;
+import com.jfahey.notesdemo.dto.NoteBatchResult;
+import com.jfahey.notesdemo.dto.NoteChangeCursor;
+import com.jfahey.notesdemo.dto.NoteChanges;
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+import com.jfahey.notesdemo.dto.NoteCursor;
+import com.jfahey.notesdemo.dto.NoteSearchResult;
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteVersion;
 import com.jfahey.notesdemo.model.Note;
 
 public interface NotesService {
     Optional<Note> getNoteById(long id);
+    Optional<Note> getNote(long id, String username);
+    Optional<NoteVersion> getNoteVersion(long id, String username);
+    NoteCollectionVersion getNoteCollectionVersion(String username);
     List<Note> getNotesByUsername(String username);
+    List<Note> getNotesByUsername(String username, NoteCursor after, int limit);
+    List<NoteSummary> getNoteSummariesByUsername(String username, NoteCursor after, int limit);
+    NoteChanges getChanges(String username, NoteChangeCursor since, int limit);
+    void streamNotesByUsername(String username, Consumer<Note> consumer);
+    Optional<Long> getNoteContentSize(NoteVersion version) throws IOException;
+    boolean writeNoteContent(NoteVersion version, long offset, long length, OutputStream output) throws IOException;
+    List<NoteSearchResult> searchNotes(String username, String query, int limit);
+    void rebuildSearchIndex();
     Note saveNote(Note note);
+    Note saveNote(Note note, long maxContentLength);
     void deleteNote(Note note);
+    Optional<Note> updateNote(long id, String username, Consumer<Note> update);
+    Optional<Note> updateNote(long id, String username, long maxContentLength, Consumer<Note> update);
+    boolean deleteNote(long id, String username);
+    List<NoteBatchResult> applyBatch(String username, List<NoteBatchOperation> operations);
 }
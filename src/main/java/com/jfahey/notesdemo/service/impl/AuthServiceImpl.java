@@ -1,5 +1,8 @@
 package com.jfahey.notesdemo.service.impl;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -12,6 +15,8 @@ import com.jfahey.notesdemo.dto.LoginRequest;
 import com.jfahey.notesdemo.dto.RegisterRequest;
 import com.jfahey.notesdemo.model.User;
 import com.jfahey.notesdemo.repository.UserRepository;
+import com.jfahey.notesdemo.security.PasswordHashingExecutor;
+import com.jfahey.notesdemo.security.PasswordHashingExecutor.Operation;
 import com.jfahey.notesdemo.service.AuthService;
 
 @Service
@@ -26,17 +31,18 @@ public class AuthServiceImpl implements AuthService{
     @Autowired
     private PasswordEncoder encoder;
 
+    @Autowired
+    private PasswordHashingExecutor hashingExecutor;
+
     @Override
-    public Authentication login(LoginRequest request) {
+    public CompletableFuture<Authentication> login(LoginRequest request) {
 
-        Authentication authentication = authenticationManager.authenticate(
+        // sessions are stateless, so the authentication is only used to issue the token:
+        // it isn't put in the (hashing thread's) security context
+        return hashingExecutor.submit(Operation.LOGIN, () -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.getUsername(), request.getPassword())
-        );
-            
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-
-        return authentication;
+        ));
     }
 
     @Override
@@ -61,7 +67,13 @@ public class AuthServiceImpl implements AuthService{
     }
 
     private String encodePassword(String password){
-        return encoder.encode(password);
+        try {
+            return hashingExecutor.submit(Operation.REGISTER, () -> encoder.encode(password)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
     }
 
     @Override
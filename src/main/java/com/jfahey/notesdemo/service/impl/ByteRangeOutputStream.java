@@ -0,0 +1,54 @@
+package com.jfahey.notesdemo.service.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes on only the bytes at positions <code>[start, end)</code> of everything
+ * written to it, and counts (but drops) the rest.
+ */
+final class ByteRangeOutputStream extends FilterOutputStream {
+
+    private final long start;
+    private final long end;
+    private long position;
+
+    ByteRangeOutputStream(OutputStream out, long start, long end) {
+        super(out);
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position >= start && position < end) {
+            out.write(b);
+        }
+        position++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        long from = Math.max(start, position);
+        long to = Math.min(end, position + length);
+        if (from < to) {
+            out.write(bytes, offset + (int) (from - position), (int) (to - from));
+        }
+        position += length;
+    }
+
+    /**
+     * @return number of bytes written so far, including dropped ones
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * @return <code>true</code> once the whole range has been passed on
+     */
+    boolean isComplete() {
+        return position >= end;
+    }
+}
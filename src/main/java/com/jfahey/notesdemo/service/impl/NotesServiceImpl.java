@@ -1,41 +1,505 @@
 package com.jfahey.notesdemo.service.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.jfahey.notesdemo.cache.NoteCache;
+import com.jfahey.notesdemo.dto.NoteBatchOperation;
+import com.jfahey.notesdemo.dto.NoteBatchResult;
+import com.jfahey.notesdemo.dto.NoteChangeCursor;
+import com.jfahey.notesdemo.dto.NoteChanges;
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+import com.jfahey.notesdemo.dto.NoteCursor;
+import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.dto.NoteSearchResult;
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteVersion;
 import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.model.NoteChange;
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+import com.jfahey.notesdemo.model.NoteChangeFeed;
+import com.jfahey.notesdemo.repository.NoteContentRepository;
 import com.jfahey.notesdemo.repository.NoteRepository;
+import com.jfahey.notesdemo.repository.NoteSummaryView;
+import com.jfahey.notesdemo.search.NoteSearchIndex;
+import com.jfahey.notesdemo.security.exception.ContentTooLargeException;
 import com.jfahey.notesdemo.service.NotesService;
+import com.jfahey.notesdemo.sync.NoteChangeLog;
+
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 
 @Service
 public class NotesServiceImpl implements NotesService {
 
+    private static final Logger logger = LoggerFactory.getLogger(NotesServiceImpl.class);
+
     private NoteRepository noteRepository;
 
-    public NotesServiceImpl(NoteRepository noteRepository){
+    private NoteContentRepository noteContentRepository;
+
+    private EntityManager entityManager;
+
+    private NoteSearchIndex searchIndex;
+
+    private NoteCache noteCache;
+
+    private NoteChangeLog noteChangeLog;
+
+    private ApplicationEventPublisher events;
+
+    private Validator validator;
+
+    public NotesServiceImpl(NoteRepository noteRepository, NoteContentRepository noteContentRepository,
+        EntityManager entityManager, NoteSearchIndex searchIndex, NoteCache noteCache,
+        NoteChangeLog noteChangeLog, ApplicationEventPublisher events, Validator validator){
         this.noteRepository = noteRepository;
+        this.noteContentRepository = noteContentRepository;
+        this.entityManager = entityManager;
+        this.searchIndex = searchIndex;
+        this.noteCache = noteCache;
+        this.noteChangeLog = noteChangeLog;
+        this.events = events;
+        this.validator = validator;
+        // searches wait (and index writes are queued) until the startup rebuild below
+        searchIndex.beginRebuild();
     }
 
+    /**
+     * Read through the note cache; the note is returned with its content.
+     */
     @Override
     public Optional<Note> getNoteById(long id) {
-        return noteRepository.findById(id);
+        return Optional.ofNullable(noteCache.get(id, key -> noteRepository.findWithContentById(key).orElse(null)));
     }
 
+    /**
+     * Read through the note cache. A cached note is only returned to its owner.
+     */
+    @Override
+    public Optional<Note> getNote(long id, String username) {
+        Note note = noteCache.get(id, key -> noteRepository.findWithContentByIdAndUsername(key, username).orElse(null));
+        return Optional.ofNullable(note).filter(n -> username.equals(n.getUsername()));
+    }
+
+    /**
+     * Taken from the note cache if the note is there, otherwise queried (without
+     * caching, as conditional requests don't need the content).
+     */
+    @Override
+    public Optional<NoteVersion> getNoteVersion(long id, String username) {
+        Note cached = noteCache.peek(id);
+        if (cached != null) {
+            return Optional.of(NoteVersion.of(cached)).filter(version -> username.equals(version.getUsername()));
+        }
+        return noteRepository.findVersionByIdAndUsername(id, username);
+    }
+
+    @Override
+    public NoteCollectionVersion getNoteCollectionVersion(String username) {
+        return noteRepository.findCollectionVersionByUsername(username);
+    }
+
+    /**
+     * Read through the user's cached listing.
+     */
     @Override
     public List<Note> getNotesByUsername(String username) {
-        return noteRepository.findByUsername(username);
+        return noteCache.getListing(username, noteRepository::findByUsername);
+    }
+
+    @Override
+    public List<Note> getNotesByUsername(String username, NoteCursor after, int limit) {
+        PageRequest page = PageRequest.ofSize(limit);
+        if (after == null) {
+            return noteRepository.findPageByUsername(username, page);
+        }
+        return noteRepository.findPageByUsernameAfter(
+            username, after.getLastUpdated(), after.getId(), page);
+    }
+
+    @Override
+    public List<NoteSummary> getNoteSummariesByUsername(String username, NoteCursor after, int limit) {
+        PageRequest page = PageRequest.ofSize(limit);
+        List<NoteSummaryView> views = after == null
+            ? noteRepository.findSummaryPageByUsername(username, page)
+            : noteRepository.findSummaryPageByUsernameAfter(
+                username, after.getLastUpdated(), after.getId(), page);
+        return views.stream()
+            .map(view -> new NoteSummary(
+                view.getId(),
+                view.getTitle(),
+                view.getLastUpdated(),
+                view.getContentLength(),
+                view.getExcerpt()))
+            .toList();
+    }
+
+    /**
+     * Read the user's change log after the cursor, then load the current state
+     * of the notes it lists as changed (one query). Notes deleted since they were
+     * logged as changed are reported as deleted.
+     * <p>
+     * The log's position is read after its entries, so a compaction committed in
+     * between can only cause an unneeded reset, never a missed tombstone.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public NoteChanges getChanges(String username, NoteChangeCursor since, int limit) {
+        List<NoteChange> changes = since == null
+            ? List.of()
+            : noteChangeLog.getChanges(username, since.getSequence(), limit + 1);
+        Optional<NoteChangeFeed> feed = noteChangeLog.getFeed(username);
+        long lastSequence = feed.map(NoteChangeFeed::getLastSequence).orElse(0L);
+        long compactedThrough = feed.map(NoteChangeFeed::getCompactedThrough).orElse(0L);
+
+        if (since == null || since.getSequence() < compactedThrough || since.getSequence() > lastSequence) {
+            return NoteChanges.reset(new NoteChangeCursor(lastSequence).encode());
+        }
+
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+        List<Long> upsertIds = changes.stream()
+            .filter(change -> change.getType() == NoteChange.Type.UPSERT)
+            .map(NoteChange::getNoteId)
+            .toList();
+        Map<Long, Note> notes = upsertIds.isEmpty() ? Map.of() : noteRepository
+            .findAllWithContentByIdInAndUsername(upsertIds, username)
+            .stream()
+            .collect(Collectors.toMap(Note::getId, Function.identity()));
+
+        List<Note> upserts = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (NoteChange change : changes) {
+            Note note = notes.get(change.getNoteId());
+            if (note != null) {
+                upserts.add(note);
+            } else {
+                deleted.add(change.getNoteId());
+            }
+        }
+        long cursor = changes.isEmpty() ? since.getSequence() : changes.get(changes.size() - 1).getSequence();
+        return new NoteChanges(upserts, deleted, new NoteChangeCursor(cursor).encode(), hasMore, false);
+    }
+
+    /**
+     * Feed each of the user's notes to the consumer as it is read from the database.
+     * Every note is detached once consumed so the persistence context (and heap)
+     * stays flat regardless of how many notes the user has.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamNotesByUsername(String username, Consumer<Note> consumer) {
+        try (Stream<Note> notes = noteRepository.streamByUsername(username)) {
+            notes.forEach(note -> {
+                consumer.accept(note);
+                entityManager.detach(note);
+            });
+        }
+    }
+
+    /**
+     * Size of the note's content in UTF-8 bytes, as stored alongside it. Only notes
+     * saved before the size was stored have it counted while streaming the content
+     * from the database (the content is not held in memory).
+     * @return the size, or empty if the note no longer exists at that version
+     */
+    @Override
+    public Optional<Long> getNoteContentSize(NoteVersion version) throws IOException {
+        Optional<Long> size = noteContentRepository.readContentBytes(
+            version.getId(), version.getUsername(), version.getLastUpdated());
+        if (size.isPresent()) {
+            return size;
+        }
+        return noteContentRepository.readContent(version.getId(), version.getUsername(), version.getLastUpdated(),
+            content -> copy(content, new ByteRangeOutputStream(OutputStream.nullOutputStream(), 0, Long.MAX_VALUE)));
+    }
+
+    /**
+     * Write a byte range of the note's UTF-8 encoded content straight from the
+     * database to the output, using a fixed-size buffer whatever the note's size.
+     * Content before the range is still read (and dropped), since byte offsets
+     * can't be mapped to positions in the stored, possibly compressed, text.
+     * @param offset position of the first byte to write
+     * @param length number of bytes to write, or -1 for the rest of the content
+     * @return <code>false</code> if the note no longer exists at that version
+     */
+    @Override
+    public boolean writeNoteContent(NoteVersion version, long offset, long length, OutputStream output)
+        throws IOException {
+        long end = length < 0 ? Long.MAX_VALUE : offset + length;
+        return noteContentRepository.readContent(version.getId(), version.getUsername(), version.getLastUpdated(),
+            content -> copy(content, new ByteRangeOutputStream(output, offset, end))).isPresent();
+    }
+
+    /**
+     * Encode the content as UTF-8 into the output, stopping once its range is complete.
+     * @return number of bytes encoded
+     */
+    private static long copy(Reader content, ByteRangeOutputStream output) throws IOException {
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        char[] buffer = new char[8192];
+        int count;
+        // the writer buffers its bytes, so this reads at most one buffer past the range
+        while (!output.isComplete() && (count = content.read(buffer)) >= 0) {
+            writer.write(buffer, 0, count);
+        }
+        writer.flush();
+        return output.position();
+    }
+
+    /**
+     * Rank the user's notes against the query using the in-memory search index,
+     * then load just the top hits to build their snippets. Hits whose note has
+     * meanwhile been deleted (or changed hands) are dropped.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<NoteSearchResult> searchNotes(String username, String query, int limit) {
+        List<NoteSearchIndex.Hit> hits = searchIndex.search(username, query, limit);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Note> notes = noteRepository
+            .findAllWithContentByIdInAndUsername(hits.stream().map(NoteSearchIndex.Hit::noteId).toList(), username)
+            .stream()
+            .collect(Collectors.toMap(Note::getId, Function.identity()));
+
+        Set<String> terms = NoteSearchIndex.terms(query);
+        List<NoteSearchResult> results = new ArrayList<>(hits.size());
+        for (NoteSearchIndex.Hit hit : hits) {
+            Note note = notes.get(hit.noteId());
+            if (note != null) {
+                results.add(new NoteSearchResult(note.getId(), note.getTitle(), note.getLastUpdated(),
+                    hit.score(), NoteSearchIndex.snippet(note.getContent(), terms)));
+            }
+        }
+        return results;
     }
 
+    /**
+     * (Re)build the search index from the notes table. Runs once on startup;
+     * from then on the index is maintained incrementally as notes change, and
+     * only rebuilt if changes made on other instances may have been missed
+     * (see NoteSearchReplicator). Rebuilds run one at a time.
+     */
     @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildSearchIndex() {
+        long start = System.currentTimeMillis();
+        long[] count = {0};
+        searchIndex.rebuild(loader -> {
+            try (Stream<Note> notes = noteRepository.streamAll()) {
+                notes.forEach(note -> {
+                    loader.index(note.getId(), note.getUsername(), note.getTitle(), note.getContent());
+                    entityManager.detach(note);
+                    count[0]++;
+                });
+            }
+        });
+        logger.info("Indexed {} notes for search in {} ms", count[0], System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Save a note whose content is at most {@link NoteRequest#MAX_CONTENT_LENGTH} characters.
+     * @throws ContentTooLargeException (413) if the content is longer
+     */
+    @Override
+    @Transactional
     public Note saveNote(Note note) {
-        return noteRepository.save(note);
+        return saveNote(note, NoteRequest.MAX_CONTENT_LENGTH);
+    }
+
+    @Override
+    @Transactional
+    public Note saveNote(Note note, long maxContentLength) {
+        checkContentLength(note, maxContentLength);
+        Note saved = noteRepository.save(note);
+        noteChangeLog.record(saved.getUsername(), saved.getId(), NoteChange.Type.UPSERT);
+        return saved;
     }
 
     @Override
+    @Transactional
     public void deleteNote(Note note) {
         noteRepository.delete(note);
+        noteChangeLog.record(note.getUsername(), note.getId(), NoteChange.Type.DELETE);
+    }
+
+    /**
+     * Load the user's note and apply the update to it within one transaction.
+     * The stored content is only read if the update reads it (e.g. to apply a delta).
+     * The changes are flushed at commit as a single versioned UPDATE, so a
+     * concurrent change since the note was read fails the whole update.
+     * The updated content is held to {@link NoteRequest#MAX_CONTENT_LENGTH} characters.
+     * @return the updated note, or empty if the note doesn't exist or isn't the user's
+     * @throws ContentTooLargeException (413) if the update makes the content longer
+     */
+    @Override
+    @Transactional
+    public Optional<Note> updateNote(long id, String username, Consumer<Note> update) {
+        return updateNote(id, username, NoteRequest.MAX_CONTENT_LENGTH, update);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Note> updateNote(long id, String username, long maxContentLength, Consumer<Note> update) {
+        Optional<Note> note = noteRepository.findByIdAndUsername(id, username);
+        note.ifPresent(update
+            .andThen(updated -> checkContentLength(updated, maxContentLength))
+            .andThen(updated -> noteChangeLog.record(username, id, NoteChange.Type.UPSERT)));
+        return note;
+    }
+
+    /**
+     * Checked on the note as it is about to be written (e.g. after a delta is
+     * applied), so the limit holds however the content was built. Content that
+     * wasn't set isn't read.
+     */
+    private static void checkContentLength(Note note, long maxContentLength) {
+        if (note.isContentModified() && note.getContent() != null && note.getContent().length() > maxContentLength) {
+            throw new ContentTooLargeException("Content can be at most " + maxContentLength + " characters.");
+        }
+    }
+
+    /**
+     * Delete the user's note with a single statement, without loading it.
+     * @return <code>true</code> if the note existed and was the user's
+     */
+    @Override
+    @Transactional
+    public boolean deleteNote(long id, String username) {
+        if (noteRepository.deleteByIdAndUsername(id, username) == 0) {
+            return false;
+        }
+        // bulk deletes don't trigger entity listeners
+        events.publishEvent(NoteChangedEvent.deleted(id, username));
+        noteChangeLog.record(username, id, NoteChange.Type.DELETE);
+        return true;
+    }
+
+    /**
+     * Apply a mixed list of creates, updates and deletes for one user in a single
+     * transaction. The notes targeted by updates and deletes are loaded (and
+     * ownership-checked) with one query, without their content; the resulting statements are flushed
+     * together at commit, where Hibernate sends them as JDBC batches.
+     * <p>
+     * Operations that can't be applied (unknown or foreign note, missing title)
+     * are reported per item and don't abort the rest of the batch.
+     */
+    @Override
+    @Transactional
+    public List<NoteBatchResult> applyBatch(String username, List<NoteBatchOperation> operations) {
+
+        List<Long> ids = operations.stream()
+            .filter(op -> op.getOp() != NoteBatchOperation.Type.CREATE)
+            .map(NoteBatchOperation::getId)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+
+        Map<Long, Note> ownedNotes = new HashMap<>();
+        for (Note note : noteRepository.findAllByIdInAndUsername(ids, username)) {
+            ownedNotes.put(note.getId(), note);
+        }
+
+        List<NoteBatchResult> results = new ArrayList<>(operations.size());
+        Map<Long, NoteChange.Type> changes = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            NoteBatchResult result = applyOperation(i, operations.get(i), username, ownedNotes);
+            if (result.getError() == null) {
+                changes.put(result.getId(), result.getOp() == NoteBatchOperation.Type.DELETE
+                    ? NoteChange.Type.DELETE : NoteChange.Type.UPSERT);
+            }
+            results.add(result);
+        }
+        noteChangeLog.record(username, changes);
+        return results;
+    }
+
+    private NoteBatchResult applyOperation(int index, NoteBatchOperation operation,
+        String username, Map<Long, Note> ownedNotes) {
+
+        // checked per operation, so that an invalid one can't fail the others at flush
+        Set<ConstraintViolation<NoteBatchOperation>> violations = validator.validate(operation);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<NoteBatchOperation> violation = violations.iterator().next();
+            return failure(index, operation, HttpStatus.BAD_REQUEST,
+                violation.getPropertyPath() + " " + violation.getMessage());
+        }
+
+        NoteBatchOperation.Type type = operation.getOp();
+
+        if (type == NoteBatchOperation.Type.CREATE) {
+            if (operation.getTitle() == null) {
+                return failure(index, operation, HttpStatus.BAD_REQUEST, "Title is required.");
+            }
+            Note note = noteRepository.save(
+                new Note(operation.getTitle(), username, operation.getContent()));
+            return success(index, operation, HttpStatus.CREATED, note);
+        }
+
+        Note note = operation.getId() == null ? null : ownedNotes.get(operation.getId());
+        if (note == null) {
+            return failure(index, operation, HttpStatus.NOT_FOUND, "Note not found.");
+        }
+
+        if (type == NoteBatchOperation.Type.UPDATE) {
+            if (operation.getTitle() == null) {
+                return failure(index, operation, HttpStatus.BAD_REQUEST, "Title is required.");
+            }
+            // managed entity: the update is flushed with the rest of the batch
+            note.setTitle(operation.getTitle());
+            note.setContent(operation.getContent());
+            note.setLastUpdated(LocalDateTime.now());
+            return success(index, operation, HttpStatus.OK, note);
+        }
+
+        noteRepository.delete(note);
+        ownedNotes.remove(note.getId());
+        return success(index, operation, HttpStatus.OK, note);
+    }
+
+    private static NoteBatchResult success(int index, NoteBatchOperation operation, HttpStatus status, Note note) {
+        return new NoteBatchResult(index, operation.getOp(), status.value(),
+            note.getId(), note.getLastUpdated(), null);
+    }
+
+    private static NoteBatchResult failure(int index, NoteBatchOperation operation, HttpStatus status, String error) {
+        return new NoteBatchResult(index, operation.getOp(), status.value(),
+            operation.getId(), null, error);
     }
     
 }
@@ -0,0 +1,119 @@
+package com.jfahey.notesdemo.sync;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jfahey.notesdemo.model.NoteChange;
+import com.jfahey.notesdemo.model.NoteChangeFeed;
+import com.jfahey.notesdemo.repository.NoteChangeFeedRepository;
+import com.jfahey.notesdemo.repository.NoteChangeRepository;
+import com.jfahey.notesdemo.repository.UserRepository;
+
+/**
+ * Per-user log of note changes, so clients can sync just what changed since
+ * they last did (see <code>/notes/changes</code>) instead of re-reading every note.
+ * <p>
+ * Changes are recorded in the transaction that makes them, so the log can't
+ * disagree with the notes table. Each user's changes are numbered while holding
+ * the lock on the user's row, so they are numbered in commit order and a client
+ * reading past a number can't later miss a lower one.
+ * <p>
+ * The log is compacted as it is written: a note's new entry replaces its
+ * previous one, and every <code>app.notes.changes.compactevery</code> changes
+ * the user's tombstones older than <code>app.notes.changes.tombstonettlms</code>,
+ * or beyond the newest <code>app.notes.changes.maxtombstones</code>, are dropped.
+ * Clients whose cursor predates dropped tombstones must then sync in full.
+ */
+@Component
+public class NoteChangeLog {
+
+    private final NoteChangeRepository changeRepository;
+    private final NoteChangeFeedRepository feedRepository;
+    private final UserRepository userRepository;
+    private final Duration tombstoneTtl;
+    private final int maxTombstones;
+    private final int compactEvery;
+
+    public NoteChangeLog(
+        NoteChangeRepository changeRepository,
+        NoteChangeFeedRepository feedRepository,
+        UserRepository userRepository,
+        @Value("${app.notes.changes.tombstonettlms:2592000000}") long tombstoneTtlMs,
+        @Value("${app.notes.changes.maxtombstones:10000}") int maxTombstones,
+        @Value("${app.notes.changes.compactevery:100}") int compactEvery) {
+
+        this.changeRepository = changeRepository;
+        this.feedRepository = feedRepository;
+        this.userRepository = userRepository;
+        this.tombstoneTtl = Duration.ofMillis(tombstoneTtlMs);
+        this.maxTombstones = maxTombstones;
+        this.compactEvery = Math.max(1, compactEvery);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String username, long noteId, NoteChange.Type type) {
+        record(username, Map.of(noteId, type));
+    }
+
+    /**
+     * Record changes to the user's notes, in the caller's transaction.
+     * @param changes type of change by note id
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String username, Map<Long, NoteChange.Type> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        userRepository.findForUpdateByUsername(username);
+        NoteChangeFeed feed = feedRepository.findById(username)
+            .orElseGet(() -> feedRepository.save(new NoteChangeFeed(username)));
+        long previous = feed.getLastSequence();
+
+        changeRepository.deleteByUsernameAndNoteIdIn(username, changes.keySet());
+        LocalDateTime now = LocalDateTime.now();
+        List<NoteChange> entries = new ArrayList<>(changes.size());
+        changes.forEach((noteId, type) -> entries.add(new NoteChange(username, feed.nextSequence(), noteId, type, now)));
+        changeRepository.saveAll(entries);
+
+        if (previous / compactEvery != feed.getLastSequence() / compactEvery) {
+            compact(feed);
+        }
+    }
+
+    /**
+     * @return up to <code>limit</code> of the user's changes numbered after <code>since</code>, oldest first
+     */
+    @Transactional(readOnly = true)
+    public List<NoteChange> getChanges(String username, long since, int limit) {
+        return changeRepository.findByUsernameAfter(username, since, PageRequest.ofSize(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<NoteChangeFeed> getFeed(String username) {
+        return feedRepository.findById(username);
+    }
+
+    private void compact(NoteChangeFeed feed) {
+        String username = feed.getUsername();
+        Long expired = changeRepository.findLastSequenceBefore(
+            username, NoteChange.Type.DELETE, LocalDateTime.now().minus(tombstoneTtl));
+        List<Long> excess = changeRepository.findSequencesByType(
+            username, NoteChange.Type.DELETE, PageRequest.of(maxTombstones, 1));
+
+        long through = Math.max(expired == null ? 0 : expired, excess.isEmpty() ? 0 : excess.get(0));
+        if (through > feed.getCompactedThrough()) {
+            changeRepository.deleteByTypeThrough(username, NoteChange.Type.DELETE, through);
+            feed.setCompactedThrough(through);
+        }
+    }
+}
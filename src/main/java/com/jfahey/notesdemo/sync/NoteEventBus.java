@@ -0,0 +1,53 @@
+package com.jfahey.notesdemo.sync;
+
+import com.jfahey.notesdemo.cache.AbstractInvalidationBus;
+import com.jfahey.notesdemo.cache.CacheInvalidationBus;
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+
+/**
+ * Carries note events between the instances of the application, so the
+ * {@link NoteEventHub} of each can push them to the clients connected to it.
+ * <p>
+ * Events use the transports of the {@link CacheInvalidationBus} but travel on
+ * a connection (or in-JVM channel) of their own, configured in {@link NoteEventBusConfig}:
+ * they don't compete with cache invalidations, and losing some only has
+ * event streams reset rather than every cache dropping its entries.
+ */
+public class NoteEventBus {
+
+    private static final String EVENTS = "noteEvents";
+
+    /** Receives the events published by other instances. */
+    public interface Listener {
+
+        void onEvent(NoteChangedEvent.Type type, long noteId, String username);
+
+        /** Events may have been lost. */
+        void onEventsLost();
+    }
+
+    private final AbstractInvalidationBus transport;
+
+    public NoteEventBus(AbstractInvalidationBus transport) {
+        this.transport = transport;
+    }
+
+    public void publish(NoteChangedEvent.Type type, long noteId, String username) {
+        transport.publish(EVENTS, type + ":" + noteId + ":" + username);
+    }
+
+    public void subscribe(Listener listener) {
+        transport.subscribe(EVENTS, key -> {
+            if (key == null) {
+                listener.onEventsLost();
+                return;
+            }
+            String[] parts = key.split(":", 3);
+            listener.onEvent(NoteChangedEvent.Type.valueOf(parts[0]), Long.parseLong(parts[1]), parts[2]);
+        });
+    }
+
+    public void close() {
+        transport.close();
+    }
+}
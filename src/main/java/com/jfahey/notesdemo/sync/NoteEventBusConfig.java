@@ -0,0 +1,44 @@
+package com.jfahey.notesdemo.sync;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.jfahey.notesdemo.cache.CacheInvalidationConfig;
+import com.jfahey.notesdemo.cache.InJvmInvalidationBus;
+import com.jfahey.notesdemo.cache.UdpInvalidationBus;
+
+/**
+ * Chooses the transport of the {@link NoteEventBus} with <code>app.notes.events.bus.type</code>:
+ * <code>jvm</code> (default), on a channel next to the cache bus's, or <code>udp</code>,
+ * on a port and with peers of its own (<code>app.notes.events.bus.udp.port</code>
+ * and <code>peers</code>); the bind address, secret and heartbeat interval are the cache bus's.
+ */
+@Configuration
+public class NoteEventBusConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(NoteEventBus.class)
+    @ConditionalOnProperty(name = "app.notes.events.bus.type", havingValue = "udp")
+    public NoteEventBus udpNoteEventBus(
+        @Value("${app.cache.bus.udp.bind:127.0.0.1}") String bind,
+        @Value("${app.notes.events.bus.udp.port:7602}") int port,
+        @Value("${app.notes.events.bus.udp.peers:}") String peers,
+        @Value("${app.cache.bus.udp.secret:}") String secret,
+        @Value("${app.cache.bus.udp.heartbeatms:1000}") long heartbeatMs) {
+
+        return new NoteEventBus(new UdpInvalidationBus(new InetSocketAddress(bind, port),
+            CacheInvalidationConfig.parsePeers(peers), secret.getBytes(StandardCharsets.UTF_8), heartbeatMs));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(NoteEventBus.class)
+    public NoteEventBus inJvmNoteEventBus(@Value("${app.cache.bus.channel:default}") String channel) {
+        return new NoteEventBus(new InJvmInvalidationBus(channel + "/noteEvents"));
+    }
+}
@@ -0,0 +1,358 @@
+package com.jfahey.notesdemo.sync;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+import com.jfahey.notesdemo.model.NoteChangedEvent.Type;
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes note create, update and delete events to the owner's open
+ * <code>/notes/stream</code> connections (server-sent events), once the
+ * change is committed (so clients reacting to them read the change).
+ * <p>
+ * An open stream holds no servlet thread, only its connection: events are
+ * written by a few sender threads (<code>app.notes.stream.senderthreads</code>).
+ * Publishing never waits on a client. Each subscriber buffers at most
+ * <code>app.notes.stream.buffersize</code> events (heartbeats included);
+ * a client reading too slowly for its buffer to drain is disconnected rather
+ * than let the buffer grow, and catches up through <code>/notes/changes</code>
+ * once it reconnects. Heartbeats every <code>app.notes.stream.heartbeatms</code>
+ * keep idle connections open through proxies and detect dead clients.
+ * <p>
+ * Writes to a client block while its connection is backed up, so a client that
+ * stops reading would hold a sender until the container times the write out.
+ * A subscriber whose write takes longer than <code>app.notes.stream.writetimeoutms</code>
+ * is disconnected, and a replacement sender started for as long as the stalled
+ * write keeps its thread, so the other subscribers keep receiving events.
+ * <p>
+ * At most <code>app.notes.stream.maxsubscribers</code> streams are open at
+ * once (503 beyond that), and <code>app.notes.stream.maxperuser</code> per user,
+ * beyond which the user's oldest stream is closed. Events are also carried to
+ * the other instances over the {@link NoteEventBus}; should the bus lose
+ * any, subscribers are sent a <code>reset</code> event to resync.
+ */
+@Component
+public class NoteEventHub implements MeterBinder {
+
+    private static final Event HEARTBEAT = new Event(null, null);
+    private static final Event RESET = new Event("reset", "{}");
+
+    private final NoteEventBus bus;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final int maxPerUser;
+    private final int senderThreads;
+    private final long writeTimeoutNanos;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService heartbeat;
+
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    /** Subscribers a sender is currently writing to. */
+    private final Set<Subscriber> writing = ConcurrentHashMap.newKeySet();
+    /** Guarded by senders; writes past their deadline that haven't returned yet. */
+    private int stalledWrites;
+    private final LongAdder slowEvictions = new LongAdder();
+    private final LongAdder replacedEvictions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public NoteEventHub(
+        NoteEventBus bus,
+        @Value("${app.notes.stream.timeoutms:1800000}") long timeoutMs,
+        @Value("${app.notes.stream.buffersize:32}") int bufferSize,
+        @Value("${app.notes.stream.maxsubscribers:50000}") int maxSubscribers,
+        @Value("${app.notes.stream.maxperuser:8}") int maxPerUser,
+        @Value("${app.notes.stream.senderthreads:2}") int senderThreads,
+        @Value("${app.notes.stream.writetimeoutms:10000}") long writeTimeoutMs,
+        @Value("${app.notes.stream.heartbeatms:25000}") long heartbeatMs) {
+
+        this.bus = bus;
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.maxPerUser = maxPerUser;
+        this.senderThreads = senderThreads;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        // the pool only grows past senderThreads while writes are stalled, see evictStalledWriters
+        this.senders = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), daemon("note-events-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("note-events-heartbeat-"));
+        this.heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long checkMs = Math.max(1, writeTimeoutMs / 4);
+        this.heartbeat.scheduleAtFixedRate(this::evictStalledWriters, checkMs, checkMs, TimeUnit.MILLISECONDS);
+
+        bus.subscribe(new NoteEventBus.Listener() {
+            @Override
+            public void onEvent(Type type, long noteId, String username) {
+                deliver(username, event(type, noteId));
+            }
+
+            @Override
+            public void onEventsLost() {
+                subscribers.values().forEach(list -> list.forEach(subscriber -> offer(subscriber, RESET)));
+            }
+        });
+    }
+
+    /**
+     * Open a stream of the user's note events.
+     * @throws ServerBusyException if the maximum number of streams is open
+     */
+    public SseEmitter subscribe(String username) {
+        return subscribe(username, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter subscribe(String username, SseEmitter emitter) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            rejected.increment();
+            throw new ServerBusyException("Too many open event streams.");
+        }
+        Subscriber subscriber = new Subscriber(username, emitter);
+        Subscriber[] replaced = new Subscriber[1];
+        subscribers.compute(username, (user, list) -> {
+            List<Subscriber> userSubscribers = list == null ? new CopyOnWriteArrayList<>() : list;
+            userSubscribers.add(subscriber);
+            if (userSubscribers.size() > maxPerUser) {
+                replaced[0] = userSubscribers.get(0);
+            }
+            return userSubscribers;
+        });
+        if (replaced[0] != null && close(replaced[0])) {
+            replacedEvictions.increment();
+        }
+
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+        // sends the response headers right away
+        offer(subscriber, HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * Push an event to the note owner's streams, here and on the other instances.
+     */
+    public void publish(Type type, long noteId, String username) {
+        deliver(username, event(type, noteId));
+        bus.publish(type, noteId, username);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNoteChanged(NoteChangedEvent event) {
+        publish(event.type(), event.id(), event.username());
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void deliver(String username, Event event) {
+        List<Subscriber> userSubscribers = subscribers.get(username);
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> offer(subscriber, event));
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.values().forEach(list -> list.forEach(subscriber -> offer(subscriber, HEARTBEAT)));
+    }
+
+    private void offer(Subscriber subscriber, Event event) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (subscriber.buffered.incrementAndGet() > bufferSize) {
+            subscriber.buffered.decrementAndGet();
+            if (close(subscriber)) {
+                slowEvictions.increment();
+            }
+            return;
+        }
+        subscriber.buffer.add(event);
+        scheduleSend(subscriber);
+    }
+
+    private void scheduleSend(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    /**
+     * Write out the subscriber's buffered events, or complete its response once
+     * it is closed. Only one sender works on a subscriber at a time.
+     */
+    private void send(Subscriber subscriber) {
+        try {
+            Event event;
+            while (!subscriber.closed.get() && (event = subscriber.buffer.poll()) != null) {
+                subscriber.buffered.decrementAndGet();
+                write(subscriber, event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client gone, or response already completed
+            close(subscriber);
+        } finally {
+            if (subscriber.closed.get()) {
+                subscriber.buffer.clear();
+                subscriber.emitter.complete();
+            }
+            subscriber.sending.set(false);
+            if (!subscriber.closed.get() && !subscriber.buffer.isEmpty()) {
+                scheduleSend(subscriber);
+            }
+        }
+    }
+
+    private void write(Subscriber subscriber, Event event) throws IOException {
+        subscriber.writeStarted = System.nanoTime();
+        writing.add(subscriber);
+        try {
+            subscriber.emitter.send(event.name() == null
+                ? SseEmitter.event().comment("")
+                : SseEmitter.event().name(event.name()).data(event.data()));
+        } finally {
+            synchronized (subscriber) {
+                writing.remove(subscriber);
+                if (subscriber.stalled) {
+                    subscriber.stalled = false;
+                    resizeSenders(-1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Disconnect subscribers whose current write has taken longer than the write
+     * timeout, and start a sender in place of each stalled one until its write returns.
+     */
+    private void evictStalledWriters() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : writing) {
+            synchronized (subscriber) {
+                if (!writing.contains(subscriber) || subscriber.stalled
+                    || now - subscriber.writeStarted <= writeTimeoutNanos) {
+                    continue;
+                }
+                subscriber.stalled = true;
+                resizeSenders(1);
+            }
+            if (close(subscriber)) {
+                slowEvictions.increment();
+            }
+        }
+    }
+
+    private void resizeSenders(int stalledDelta) {
+        synchronized (senders) {
+            stalledWrites += stalledDelta;
+            senders.setCorePoolSize(senderThreads + stalledWrites);
+        }
+    }
+
+    /**
+     * Unsubscribe, and have a sender complete the response (it may be busy writing to it).
+     * @return <code>false</code> if already closed
+     */
+    private boolean close(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.username, (user, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+        subscriberCount.decrementAndGet();
+        scheduleSend(subscriber);
+        return true;
+    }
+
+    private static Event event(Type type, long noteId) {
+        return new Event(type.name().toLowerCase(), "{\"id\":" + noteId + "}");
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("notes.stream.subscribers", subscriberCount, AtomicInteger::get)
+            .description("Open note event streams")
+            .register(registry);
+        FunctionCounter.builder("notes.stream.evictions", slowEvictions, LongAdder::sum)
+            .description("Note event streams closed by the server")
+            .tag("reason", "slow")
+            .register(registry);
+        FunctionCounter.builder("notes.stream.evictions", replacedEvictions, LongAdder::sum)
+            .description("Note event streams closed by the server")
+            .tag("reason", "replaced")
+            .register(registry);
+        FunctionCounter.builder("notes.stream.rejected", rejected, LongAdder::sum)
+            .description("Note event streams refused as too many were open")
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /** An SSE event; heartbeats (sent as comments) have no name. */
+    private record Event(String name, String data) {}
+
+    private static final class Subscriber {
+
+        private final String username;
+        private final SseEmitter emitter;
+        private final Queue<Event> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /** When the current write started (System.nanoTime()), while in {@link NoteEventHub#writing}. */
+        private volatile long writeStarted;
+        /** Guarded by this; set once the current write is past its deadline. */
+        private boolean stalled;
+
+        private Subscriber(String username, SseEmitter emitter) {
+            this.username = username;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.jfahey.notesdemo.upload;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An open upload session: note content received so far, staged in a temporary
+ * file until the upload is committed into a new or existing note.
+ */
+public class NoteUpload {
+
+    private final String id;
+    private final String username;
+    private final String title;
+    private final Long noteId;
+    private final Path file;
+
+    /** Held while a chunk is appended or the upload is committed. */
+    final ReentrantLock lock = new ReentrantLock();
+
+    private volatile long size;
+    private volatile long lastAccess;
+    private volatile boolean closed;
+
+    NoteUpload(String id, String username, String title, Long noteId, Path file, long now) {
+        this.id = id;
+        this.username = username;
+        this.title = title;
+        this.noteId = noteId;
+        this.file = file;
+        this.lastAccess = now;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return title of the note to create or update, or <code>null</code> to keep an updated note's title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the note whose content is replaced on commit, or <code>null</code> to create a note
+     */
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    /**
+     * @return number of content bytes received so far, i.e. the offset of the next chunk
+     */
+    public long getSize() {
+        return size;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    void setSize(long size) {
+        this.size = size;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch(long now) {
+        this.lastAccess = now;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        this.closed = true;
+    }
+}
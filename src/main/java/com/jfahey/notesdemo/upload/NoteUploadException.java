@@ -0,0 +1,22 @@
+package com.jfahey.notesdemo.upload;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * An upload request that can't be served, with the HTTP status to answer it with.
+ */
+public class NoteUploadException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HttpStatus status;
+
+    public NoteUploadException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
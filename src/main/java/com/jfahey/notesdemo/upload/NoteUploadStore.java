@@ -0,0 +1,273 @@
+package com.jfahey.notesdemo.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Staging area for note content uploaded in chunks. Every upload session
+ * appends its chunks to its own temporary file as they arrive, so neither a
+ * chunk nor the whole content is held in memory while it is received; the
+ * content is only read back once, when the upload is committed into a note.
+ * <p>
+ * Chunks must be sent in order (each at the offset the previous one ended),
+ * and a chunk that fails half way is rolled back, so an interrupted upload
+ * can be resumed from its current size. Uploads are limited in total size,
+ * chunk size and number of open sessions per user. The number of chunks
+ * written at once is capped as well: once it is reached, further chunks are
+ * turned away (to be retried later) instead of tying up request threads.
+ * Sessions left idle for longer than their TTL are discarded, by a periodic
+ * sweep (so abandoned uploads don't keep their files until the next upload).
+ */
+@Component
+public class NoteUploadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteUploadStore.class);
+
+    private final Map<String, NoteUpload> uploads = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final boolean temporaryDirectory;
+    private final long maxBytes;
+    private final long maxChunkBytes;
+    private final int maxSessionsPerUser;
+    private final Semaphore chunkPermits;
+    private final long chunkWaitMs;
+    private final long ttlMs;
+
+    public NoteUploadStore(
+        @Value("${app.upload.dir:}") String directory,
+        @Value("${app.upload.maxbytes:67108864}") long maxBytes,
+        @Value("${app.upload.maxchunkbytes:8388608}") long maxChunkBytes,
+        @Value("${app.upload.maxsessionsperuser:4}") int maxSessionsPerUser,
+        @Value("${app.upload.maxconcurrentchunks:4}") int maxConcurrentChunks,
+        @Value("${app.upload.chunkwaitms:1000}") long chunkWaitMs,
+        @Value("${app.upload.ttlms:3600000}") long ttlMs) throws IOException {
+
+        this.temporaryDirectory = directory.isBlank();
+        this.directory = temporaryDirectory
+            ? Files.createTempDirectory("note-uploads")
+            : Files.createDirectories(Path.of(directory));
+        this.maxBytes = maxBytes;
+        this.maxChunkBytes = maxChunkBytes;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.chunkPermits = new Semaphore(maxConcurrentChunks);
+        this.chunkWaitMs = chunkWaitMs;
+        this.ttlMs = ttlMs;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    /**
+     * Open an upload session for the user.
+     * @param noteId note whose content the upload replaces, or <code>null</code> to create a note
+     * @throws NoteUploadException (429) if the user already has the maximum number of open uploads
+     */
+    public NoteUpload create(String username, String title, Long noteId) throws IOException {
+        expire();
+        NoteUpload upload;
+        synchronized (this) {
+            long open = uploads.values().stream().filter(u -> u.getUsername().equals(username)).count();
+            if (open >= maxSessionsPerUser) {
+                throw new NoteUploadException(HttpStatus.TOO_MANY_REQUESTS,
+                    "At most " + maxSessionsPerUser + " uploads can be open at once.");
+            }
+            String id = UUID.randomUUID().toString();
+            upload = new NoteUpload(id, username, title, noteId,
+                Files.createFile(directory.resolve(id + ".part")), System.currentTimeMillis());
+            uploads.put(id, upload);
+        }
+        return upload;
+    }
+
+    /**
+     * @throws NoteUploadException (404) if there is no such open upload of the user
+     */
+    public NoteUpload get(String uploadId, String username) {
+        NoteUpload upload = uploads.get(uploadId);
+        long now = System.currentTimeMillis();
+        if (upload == null || !upload.getUsername().equals(username) || upload.isClosed() || isExpired(upload, now)) {
+            throw new NoteUploadException(HttpStatus.NOT_FOUND, "Upload not found.");
+        }
+        upload.touch(now);
+        return upload;
+    }
+
+    /**
+     * Append a chunk to the upload, streaming it from the input to the upload's
+     * file. If the chunk fails or exceeds a limit, the upload is left as it was.
+     * @param offset the upload's current size; anything else is rejected (409)
+     * @throws NoteUploadException (413) if the chunk or the whole upload gets too large,
+     * (503) if too many chunks are being written at once
+     */
+    public NoteUpload append(String uploadId, String username, long offset, InputStream chunk) throws IOException {
+        NoteUpload upload = get(uploadId, username);
+        if (!upload.lock.tryLock()) {
+            throw new NoteUploadException(HttpStatus.CONFLICT, "Upload is busy with another request.");
+        }
+        try {
+            checkOpen(upload);
+            if (offset != upload.getSize()) {
+                throw new NoteUploadException(HttpStatus.CONFLICT,
+                    "Chunk offset must be " + upload.getSize() + ", not " + offset + ".");
+            }
+            acquireChunkPermit();
+            try {
+                upload.setSize(write(upload, chunk));
+            } finally {
+                chunkPermits.release();
+            }
+            upload.touch(System.currentTimeMillis());
+            return upload;
+        } finally {
+            upload.lock.unlock();
+        }
+    }
+
+    /**
+     * Hand the upload's content to <code>commit</code> (e.g. to store it in a note),
+     * then discard the upload. If <code>commit</code> fails, the upload stays open
+     * so the commit can be retried.
+     * @throws NoteUploadException (400) if the uploaded bytes are not valid UTF-8
+     */
+    public <T> T commit(String uploadId, String username, BiFunction<NoteUpload, String, T> commit) throws IOException {
+        NoteUpload upload = get(uploadId, username);
+        if (!upload.lock.tryLock()) {
+            throw new NoteUploadException(HttpStatus.CONFLICT, "Upload is busy with another request.");
+        }
+        try {
+            checkOpen(upload);
+            String content;
+            try {
+                content = Files.readString(upload.getFile());
+            } catch (CharacterCodingException e) {
+                throw new NoteUploadException(HttpStatus.BAD_REQUEST, "Uploaded content is not valid UTF-8.");
+            }
+            T result = commit.apply(upload, content);
+            discard(upload);
+            return result;
+        } finally {
+            upload.lock.unlock();
+        }
+    }
+
+    /**
+     * Abandon an upload and delete what was received.
+     */
+    public void remove(String uploadId, String username) {
+        NoteUpload upload = get(uploadId, username);
+        upload.lock.lock();
+        try {
+            discard(upload);
+        } finally {
+            upload.lock.unlock();
+        }
+    }
+
+    /**
+     * Discard every upload that has been idle for longer than the TTL.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.sweepms:60000}", initialDelayString = "${app.upload.sweepms:60000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        for (NoteUpload upload : uploads.values()) {
+            if (isExpired(upload, now) && upload.lock.tryLock()) {
+                try {
+                    discard(upload);
+                } finally {
+                    upload.lock.unlock();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void clear() throws IOException {
+        uploads.values().forEach(this::discard);
+        if (temporaryDirectory) {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private long write(NoteUpload upload, InputStream chunk) throws IOException {
+        long start = upload.getSize();
+        long limit = Math.min(maxChunkBytes, maxBytes - start);
+        try (FileChannel channel = FileChannel.open(upload.getFile(), StandardOpenOption.WRITE)) {
+            channel.position(start);
+            try {
+                byte[] buffer = new byte[8192];
+                long written = 0;
+                int count;
+                while ((count = chunk.read(buffer)) >= 0) {
+                    written += count;
+                    if (written > limit) {
+                        throw new NoteUploadException(HttpStatus.PAYLOAD_TOO_LARGE, written > maxChunkBytes
+                            ? "Chunks can be at most " + maxChunkBytes + " bytes."
+                            : "Uploads can be at most " + maxBytes + " bytes.");
+                    }
+                    channel.write(ByteBuffer.wrap(buffer, 0, count));
+                }
+                return start + written;
+            } catch (IOException | RuntimeException e) {
+                channel.truncate(start);
+                throw e;
+            }
+        }
+    }
+
+    private void acquireChunkPermit() {
+        try {
+            if (chunkPermits.tryAcquire(chunkWaitMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new NoteUploadException(HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress, retry later.");
+    }
+
+    private static void checkOpen(NoteUpload upload) {
+        if (upload.isClosed()) {
+            throw new NoteUploadException(HttpStatus.NOT_FOUND, "Upload not found.");
+        }
+    }
+
+    private boolean isExpired(NoteUpload upload, long now) {
+        return now - upload.getLastAccess() > ttlMs;
+    }
+
+    private void discard(NoteUpload upload) {
+        upload.close();
+        uploads.remove(upload.getId());
+        try {
+            Files.deleteIfExists(upload.getFile());
+        } catch (IOException e) {
+            logger.warn("Could not delete upload file {}", upload.getFile(), e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.jfahey.notesdemo.web;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Caps the number of note requests processed at once. These need a database
+ * connection for (nearly) all of their duration, so admitting more of them than
+ * there are pooled connections only moves the queue into the connection pool,
+ * where waiting requests hold threads (and, once its timeout expires, fail with
+ * a 500). This matters most with virtual threads, which put no bound of their
+ * own on concurrency.
+ * <p>
+ * Requests over the limit wait up to <code>app.server.queuetimeoutms</code>
+ * for a slot, then get 503 with <code>Retry-After</code>. Asynchronous
+ * (streamed) responses, such as listings and content downloads streamed from
+ * the database, keep their slot until they complete. Runs ahead of the security
+ * filter chain.
+ * <p>
+ * Endpoints that spend their time elsewhere are not limited, so they can't take
+ * the slots of the ones that need connections: logins and registrations (queued
+ * for password hashing, see <code>PasswordHashingExecutor</code>), upload chunks
+ * (written to disk), note event streams (open indefinitely) and actuator endpoints.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private final int maxConcurrentRequests;
+    private final long queueTimeoutMs;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    private static final List<PathPattern> LIMITED_PATHS = parse("/notes/**");
+    private static final List<PathPattern> UNLIMITED_PATHS =
+        parse("/actuator/**", "/auth/**", "/notes/uploads/**", "/notes/stream");
+
+    public ConcurrencyLimitFilter(
+        @Value("${app.server.maxconcurrentrequests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentRequests,
+        @Value("${app.server.queuetimeoutms:5000}") long queueTimeoutMs) {
+
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.permits = new Semaphore(Math.max(0, maxConcurrentRequests), true);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (maxConcurrentRequests <= 0) {
+            return true;
+        }
+        PathContainer path = PathContainer.parsePath(
+            request.getRequestURI().substring(request.getContextPath().length()));
+        return LIMITED_PATHS.stream().noneMatch(pattern -> pattern.matches(path))
+            || UNLIMITED_PATHS.stream().anyMatch(pattern -> pattern.matches(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        if (!acquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server busy, retry later.");
+            return;
+        }
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener());
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("http.server.requests.limit.active", permits,
+                p -> maxConcurrentRequests - p.availablePermits())
+            .description("Requests currently holding a concurrency limiter slot")
+            .register(registry);
+        Gauge.builder("http.server.requests.limit.queued", permits, Semaphore::getQueueLength)
+            .description("Requests waiting for a concurrency limiter slot")
+            .register(registry);
+        FunctionCounter.builder("http.server.requests.limit.rejected", rejected, LongAdder::sum)
+            .description("Requests turned away by the concurrency limiter")
+            .register(registry);
+    }
+
+    private static List<PathPattern> parse(String... patterns) {
+        return List.of(patterns).stream().map(PathPatternParser.defaultInstance::parse).toList();
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Frees the slot of an asynchronous request once its response is complete. */
+    private final class ReleasingListener implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // followed by onComplete
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // followed by onComplete
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // re-registered by the container for the new async cycle
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jfahey.notesdemo.web;
+
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Request execution mode, chosen with <code>app.server.virtualthreads</code>:
+ * <ul>
+ * <li><code>false</code> (default): Tomcat's pool of platform threads;</li>
+ * <li><code>true</code>: every request, from the security filter chain down to its
+ * JPA calls, runs on its own virtual thread (requires Java 21), as do the tasks
+ * writing asynchronous (streamed) responses. Blocking on JDBC or password hashing
+ * then parks a cheap virtual thread instead of occupying a pool thread.</li>
+ * </ul>
+ * Either way the number of database-bound requests in progress is bounded by {@link ConcurrencyLimitFilter}.
+ */
+@Configuration
+public class RequestExecutionConfig implements WebMvcConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutionConfig.class);
+
+    private final ExecutorService virtualThreadExecutor;
+
+    public RequestExecutionConfig(@Value("${app.server.virtualthreads:false}") boolean virtualThreads) {
+        this.virtualThreadExecutor = virtualThreads ? VirtualThreads.newThreadPerTaskExecutor("http-virtual-") : null;
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> requestExecutorCustomizer() {
+        return protocolHandler -> {
+            if (virtualThreadExecutor != null) {
+                protocolHandler.setExecutor(virtualThreadExecutor);
+                logger.info("Serving requests on virtual threads");
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (virtualThreadExecutor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor));
+        }
+    }
+}
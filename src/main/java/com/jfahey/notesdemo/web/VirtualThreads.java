@@ -0,0 +1,45 @@
+package com.jfahey.notesdemo.web;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to Java 21 virtual threads from code compiled for Java 17. The API is
+ * looked up reflectively, so the application still runs (with platform threads)
+ * on older runtimes unless virtual threads are explicitly requested.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return an executor that runs every task on a new virtual thread named <code>prefix</code> + sequence number
+     * @throws IllegalStateException if the runtime has no virtual threads (before Java 21)
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later (running "
+                + Runtime.version() + ")", e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create virtual thread executor", e);
+        }
+    }
+}
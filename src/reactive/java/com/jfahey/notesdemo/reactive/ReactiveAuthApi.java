@@ -0,0 +1,114 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jfahey.notesdemo.dto.LoginRequest;
+import com.jfahey.notesdemo.dto.RegisterRequest;
+import com.jfahey.notesdemo.ratelimit.LoginRateLimiter;
+import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+import com.jfahey.notesdemo.security.exception.TooManyRequestsException;
+
+import jakarta.validation.Valid;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of <code>AuthApi</code>, issuing the same tokens
+ * (through {@link JwtProvider}) with the same rate limits and responses.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+@RestController
+@RequestMapping("/auth")
+public class ReactiveAuthApi {
+
+    @Autowired
+    private ReactiveAuthService authService;
+
+    @Autowired
+    private JwtProvider jwtProvider;
+
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<?>> login(
+        @RequestBody @Valid LoginRequest request, ServerHttpRequest httpRequest) {
+
+        String clientAddress = clientAddress(httpRequest);
+        long retryAfterMs = loginRateLimiter.tryAcquire(clientAddress, request.getUsername());
+        if (retryAfterMs > 0)
+            throw new TooManyRequestsException("Too many login attempts, retry later.",
+                TimeUnit.MILLISECONDS.toSeconds(retryAfterMs + 999));
+
+        return authService.login(request)
+            .<ResponseEntity<?>>map(auth -> {
+                ResponseEntity<?> response = jwtProvider.getLoginResponseFromAuth(auth);
+                loginRateLimiter.release(clientAddress, request.getUsername());
+                return response;
+            })
+            .onErrorResume(BadCredentialsException.class,
+                e -> Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()))
+            .doOnError(e -> loginRateLimiter.release(clientAddress, request.getUsername()));
+    }
+
+    @PostMapping("/register")
+    public Mono<ResponseEntity<?>> signup(@RequestBody @Valid RegisterRequest registerRequest) {
+
+        return authService.isRegisteredEmail(registerRequest.getEmail())
+            .zipWith(authService.isRegisteredUsername(registerRequest.getUsername()))
+            .flatMap(registered -> {
+                if (registered.getT1())
+                    return Mono.just(ResponseEntity.badRequest().body("Email is already in use."));
+                if (registered.getT2())
+                    return Mono.just(ResponseEntity.badRequest().body("Username is already taken."));
+
+                return authService.register(registerRequest)
+                    .thenReturn(ResponseEntity.ok().body("User registered successfully."));
+            });
+    }
+
+    /**
+     * Sessions are stateless, so there is nothing to sign out of on the server.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout() {
+        return ResponseEntity.ok().body("You've been successfully signed out.");
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequests(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+            .body(e.getMessage());
+    }
+
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<String> handleServerBusy(ServerBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(e.getMessage());
+    }
+
+    private static String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null)
+            return "unknown";
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+}
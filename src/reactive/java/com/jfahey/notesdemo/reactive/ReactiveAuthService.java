@@ -0,0 +1,90 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.util.Optional;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.jfahey.notesdemo.dto.LoginRequest;
+import com.jfahey.notesdemo.dto.RegisterRequest;
+import com.jfahey.notesdemo.security.PasswordHashingExecutor;
+import com.jfahey.notesdemo.security.PasswordHashingExecutor.Operation;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of <code>AuthService</code>. Users are looked up
+ * without blocking, while password hashing still runs on the bounded
+ * {@link PasswordHashingExecutor}, so it is admission controlled the same way.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@Service
+public class ReactiveAuthService {
+
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveUserDetailsService userDetailsService;
+    private final PasswordEncoder encoder;
+    private final PasswordHashingExecutor hashingExecutor;
+
+    /** Hash matched against for unknown usernames; encoded on first use. */
+    private volatile String unknownUserPassword;
+
+    public ReactiveAuthService(ReactiveUserRepository userRepository, ReactiveUserDetailsService userDetailsService,
+        PasswordEncoder encoder, PasswordHashingExecutor hashingExecutor) {
+
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.encoder = encoder;
+        this.hashingExecutor = hashingExecutor;
+    }
+
+    /**
+     * The password of an unknown username is still checked (against a dummy
+     * hash), so the response time doesn't tell whether the username exists.
+     * @return the authenticated user, or a <code>BadCredentialsException</code>
+     */
+    public Mono<Authentication> login(LoginRequest request) {
+        return userDetailsService.findByUsername(request.getUsername())
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .filterWhen(user -> Mono.fromFuture(() -> hashingExecutor.submit(Operation.LOGIN,
+                () -> encoder.matches(request.getPassword(),
+                    user.map(UserDetails::getPassword).orElseGet(this::unknownUserPassword)) && user.isPresent())))
+            .map(Optional::get)
+            .<Authentication>map(user -> UsernamePasswordAuthenticationToken.authenticated(
+                user, null, user.getAuthorities()))
+            .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Bad credentials")));
+    }
+
+    private String unknownUserPassword() {
+        String password = unknownUserPassword;
+        if (password == null) {
+            password = encoder.encode("unknown user password");
+            unknownUserPassword = password;
+        }
+        return password;
+    }
+
+    public Mono<Boolean> isRegisteredUsername(String username) {
+        return userRepository.existsByUsername(username);
+    }
+
+    public Mono<Boolean> isRegisteredEmail(String email) {
+        return userRepository.existsByEmail(email);
+    }
+
+    public Mono<Void> register(RegisterRequest registerRequest) {
+        return Mono.fromFuture(() -> hashingExecutor.submit(Operation.REGISTER,
+                () -> encoder.encode(registerRequest.getPassword())))
+            .map(password -> ReactiveUser.create(
+                registerRequest.getUsername(), registerRequest.getEmail(), password))
+            .flatMap(userRepository::save)
+            .then();
+    }
+}
@@ -0,0 +1,63 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.JwtValidationResult;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Reactive counterpart of <code>JwtFilter</code>: authenticates requests carrying
+ * a valid <code>Authorization: Bearer</code> token, validated by {@link JwtProvider}.
+ * Other requests go on unauthenticated, for the security chain to turn away.
+ * <p>
+ * Not a bean, so it only runs within the security filter chain.
+ */
+public class ReactiveJwtFilter implements WebFilter {
+
+    private final JwtProvider jwtProvider;
+    private final ReactiveUserDetailsService userDetailsService;
+
+    public ReactiveJwtFilter(JwtProvider jwtProvider, ReactiveUserDetailsService userDetailsService) {
+        this.jwtProvider = jwtProvider;
+        this.userDetailsService = userDetailsService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String token = getTokenFromRequest(exchange.getRequest());
+
+        // validate jwt token and extract its subject in a single parse
+        JwtValidationResult result = StringUtils.hasText(token) ? jwtProvider.parseAccessToken(token) : null;
+
+        if (result == null || !result.isValid()) {
+            return chain.filter(exchange);
+        }
+
+        return userDetailsService.findByUsername(result.getSubject())
+            .map(userDetails -> ReactiveSecurityContextHolder.withAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities())))
+            .defaultIfEmpty(Context.empty())
+            .flatMap(context -> chain.filter(exchange).contextWrite(context));
+    }
+
+    private static String getTokenFromRequest(ServerHttpRequest request) {
+        String bearerToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+
+        return null;
+    }
+}
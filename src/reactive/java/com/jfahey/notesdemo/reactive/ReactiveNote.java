@@ -0,0 +1,41 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import com.jfahey.notesdemo.dto.NoteVersion;
+
+/**
+ * Row of the reactive <code>notes</code> table. Serializes to the same JSON as
+ * the servlet API's <code>Note</code>, so clients can't tell the variants apart.
+ * <p>
+ * Content is stored as is: the servlet variant's compression
+ * (<code>NoteContentCodec</code>) only pays off for its lazily loaded LOB column.
+ */
+@Table("notes")
+public record ReactiveNote(
+    @Id Long id,
+    String title,
+    String username,
+    String content,
+    LocalDateTime lastUpdated,
+    @Version Long version) {
+
+    public static ReactiveNote create(String title, String username, String content) {
+        return new ReactiveNote(null, title, username, content, LocalDateTime.now(), null);
+    }
+
+    /**
+     * @return copy of this note with new title and content, for an update
+     */
+    public ReactiveNote withContent(String title, String content, LocalDateTime lastUpdated) {
+        return new ReactiveNote(id, title, username, content, lastUpdated, version);
+    }
+
+    public NoteVersion noteVersion() {
+        return new NoteVersion(id, username, lastUpdated);
+    }
+}
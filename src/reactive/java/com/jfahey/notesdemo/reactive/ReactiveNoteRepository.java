@@ -0,0 +1,28 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of <code>NoteRepository</code>, for the queries the
+ * reactive API needs.
+ */
+@Repository
+public interface ReactiveNoteRepository extends R2dbcRepository<ReactiveNote, Long> {
+
+    Flux<ReactiveNote> findByUsernameOrderById(String username);
+
+    Mono<ReactiveNote> findByIdAndUsername(long id, String username);
+
+    /**
+     * @return the number of notes deleted, 0 if there is no such note of the user
+     */
+    @Modifying
+    @Query("delete from notes where id = :id and username = :username")
+    Mono<Integer> deleteByIdAndUsername(long id, String username);
+}
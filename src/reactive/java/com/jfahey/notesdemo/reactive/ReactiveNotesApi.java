@@ -0,0 +1,163 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.security.exception.PreconditionFailedException;
+
+import jakarta.validation.Valid;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of <code>NotesApi</code>, serving its core contract
+ * (create, get, update, delete and list, with the same ETags and conditional
+ * requests) without blocking.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+@RestController
+@RequestMapping("/notes")
+public class ReactiveNotesApi {
+
+    @Autowired
+    private ReactiveNotesService notesService;
+
+    @PostMapping
+    public Mono<ResponseEntity<ReactiveNote>> create(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @RequestBody @Valid NoteRequest note) {
+
+        if(userDetails == null)
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+
+        ReactiveNote newNote = ReactiveNote.create(
+            note.getTitle(),
+            userDetails.getUsername(),
+            note.getContent()
+        );
+        return notesService.saveNote(newNote)
+            .map(savedNote -> ResponseEntity.created(URI.create("/notes/get/" + savedNote.id())).body(savedNote));
+    }
+
+    /**
+     * Get a note by id. Supports conditional requests like <code>NotesApi</code>;
+     * 304 responses are sent by the framework, from the response's ETag and date.
+     */
+    @GetMapping("/get/{id}")
+    public Mono<ResponseEntity<ReactiveNote>> getNote(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable Long id) {
+
+        if(userDetails == null)
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+
+        return notesService.getNote(id, userDetails.getUsername())
+            .map(note -> ResponseEntity.ok()
+                .eTag(note.noteVersion().getETag())
+                .lastModified(note.noteVersion().getLastModified())
+                .body(note))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    /**
+     * Replace a note's title and content, honoring <code>If-Match</code> like
+     * <code>NotesApi</code> (412 if the note is no longer at that ETag).
+     */
+    @PutMapping("/update/{id}")
+    public Mono<ResponseEntity<ReactiveNote>> updateNote(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable Long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestBody @Valid NoteRequest noteUpdate) {
+
+        if(userDetails == null)
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+
+        return notesService.updateNote(id, userDetails.getUsername(), note -> {
+                checkPrecondition(ifMatch, note);
+                return note.withContent(noteUpdate.getTitle(), noteUpdate.getContent(), LocalDateTime.now());
+            })
+            .map(note -> ResponseEntity.ok().eTag(note.noteVersion().getETag()).body(note))
+            .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public Mono<ResponseEntity<?>> deleteNote(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable Long id) {
+
+        if(userDetails == null)
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+
+        return notesService.deleteNote(id, userDetails.getUsername())
+            .map(deleted -> deleted
+                ? ResponseEntity.ok().body("Note successfully deleted.")
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    /**
+     * List all of the user's notes. Conditional requests against the collection
+     * ETag are answered with 304 before any note is loaded.
+     */
+    @GetMapping({"/", "/all"})
+    public Mono<ResponseEntity<List<ReactiveNote>>> list(
+        @AuthenticationPrincipal UserDetails userDetails,
+        ServerWebExchange exchange) {
+
+        if(userDetails == null)
+            return Mono.just(ResponseEntity.ok(List.of()));
+
+        String username = userDetails.getUsername();
+        return notesService.getNoteCollectionVersion(username)
+            .flatMap(version -> {
+                if(exchange.checkNotModified(version.getETag()))
+                    return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+
+                return notesService.getNotesByUsername(username)
+                    .collectList()
+                    .map(notes -> ResponseEntity.ok()
+                        .eTag(version.getETag())
+                        .body(notes));
+            });
+    }
+
+    @ExceptionHandler({PreconditionFailedException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<?> handleConcurrentUpdate(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Note was modified concurrently.");
+    }
+
+    private static void checkPrecondition(String ifMatch, ReactiveNote note) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return;
+        String eTag = note.noteVersion().getETag();
+        for (String candidate : ifMatch.split(",")) {
+            // If-Match uses strong comparison, so weak ETags never match
+            if(candidate.trim().equals(eTag))
+                return;
+        }
+        throw new PreconditionFailedException("Note does not match " + ifMatch);
+    }
+}
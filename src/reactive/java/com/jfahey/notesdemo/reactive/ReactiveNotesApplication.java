@@ -0,0 +1,49 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+
+import com.jfahey.notesdemo.security.JwtProvider;
+
+/**
+ * Non-blocking variant of the notes API, on WebFlux and R2DBC: serves the same
+ * <code>/notes</code> and <code>/auth</code> contracts as the servlet application
+ * without holding a thread per request. Started by
+ * <code>NotesDemoApplication</code> when the {@value #PROFILE} profile is active.
+ * <p>
+ * Only the classes of this package (and the shared {@link JwtProvider}, so tokens
+ * issued by either variant are accepted by both) are part of this application;
+ * the JPA repositories and the servlet filters, caches and endpoints are not.
+ * Its notes live in their own R2DBC database (see <code>reactive/schema.sql</code>).
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+    DataSourceAutoConfiguration.class,
+    DataSourceTransactionManagerAutoConfiguration.class,
+    HibernateJpaAutoConfiguration.class,
+    JpaRepositoriesAutoConfiguration.class
+})
+@ComponentScan
+@Import(JwtProvider.class)
+public class ReactiveNotesApplication {
+
+    public static final String PROFILE = "reactive";
+
+    /**
+     * Netty rather than Tomcat, which is also on the classpath (for the servlet variant).
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,40 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds the reactive database with the same user and note as <code>NotesDemoDBLoader</code>.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@Component
+public class ReactiveNotesDBLoader implements CommandLineRunner {
+
+	private final ReactiveUserRepository userRepository;
+	private final ReactiveNoteRepository noteRepository;
+
+	private final PasswordEncoder encoder;
+
+	public ReactiveNotesDBLoader(ReactiveUserRepository userRepository,
+		ReactiveNoteRepository noteRepository,
+		PasswordEncoder encoder) {
+
+		this.userRepository = userRepository;
+		this.noteRepository = noteRepository;
+		this.encoder = encoder;
+	}
+
+	@Override
+	public void run(String... strings) throws Exception {
+		// startup may block; instances may share a database, only the first one seeds it
+		userRepository.existsByUsername("admin")
+			.filter(exists -> !exists)
+			.flatMap(seed -> userRepository.save(
+				ReactiveUser.create("admin", "admin@gmail.com", encoder.encode("password123"))))
+			.flatMap(user -> noteRepository.save(
+				ReactiveNote.create("Welcome Greeting", user.username(), "Hello! This is a note.")))
+			.block();
+	}
+}
@@ -0,0 +1,79 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.time.LocalDateTime;
+import java.util.function.UnaryOperator;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of <code>NotesService</code>, with the same semantics:
+ * users only ever see, change and delete their own notes, and a note that isn't
+ * theirs is reported as missing.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@Service
+public class ReactiveNotesService {
+
+    private final ReactiveNoteRepository noteRepository;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveNotesService(ReactiveNoteRepository noteRepository, DatabaseClient databaseClient) {
+        this.noteRepository = noteRepository;
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<ReactiveNote> getNote(long id, String username) {
+        return noteRepository.findByIdAndUsername(id, username);
+    }
+
+    /**
+     * Aggregate version of all of a user's notes, without loading any of them.
+     */
+    public Mono<NoteCollectionVersion> getNoteCollectionVersion(String username) {
+        return databaseClient
+            .sql("select count(*) as note_count, max(last_updated) as last_updated, "
+                + "cast(sum(id) as bigint) as id_sum from notes where username = :username")
+            .bind("username", username)
+            .map(row -> new NoteCollectionVersion(
+                row.get("note_count", Long.class),
+                row.get("last_updated", LocalDateTime.class),
+                row.get("id_sum", Long.class)))
+            .one();
+    }
+
+    public Flux<ReactiveNote> getNotesByUsername(String username) {
+        return noteRepository.findByUsernameOrderById(username);
+    }
+
+    public Mono<ReactiveNote> saveNote(ReactiveNote note) {
+        return noteRepository.save(note);
+    }
+
+    /**
+     * Applies <code>update</code> to the user's note and saves the result. Fails with
+     * <code>OptimisticLockingFailureException</code> if the note was changed meanwhile.
+     * @return the updated note, or empty if the user has no such note
+     */
+    @Transactional
+    public Mono<ReactiveNote> updateNote(long id, String username, UnaryOperator<ReactiveNote> update) {
+        return noteRepository.findByIdAndUsername(id, username)
+            .map(update)
+            .flatMap(noteRepository::save);
+    }
+
+    /**
+     * @return whether the user had such a note
+     */
+    public Mono<Boolean> deleteNote(long id, String username) {
+        return noteRepository.deleteByIdAndUsername(id, username)
+            .map(deleted -> deleted > 0);
+    }
+}
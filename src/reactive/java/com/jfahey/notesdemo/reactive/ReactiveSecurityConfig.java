@@ -0,0 +1,70 @@
+package com.jfahey.notesdemo.reactive;
+
+import java.util.Collections;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.PasswordHashingExecutor;
+
+/**
+ * Security of the reactive variant, matching <code>WebSecurityConfig</code>:
+ * stateless bearer token authentication, with <code>/auth/**</code> open.
+ */
+@Profile(ReactiveNotesApplication.PROFILE)
+@Configuration
+@EnableWebFluxSecurity
+@Import(PasswordHashingExecutor.class)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+
+    @Bean
+    public ReactiveUserDetailsService userDetailsService(ReactiveUserRepository userRepository) {
+        return username -> userRepository.findByUsername(username)
+            .map(user -> new User(
+                user.username(),
+                user.password(),
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+        JwtProvider jwtProvider, ReactiveUserDetailsService userDetailsService) {
+
+        return http.csrf(csrf -> csrf.disable())
+            .cors(Customizer.withDefaults())
+            .httpBasic(httpBasic -> httpBasic.disable())
+            .formLogin(formLogin -> formLogin.disable())
+            .authorizeExchange(authorize ->
+                authorize.pathMatchers("/docs/**").permitAll()
+                    .pathMatchers("/auth/**").permitAll()
+                    .pathMatchers(HttpMethod.GET, "/api/**").permitAll() // future add'ns
+                    .anyExchange().authenticated())
+            .exceptionHandling(exception ->
+                exception.authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+            .addFilterAt(new ReactiveJwtFilter(jwtProvider, userDetailsService), SecurityWebFiltersOrder.AUTHENTICATION)
+            .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Row of the reactive <code>users</code> table, see <code>model.User</code>.
+ */
+@Table("users")
+public record ReactiveUser(
+    @Id Long id,
+    String username,
+    String email,
+    String password) {
+
+    public static ReactiveUser create(String username, String email, String password) {
+        return new ReactiveUser(null, username, email, password);
+    }
+}
@@ -0,0 +1,16 @@
+package com.jfahey.notesdemo.reactive;
+
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveUserRepository extends R2dbcRepository<ReactiveUser, Long> {
+
+    Mono<ReactiveUser> findByUsername(String username);
+
+    Mono<Boolean> existsByUsername(String username);
+
+    Mono<Boolean> existsByEmail(String email);
+}
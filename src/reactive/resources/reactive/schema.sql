@@ -0,0 +1,20 @@
+-- Schema of the reactive variant's database, mirroring the tables Hibernate
+-- creates for the servlet variant (note content is stored uncompressed)
+create table if not exists users (
+    id bigint generated by default as identity primary key,
+    username varchar(30) not null,
+    email varchar(50) not null,
+    password varchar(64) not null
+);
+create unique index if not exists uk_users_username on users (username);
+create unique index if not exists uk_users_email on users (email);
+
+create table if not exists notes (
+    id bigint generated by default as identity primary key,
+    title varchar(128) not null,
+    username varchar(50) not null,
+    content character varying,
+    last_updated timestamp(6) not null,
+    version bigint
+);
+create index if not exists idx_notes_username_id on notes (username, id);
@@ -0,0 +1,17 @@
+package com.jfahey.notesdemo;
+
+import org.junit.jupiter.api.Test;
+
+import com.jfahey.notesdemo.reactive.ReactiveNotesApplication;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveNotesApplicationTests {
+
+	@Test
+	void givenReactiveProfile_whenStarting_thenRunsReactiveApplication() {
+		assertThat(NotesDemoApplication.primarySource("--spring.profiles.active=reactive"))
+			.isEqualTo(ReactiveNotesApplication.class);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jfahey.notesdemo.NotesDemoApplication;
+import com.jfahey.notesdemo.reactive.ReactiveNotesApplication;
+import com.jfahey.notesdemo.security.JwtProvider;
+
+/**
+ * Side-by-side load test of the two variants of the API at {@value #CLIENTS}
+ * concurrent clients: the servlet application (Tomcat, JPA) and the reactive
+ * one (Netty, R2DBC). Each client alternately lists the user's notes and
+ * fetches one of them over HTTP, i.e. the authenticated, database-bound
+ * requests both variants serve. Reports throughput and the latency
+ * distribution (see the p0.99 line of the sample-time results) per stack.
+ * <p>
+ * Both stacks use a pool of 10 database connections. Non-200 responses (e.g.
+ * 503 from the servlet concurrency limiter) are counted separately, as the
+ * <code>failures</code> secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(ServletVsReactiveBenchmark.CLIENTS)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Xss256k"})
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class ServletVsReactiveBenchmark {
+
+    static final int CLIENTS = 1000;
+
+    private static final int NOTES = 20;
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest listRequest;
+    private HttpRequest getRequest;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        boolean reactive = stack.equals("reactive");
+        // command line arguments, as they take precedence over application.properties
+        context = new SpringApplicationBuilder(reactive ? ReactiveNotesApplication.class : NotesDemoApplication.class)
+            .run(
+                "--server.port=0",
+                "--spring.profiles.active=" + (reactive ? ReactiveNotesApplication.PROFILE : "default"),
+                "--logging.level.root=WARN");
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String bearer = "Bearer " + context.getBean(JwtProvider.class).generateToken("admin");
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+
+        // notes are created through the API, so both stacks store them their own way
+        String noteUri = null;
+        for (int i = 0; i < NOTES; i++) {
+            HttpResponse<String> created = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/notes"))
+                    .header(HttpHeaders.AUTHORIZATION, bearer)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"title\":\"Load test note " + i + "\",\"content\":\"Load test content " + i + "\"}"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (created.statusCode() != 201) {
+                throw new IllegalStateException("Could not create note: " + created.statusCode());
+            }
+            noteUri = "http://localhost:" + port + "/notes/get/" + JsonPath.read(created.body(), "$.id");
+        }
+
+        listRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/notes/all"))
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .timeout(Duration.ofSeconds(60))
+            .build();
+        getRequest = HttpRequest.newBuilder(URI.create(noteUri))
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .timeout(Duration.ofSeconds(60))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long failures;
+    }
+
+    @Benchmark
+    public int listAndGetNote(Failures failures) throws IOException, InterruptedException {
+        return send(listRequest, failures) + send(getRequest, failures);
+    }
+
+    private int send(HttpRequest request, Failures failures) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            failures.failures++;
+        }
+        return response.body().length;
+    }
+}
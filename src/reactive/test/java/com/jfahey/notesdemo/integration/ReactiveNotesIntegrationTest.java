@@ -0,0 +1,238 @@
+package com.jfahey.notesdemo.integration;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jfahey.notesdemo.dto.LoginRequest;
+import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.dto.RegisterRequest;
+import com.jfahey.notesdemo.reactive.ReactiveNoteRepository;
+import com.jfahey.notesdemo.reactive.ReactiveNotesApplication;
+import com.jfahey.notesdemo.reactive.ReactiveUserRepository;
+import com.jfahey.notesdemo.security.JwtProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(
+    classes = ReactiveNotesApplication.class,
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles(ReactiveNotesApplication.PROFILE)
+public class ReactiveNotesIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private ReactiveNoteRepository noteRepository;
+
+    @Autowired
+    private JwtProvider jwtProvider;
+
+    @SpyBean
+    private PasswordEncoder passwordEncoder;
+
+    @AfterEach
+    void cleanup() {
+        noteRepository.deleteAll().block();
+        userRepository.deleteAll().block();
+    }
+
+    @Test
+    public void givenReactiveProfile_whenStarted_thenServesNonBlocking() {
+        assertThat(context).isInstanceOf(ReactiveWebServerApplicationContext.class);
+        assertThat(context.getBeanNamesForType(DataSource.class)).isEmpty();
+    }
+
+    @Test
+    public void givenRegisteredUser_whenLogin_thenTokenAuthenticatesNoteRequests() {
+
+        // given: a user registered through the reactive API
+        webTestClient.post().uri("/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new RegisterRequest("reactiveuser", "reactive@example.com", "password123"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("User registered successfully.");
+
+        webTestClient.post().uri("/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new RegisterRequest("otheruser", "reactive@example.com", "password123"))
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody(String.class).isEqualTo("Email is already in use.");
+
+        webTestClient.post().uri("/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new LoginRequest("reactiveuser", "wrongpassword"))
+            .exchange()
+            .expectStatus().isUnauthorized();
+
+        // when: logging in
+        byte[] login = webTestClient.post().uri("/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new LoginRequest("reactiveuser", "password123"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.username").isEqualTo("reactiveuser")
+            .returnResult().getResponseBody();
+        String token = JsonPath.read(new String(login), "$.accessToken");
+
+        // then: the token is accepted, and missing or invalid tokens are not
+        webTestClient.get().uri("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(0);
+
+        webTestClient.get().uri("/notes/all")
+            .exchange()
+            .expectStatus().isUnauthorized();
+
+        webTestClient.get().uri("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token + "x")
+            .exchange()
+            .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void givenUnknownUsername_whenLogin_thenPasswordStillChecked() {
+
+        // when: logging in as a user that doesn't exist
+        webTestClient.post().uri("/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new LoginRequest("nosuchuser", "password123"))
+            .exchange()
+            .expectStatus().isUnauthorized();
+
+        // then: the password was hashed anyway, taking as long as for a wrong password
+        verify(passwordEncoder).matches(eq("password123"), anyString());
+    }
+
+    @Test
+    public void givenNote_whenCrudThroughReactiveApi_thenMatchesServletContract() {
+
+        // given: a user, and a token issued by the shared provider
+        register("reactiveuser");
+        String bearer = "Bearer " + jwtProvider.generateToken("reactiveuser");
+
+        // when: creating a note
+        byte[] created = webTestClient.post().uri("/notes")
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new NoteRequest("Reactive note", "Reactive content"))
+            .exchange()
+            .expectStatus().isCreated()
+            .expectBody()
+            .jsonPath("$.title").isEqualTo("Reactive note")
+            .jsonPath("$.username").isEqualTo("reactiveuser")
+            .jsonPath("$.content").isEqualTo("Reactive content")
+            .jsonPath("$.lastUpdated").exists()
+            .returnResult().getResponseBody();
+        int id = JsonPath.read(new String(created), "$.id");
+
+        // then: it can be fetched, conditionally too
+        String eTag = webTestClient.get().uri("/notes/get/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().exists(HttpHeaders.ETAG)
+            .expectBody().jsonPath("$.content").isEqualTo("Reactive content")
+            .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/notes/get/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .exchange()
+            .expectStatus().isNotModified();
+
+        // and: only by its owner
+        register("otheruser");
+        String otherBearer = "Bearer " + jwtProvider.generateToken("otheruser");
+        webTestClient.get().uri("/notes/get/" + id)
+            .header(HttpHeaders.AUTHORIZATION, otherBearer)
+            .exchange()
+            .expectStatus().isNotFound();
+        webTestClient.delete().uri("/notes/delete/" + id)
+            .header(HttpHeaders.AUTHORIZATION, otherBearer)
+            .exchange()
+            .expectStatus().isNotFound();
+
+        // and: updates are checked against If-Match
+        webTestClient.put().uri("/notes/update/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .header(HttpHeaders.IF_MATCH, "\"0-0\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new NoteRequest("Stale", "Stale content"))
+            .exchange()
+            .expectStatus().isEqualTo(412);
+
+        String listETag = webTestClient.get().uri("/notes/")
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(1)
+            .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.put().uri("/notes/update/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new NoteRequest("Updated note", "Updated content"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.title").isEqualTo("Updated note")
+            .jsonPath("$.version").isEqualTo(1);
+
+        webTestClient.get().uri("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .header(HttpHeaders.IF_NONE_MATCH, listETag)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$[0].content").isEqualTo("Updated content");
+
+        // and: deleted
+        webTestClient.delete().uri("/notes/delete/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("Note successfully deleted.");
+
+        webTestClient.get().uri("/notes/get/" + id)
+            .header(HttpHeaders.AUTHORIZATION, bearer)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    private void register(String username) {
+        webTestClient.post().uri("/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new RegisterRequest(username, username + "@example.com", "password123"))
+            .exchange()
+            .expectStatus().isOk();
+    }
+}
@@ -1,13 +1,37 @@
 package com.jfahey.notesdemo;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import com.jfahey.notesdemo.upload.NoteUploadStore;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 class NotesDemoApplicationTests {
 
+	@Autowired
+	private ScheduledTaskHolder scheduledTasks;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void whenStarted_thenIdleUploadsSweptPeriodically() {
+		assertThat(scheduledTasks.getScheduledTasks())
+			.extracting(task -> task.getTask().getRunnable())
+			.filteredOn(ScheduledMethodRunnable.class::isInstance)
+			.map(runnable -> ((ScheduledMethodRunnable) runnable).getMethod())
+			.anyMatch(method -> method.getDeclaringClass() == NoteUploadStore.class && method.getName().equals("expire"));
+	}
+
+	@Test
+	void givenNoProfile_whenStarting_thenRunsServletApplication() {
+		assertThat(NotesDemoApplication.primarySource()).isEqualTo(NotesDemoApplication.class);
+	}
+
 }
@@ -0,0 +1,64 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.JwtValidationResult;
+
+/**
+ * Per-request cost of authenticating a bearer token in <code>JwtFilter</code>:
+ * validating and then reading the subject (two parses) versus a single
+ * validate-and-extract parse, with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtProviderBenchmark {
+
+    @Param({"0", "10000"})
+    private int tokenCacheSize;
+
+    private JwtProvider jwtProvider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "jwtKeyId", "default");
+        ReflectionTestUtils.setField(jwtProvider, "jwtSecret", "mysecretkey123456789");
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", 86400000L);
+        ReflectionTestUtils.setField(jwtProvider, "tokenCacheSize", tokenCacheSize);
+        ReflectionTestUtils.invokeMethod(jwtProvider, "init");
+        token = jwtProvider.generateToken("user");
+    }
+
+    @Benchmark
+    public String validateThenGetUsername() {
+        if (jwtProvider.validateAccessToken(token)) {
+            return jwtProvider.getUsernameFromToken(token);
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String parseAccessToken() {
+        JwtValidationResult result = jwtProvider.parseAccessToken(token);
+        return result.isValid() ? result.getSubject() : null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jfahey.notesdemo.security.JwtProvider;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/**
+ * Multi-threaded token throughput of {@link JwtProvider} (precomputed keys,
+ * shared parser) against building the key and parser from the raw secret
+ * string on every call. The verified-token cache is disabled so every
+ * validation verifies the signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtTokenThroughputBenchmark {
+
+    private static final String SECRET = "mysecretkey123456789";
+    private static final long EXPIRATION_MS = 86400000L;
+
+    private JwtProvider jwtProvider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "jwtKeyId", "default");
+        ReflectionTestUtils.setField(jwtProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", EXPIRATION_MS);
+        ReflectionTestUtils.setField(jwtProvider, "tokenCacheSize", 0);
+        ReflectionTestUtils.invokeMethod(jwtProvider, "init");
+        token = jwtProvider.generateToken("user");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtProvider.generateToken("user");
+    }
+
+    @Benchmark
+    public String validateToken() {
+        return jwtProvider.parseAccessToken(token).getSubject();
+    }
+
+    @Benchmark
+    public String generateTokenPerCallKey() {
+        Date date = new Date();
+        return Jwts.builder()
+            .setSubject("user")
+            .setIssuedAt(date)
+            .setExpiration(new Date(date.getTime() + EXPIRATION_MS))
+            .signWith(SignatureAlgorithm.HS512, SECRET)
+            .compact();
+    }
+
+    @Benchmark
+    public String validateTokenPerCallParser() {
+        return Jwts.parser()
+            .setSigningKey(SECRET)
+            .parseClaimsJws(token)
+            .getBody()
+            .getSubject();
+    }
+}
@@ -0,0 +1,104 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.jfahey.notesdemo.NotesDemoApplication;
+import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.repository.NoteRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Bulk-insert throughput of notes through JPA, in rows per second.
+ * Each invocation saves {@value #ROWS} notes in one transaction, as an
+ * import or a large batch sync would; <code>batchSize</code> is the
+ * <code>hibernate.jdbc.batch_size</code> (1 disables JDBC batching).
+ * <p>
+ * <code>idGeneration</code> compares the pooled <code>sequence</code> ids of
+ * {@link Note} with <code>identity</code> columns (mapped by
+ * <code>benchmark/note-identity-orm.xml</code>), with which Hibernate has to
+ * insert each row on its own to learn its key, whatever the batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteBulkInsertBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    @Param({"sequence", "identity"})
+    private String idGeneration;
+
+    private ConfigurableApplicationContext context;
+    private NoteRepository noteRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // command line arguments, as they take precedence over application.properties
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+            "--logging.level.root=WARN"));
+        if (idGeneration.equals("identity")) {
+            args.add("--spring.jpa.mapping-resources=benchmark/note-identity-orm.xml");
+        }
+        context = new SpringApplicationBuilder(NotesDemoApplication.class).run(args.toArray(String[]::new));
+
+        // fail rather than silently measure another configuration
+        Object effectiveBatchSize = context.getBean(EntityManagerFactory.class).getProperties()
+            .get("hibernate.jdbc.batch_size");
+        if (!String.valueOf(batchSize).equals(String.valueOf(effectiveBatchSize))) {
+            throw new IllegalStateException("hibernate.jdbc.batch_size is " + effectiveBatchSize
+                + ", not " + batchSize);
+        }
+        noteRepository = context.getBean(NoteRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearNotes() {
+        noteRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Note> insertNotes() {
+        List<Note> notes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            notes.add(new Note("Imported note " + i, "user", "Imported content " + i));
+        }
+        return transactionTemplate.execute(status -> noteRepository.saveAll(notes));
+    }
+}
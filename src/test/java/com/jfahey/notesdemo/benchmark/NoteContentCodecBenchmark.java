@@ -0,0 +1,66 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jfahey.notesdemo.model.NoteContentCodec;
+
+/**
+ * Cost of compressing note content on write and decompressing it on read,
+ * for log-like content of various sizes. The stored size relative to the
+ * original is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteContentCodecBenchmark {
+
+    private static final String[] LEVELS = {"DEBUG", "INFO", "WARN", "ERROR"};
+
+    @Param({"16384", "1048576", "4194304"})
+    private int size;
+
+    private String content;
+    private String stored;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        StringBuilder log = new StringBuilder(size + 200);
+        while (log.length() < size) {
+            log.append(String.format("2024-01-%02d %02d:%02d:%02d.%03d %-5s [worker-%d] request %08x handled in %d ms%n",
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                random.nextInt(1000), LEVELS[random.nextInt(LEVELS.length)], random.nextInt(16),
+                random.nextInt(), random.nextInt(500)));
+        }
+        content = log.substring(0, size);
+        stored = NoteContentCodec.encode(content);
+        System.out.printf("%nstored %d of %d chars (%.1f%%)%n",
+            stored.length(), content.length(), 100.0 * stored.length() / content.length());
+    }
+
+    @Benchmark
+    public String encode() {
+        return NoteContentCodec.encode(content);
+    }
+
+    @Benchmark
+    public String decode() {
+        return NoteContentCodec.decode(stored);
+    }
+}
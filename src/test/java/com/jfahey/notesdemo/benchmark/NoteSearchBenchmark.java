@@ -0,0 +1,76 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jfahey.notesdemo.search.NoteSearchIndex;
+
+/**
+ * Query latency of the per-user search index for a user with 100k notes of
+ * synthetic text (Zipf-like vocabulary), for a rare term, a common term and
+ * a multi-term query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteSearchBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final int WORDS_PER_NOTE = 80;
+
+    @Param({"100000"})
+    private int notes;
+
+    private NoteSearchIndex index;
+
+    @Setup
+    public void setup() {
+        index = new NoteSearchIndex();
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < notes; i++) {
+            content.setLength(0);
+            for (int w = 0; w < WORDS_PER_NOTE; w++) {
+                content.append(word(random)).append(' ');
+            }
+            index.index(i, "user", "Note " + word(random), content.toString());
+        }
+    }
+
+    /** Word rank drawn from a rough Zipf distribution, so a few words are very common. */
+    private static String word(Random random) {
+        int rank = (int) Math.pow(VOCABULARY_SIZE, random.nextDouble());
+        return "w" + rank;
+    }
+
+    @Benchmark
+    public List<NoteSearchIndex.Hit> rareTerm() {
+        return index.search("user", "w15000", 20);
+    }
+
+    @Benchmark
+    public List<NoteSearchIndex.Hit> commonTerm() {
+        return index.search("user", "w2", 20);
+    }
+
+    @Benchmark
+    public List<NoteSearchIndex.Hit> multiTerm() {
+        return index.search("user", "w3 w120 w7000", 20);
+    }
+}
@@ -0,0 +1,115 @@
+package com.jfahey.notesdemo.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+
+import com.jfahey.notesdemo.NotesDemoApplication;
+import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.repository.NoteRepository;
+import com.jfahey.notesdemo.security.JwtProvider;
+
+/**
+ * Load test of the running server at {@value #CLIENTS} concurrent clients, each
+ * repeatedly fetching a page of note summaries (an authenticated, database-bound
+ * request) over HTTP. Reports throughput and the latency distribution (see the
+ * p0.99 line of the sample-time results) per request execution mode:
+ * Tomcat's platform thread pool or one virtual thread per request. The
+ * <code>benchmark</code> profile runs only the platform trial, unless Maven
+ * runs on Java 21+, where the <code>java21</code> profile adds the virtual one:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RequestConcurrencyBenchmark
+ * </pre>
+ * <p>
+ * Both modes run behind the same concurrency limiter and connection pool.
+ * Non-200 responses (e.g. 503 from the limiter) are counted separately, as the
+ * <code>failures</code> secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(RequestConcurrencyBenchmark.CLIENTS)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Xss256k"})
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class RequestConcurrencyBenchmark {
+
+    static final int CLIENTS = 2000;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // command line arguments, as they take precedence over application.properties
+        context = new SpringApplicationBuilder(NotesDemoApplication.class)
+            .run(
+                "--server.port=0",
+                "--app.server.virtualthreads=" + mode.equals("virtual"),
+                "--logging.level.root=WARN");
+
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            notes.add(new Note("Load test note " + i, "admin", "Load test content " + i));
+        }
+        context.getBean(NoteRepository.class).saveAll(notes);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String token = context.getBean(JwtProvider.class).generateToken("admin");
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/notes/summaries?limit=20"))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .timeout(Duration.ofSeconds(60))
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long failures;
+    }
+
+    @Benchmark
+    public int getNoteSummaries(Failures failures) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            failures.failures++;
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jfahey.notesdemo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    public void givenCachedValue_whenGet_thenReturnValueAndCountHit() {
+
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(1), now::get);
+
+        // given: cached value
+        cache.put("user", "details");
+
+        // when/then: value returned, absent key misses
+        assertThat(cache.get("user")).isEqualTo("details");
+        assertThat(cache.get("other")).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenCachedValue_whenTtlElapsed_thenReturnNull() {
+
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofSeconds(1), now::get);
+
+        // given: cached value
+        cache.put("user", "details");
+
+        // when: time-to-live has elapsed
+        now.addAndGet(1_000);
+
+        // then: value expired and evicted
+        assertThat(cache.get("user")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenEarlierExpiry_whenPut_thenExpireBeforeTtl() {
+
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofMinutes(1), now::get);
+
+        // given: value that must expire in 100ms
+        cache.put("token", "subject", now.get() + 100);
+
+        // when/then: value only served until its own expiry
+        now.addAndGet(99);
+        assertThat(cache.get("token")).isEqualTo("subject");
+        now.addAndGet(1);
+        assertThat(cache.get("token")).isNull();
+    }
+
+    @Test
+    public void givenFullCache_whenPut_thenEvictToMaximumSize() {
+
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(3, Duration.ofMinutes(1), now::get);
+
+        // given: full cache
+        for (int i = 0; i < 3; i++) {
+            cache.put(i, i);
+            now.incrementAndGet();
+        }
+
+        // when: another value is put
+        cache.put(3, 3);
+
+        // then: size bound held and new value cached
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get(3)).isEqualTo(3);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenFullCacheOfExpiredEntries_whenPut_thenExpiredEvictedBeforeLiveEntries() {
+
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(16, Duration.ofMillis(100), now::get);
+
+        // given: full cache whose entries have all expired
+        for (int i = 0; i < 16; i++) {
+            cache.put(i, i);
+        }
+        now.addAndGet(200);
+
+        // when: as many new values are put
+        for (int i = 100; i < 116; i++) {
+            cache.put(i, i);
+        }
+
+        // then: every expired entry made room, no new one was evicted
+        assertThat(cache.size()).isEqualTo(16);
+        for (int i = 100; i < 116; i++) {
+            assertThat(cache.get(i)).isEqualTo(i);
+        }
+        assertThat(cache.evictionCount()).isEqualTo(16);
+    }
+
+    @Test
+    public void givenMiss_whenGetWithLoader_thenLoadOnce() {
+
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofMinutes(1), now::get);
+        AtomicLong loads = new AtomicLong();
+
+        // when: value requested twice through a loader
+        cache.get("user", key -> key + loads.incrementAndGet());
+        String value = cache.get("user", key -> key + loads.incrementAndGet());
+
+        // then: loader invoked only for the first miss
+        assertThat(value).isEqualTo("user1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenCachedValue_whenInvalidate_thenReturnNull() {
+
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Duration.ofMinutes(1), now::get);
+
+        // given: cached value
+        cache.put("user", "details");
+
+        // when: key invalidated
+        cache.invalidate("user");
+
+        // then: value gone
+        assertThat(cache.get("user")).isNull();
+    }
+}
@@ -0,0 +1,158 @@
+package com.jfahey.notesdemo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void givenCachedValue_whenGet_thenReturnValueAndCountHit() {
+
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 10_000, String::length);
+
+        // given: cached value
+        cache.put("note", "content");
+
+        // when/then: value returned, absent key misses
+        assertThat(cache.get("note")).isEqualTo("content");
+        assertThat(cache.get("other")).isNull();
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.weight()).isEqualTo(7);
+    }
+
+    @Test
+    public void givenWeightLimit_whenPut_thenTotalWeightBounded() {
+
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(1_000, 1_000, String::length);
+
+        // when: ten times the weight limit is cached
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "x".repeat(100));
+        }
+
+        // then: cache kept within its weight, evictions counted by weight
+        assertThat(cache.weight()).isLessThanOrEqualTo(1_000);
+        assertThat(cache.evictionWeight()).isEqualTo(100 * 100 - cache.weight());
+    }
+
+    @Test
+    public void givenValueHeavierThanCache_whenPut_thenNotCached() {
+
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 100, String::length);
+
+        cache.put("large", "x".repeat(200));
+
+        assertThat(cache.get("large")).isNull();
+        assertThat(cache.weight()).isZero();
+    }
+
+    @Test
+    public void givenHotEntries_whenScanningManyKeys_thenHotEntriesKept() {
+
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100, 100_000, value -> 1);
+
+        // given: a few entries read many times
+        for (int hot = 0; hot < 10; hot++) {
+            int key = -1 - hot;
+            cache.get(key, k -> "hot");
+            for (int i = 0; i < 5; i++) {
+                cache.get(key);
+            }
+        }
+
+        // when: a scan reads ten times as many keys once each
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(i, k -> "cold");
+        }
+
+        // then: the scan didn't flush the hot entries, and the size limit held
+        for (int hot = 0; hot < 10; hot++) {
+            assertThat(cache.peek(-1 - hot)).isEqualTo("hot");
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void givenConcurrentReadsAndWrites_whenDone_thenBoundsAndHotEntriesKept() throws Exception {
+
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100, 100_000, value -> 1);
+        for (int hot = 0; hot < 10; hot++) {
+            cache.put(-1 - hot, "hot");
+        }
+
+        // when: threads read the hot entries (buffered, without locking) amid a scan of cold keys
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        cache.get(-1 - random.nextInt(10));
+                        if (i % 10 == 0) {
+                            cache.get(random.nextInt(100_000), k -> "cold");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then: the size limit held, and the reads kept the hot entries in
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        for (int hot = 0; hot < 10; hot++) {
+            assertThat(cache.peek(-1 - hot)).isEqualTo("hot");
+        }
+        assertThat(cache.hitCount() + cache.missCount()).isEqualTo(4 * (20_000 + 2_000));
+    }
+
+    @Test
+    public void givenInvalidationDuringLoad_whenGet_thenLoadedValueNotCached() {
+
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 10_000, String::length);
+
+        // when: the key is invalidated (e.g. its row updated) while the old value is loading
+        String value = cache.get("note", key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+
+        // then: value returned to its reader but not cached
+        assertThat(value).isEqualTo("stale");
+        assertThat(cache.peek("note")).isNull();
+    }
+
+    @Test
+    public void givenOtherKeyInvalidatedDuringLoad_whenGet_thenLoadedValueCached() {
+
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(100, 10_000, String::length);
+        cache.put(2l, "other");
+
+        // when: an unrelated key is invalidated while the value is loading
+        String value = cache.get(1l, key -> {
+            cache.invalidate(2l);
+            return "loaded";
+        });
+
+        // then: the loaded value is still cached, the invalidated one is gone
+        assertThat(value).isEqualTo("loaded");
+        assertThat(cache.peek(1l)).isEqualTo("loaded");
+        assertThat(cache.peek(2l)).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.weight()).isEqualTo("loaded".length());
+    }
+}
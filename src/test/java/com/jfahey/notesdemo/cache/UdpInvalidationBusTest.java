@@ -0,0 +1,143 @@
+package com.jfahey.notesdemo.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+public class UdpInvalidationBusTest {
+
+    private static final long HEARTBEAT_MS = 60_000;
+    private static final byte[] SECRET = "secret".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void givenTwoBuses_whenPublish_thenOtherBusDelivers() throws Exception {
+
+        int senderPort = freePort();
+        UdpInvalidationBus receiver = new UdpInvalidationBus(loopback(0),
+            List.of(loopback(senderPort)), SECRET, HEARTBEAT_MS);
+        UdpInvalidationBus sender = new UdpInvalidationBus(loopback(senderPort),
+            List.of(loopback(receiver.getPort())), SECRET, HEARTBEAT_MS);
+        try {
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            receiver.subscribe("notes", key -> received.add(key == null ? "*" : key));
+
+            // when: a key, then every entry, is invalidated
+            sender.publish("notes", "42");
+            sender.publish("other", "7");
+            sender.publish("notes", null);
+
+            // then: the subscribed cache's invalidations arrive in order
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("42");
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("*");
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void givenMissedInvalidation_whenNextReceived_thenEveryEntryDropped() throws Exception {
+
+        try (DatagramSocket peer = new DatagramSocket(loopback(0))) {
+            UdpInvalidationBus receiver = new UdpInvalidationBus(loopback(0),
+                List.of(loopback(peer.getLocalPort())), null, HEARTBEAT_MS);
+            try {
+                BlockingQueue<String> received = new LinkedBlockingQueue<>();
+                receiver.subscribe("notes", key -> received.add(key == null ? "*" : key));
+                InetSocketAddress address = loopback(receiver.getPort());
+
+                // given: invalidation 1 received
+                send(peer, address, 1, "1", null);
+                assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("1");
+
+                // when: invalidation 2 is lost, 3 arrives
+                send(peer, address, 3, "3", null);
+
+                // then: everything dropped before applying 3
+                assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("*");
+                assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("3");
+            } finally {
+                receiver.close();
+            }
+        }
+    }
+
+    @Test
+    public void givenUnknownSourceOrBadSignature_whenReceived_thenDropped() throws Exception {
+
+        try (DatagramSocket peer = new DatagramSocket(loopback(0));
+             DatagramSocket stranger = new DatagramSocket(loopback(0))) {
+            UdpInvalidationBus receiver = new UdpInvalidationBus(loopback(0),
+                List.of(loopback(peer.getLocalPort())), SECRET, HEARTBEAT_MS);
+            try {
+                BlockingQueue<String> received = new LinkedBlockingQueue<>();
+                receiver.subscribe("notes", key -> received.add(key == null ? "*" : key));
+                InetSocketAddress address = loopback(receiver.getPort());
+
+                // when: a host that isn't a peer, then a peer with the wrong secret, send invalidations
+                send(stranger, address, 1, "1", SECRET);
+                send(peer, address, 1, "2", "wrong".getBytes(StandardCharsets.UTF_8));
+                send(peer, address, 1, "3", null);
+                // and the peer then sends a correctly signed one
+                send(peer, address, 1, "4", SECRET);
+
+                // then: only the signed invalidation from the peer is delivered
+                assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("4");
+                assertThat(received.poll(200, TimeUnit.MILLISECONDS)).isNull();
+            } finally {
+                receiver.close();
+            }
+        }
+    }
+
+    /**
+     * Sends an invalidation of the "notes" cache as numbered by a fixed peer instance,
+     * signed with the secret if given.
+     */
+    private static void send(DatagramSocket socket, InetSocketAddress address, long number, String key,
+        byte[] secret) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(1); // format
+            out.writeByte(0); // invalidation
+            out.writeLong(1L);
+            out.writeLong(2L);
+            out.writeLong(number);
+            out.writeUTF("notes");
+            out.writeBoolean(true);
+            out.writeUTF(key);
+            if (secret != null) {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+                out.write(mac.doFinal(bytes.toByteArray()));
+            }
+        }
+        byte[] message = bytes.toByteArray();
+        socket.send(new DatagramPacket(message, message.length, address));
+    }
+
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(loopback(0))) {
+            return socket.getLocalPort();
+        }
+    }
+}
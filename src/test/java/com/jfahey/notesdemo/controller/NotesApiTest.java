@@ -1,7 +1,9 @@
 package com.jfahey.notesdemo.controller;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -9,36 +11,58 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jfahey.notesdemo.cache.CacheInvalidationConfig;
+import com.jfahey.notesdemo.dto.NoteBatchRequest;
+import com.jfahey.notesdemo.dto.NoteCollectionVersion;
+import com.jfahey.notesdemo.dto.NoteCursor;
+import com.jfahey.notesdemo.dto.NoteDelta;
+import com.jfahey.notesdemo.dto.NoteDeltaOperation;
+import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.dto.NoteVersion;
 import com.jfahey.notesdemo.model.Note;
 import com.jfahey.notesdemo.security.JwtFilter;
 import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.PrincipalCache;
 import com.jfahey.notesdemo.security.UserDetailsServiceProvider;
 import com.jfahey.notesdemo.service.NotesService;
+import com.jfahey.notesdemo.sync.NoteEventHub;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 
-@Import({JwtFilter.class, JwtProvider.class})
+@Import({JwtFilter.class, JwtProvider.class, PrincipalCache.class, CacheInvalidationConfig.class})
 @WebMvcTest(NotesApi.class)
 public class NotesApiTest {
      
@@ -51,6 +75,9 @@ public class NotesApiTest {
     @MockBean
     private UserDetailsServiceProvider userDetailsServiceProvider;
 
+    @MockBean
+    private NoteEventHub noteEventHub;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -60,20 +87,46 @@ public class NotesApiTest {
 
         long noteId = 1l;
         Note note = new Note("Title", "user", "Content");
+        note.setId(noteId);
 
         // given: (mock) existing user note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
+        when(notesService.getNoteVersion(noteId, "user")).thenReturn(Optional.of(NoteVersion.of(note)));
+        when(notesService.getNote(noteId, "user")).thenReturn(Optional.of(note));
 
         // when: request note by id
         ResultActions response = this.mockMvc.perform(get("/notes/get/{id}", noteId));
 
-        // then: verify note successfully returned
+        // then: verify note successfully returned, with its version
         response.andDo(print())
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, NoteVersion.of(note).getETag()))
                 .andExpect(jsonPath("$.title", is(note.getTitle())))
                 .andExpect(jsonPath("$.content", is(note.getContent())));
     }
 
+    @Test
+    @WithMockUser(username="user")
+    public void givenCurrentETag_whenGetNoteById_thenReturnNotModified() throws Exception {
+
+        long noteId = 1l;
+        Note note = new Note("Title", "user", "Content");
+        note.setId(noteId);
+        NoteVersion version = NoteVersion.of(note);
+
+        // given: (mock) existing user note, unchanged since the client's copy
+        when(notesService.getNoteVersion(noteId, "user")).thenReturn(Optional.of(version));
+
+        // when: conditionally request note by id
+        ResultActions response = this.mockMvc.perform(get("/notes/get/{id}", noteId)
+            .header(HttpHeaders.IF_NONE_MATCH, version.getETag()));
+
+        // then: verify not modified, without loading the note
+        response.andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(notesService, never()).getNote(noteId, "user");
+    }
+
     @Test
     @WithMockUser(username="user")
     public void givenInvalidNoteId_whenGetNoteById_thenReturnEmpty() throws Exception {
@@ -82,7 +135,8 @@ public class NotesApiTest {
         //Note note = new Note("Title", "user", "Content");
 
         // given: (mock) no existing note for user
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.empty());
+        when(notesService.getNoteVersion(noteId, "user")).thenReturn(Optional.empty());
+        when(notesService.getNote(noteId, "user")).thenReturn(Optional.empty());
 
         // when: request note by id
         ResultActions response = mockMvc.perform(get("/notes/get/{id}", noteId));
@@ -102,14 +156,18 @@ public class NotesApiTest {
         List<Note> notes = List.of(note1, note2, note3);
 
         // given: (mock) existing user's multiple notes
+        NoteCollectionVersion version = new NoteCollectionVersion(3l, LocalDateTime.now(), 6l);
+        when(notesService.getNoteCollectionVersion("user")).thenReturn(version);
         when(notesService.getNotesByUsername("user")).thenReturn(notes);
 
         // when: request get all user notes
         ResultActions response = this.mockMvc.perform(get("/notes/all"));
 
-        // then: verify all user notes successfully returned
+        // then: verify all user notes successfully returned, with the collection version
         response.andDo(print())
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, version.getETag()))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
                 .andExpect(jsonPath("$.size()",
                             is(notes.size())))
                 .andExpect(jsonPath("$[0].title", is(note1.getTitle())))
@@ -117,6 +175,105 @@ public class NotesApiTest {
                 .andExpect(jsonPath("$[2].content", is(note3.getContent())));
     }
 
+    @Test
+    @WithMockUser(username="user")
+    public void givenCurrentETag_whenGetAllNotes_thenReturnNotModified() throws Exception {
+
+        NoteCollectionVersion version = new NoteCollectionVersion(3l, LocalDateTime.now(), 6l);
+
+        // given: (mock) user's notes unchanged since the client's copy
+        when(notesService.getNoteCollectionVersion("user")).thenReturn(version);
+
+        // when: conditionally request all user notes
+        ResultActions response = this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.IF_NONE_MATCH, version.getETag()));
+
+        // then: verify not modified, without loading the notes
+        response.andDo(print())
+                .andExpect(status().isNotModified());
+        verify(notesService, never()).getNotesByUsername("user");
+    }
+
+    @Test
+    @WithMockUser(username="user")
+    public void givenMoreNotesThanLimit_whenGetNotePage_thenReturnPageWithCursor() throws Exception {
+
+        Note note1 = new Note("Title1", "user", "Content1");
+        Note note2 = new Note("Title2", "user", "Content2");
+        Note note3 = new Note("Title3", "user", "Content3");
+        note1.setId(3l);
+        note2.setId(2l);
+        note3.setId(1l);
+
+        // given: (mock) more user notes than the requested page size
+        when(notesService.getNotesByUsername(eq("user"), isNull(), eq(3)))
+            .thenReturn(List.of(note1, note2, note3));
+
+        // when: request first page of two notes
+        ResultActions response = this.mockMvc.perform(get("/notes/page").param("limit", "2"));
+
+        // then: verify page is trimmed to the limit and points past its last note
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()", is(2)))
+                .andExpect(jsonPath("$.items[0].title", is(note1.getTitle())))
+                .andExpect(jsonPath("$.items[1].title", is(note2.getTitle())))
+                .andExpect(jsonPath("$.nextCursor", is(NoteCursor.of(note2).encode())));
+    }
+
+    @Test
+    @WithMockUser(username="user")
+    public void givenInvalidCursor_whenGetNotePage_thenReturnBadRequest() throws Exception {
+
+        // when: request page after a malformed cursor
+        ResultActions response = this.mockMvc.perform(get("/notes/page").param("after", "not-a-cursor"));
+
+        // then: verify bad request
+        response.andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username="user")
+    public void givenBlankQuery_whenSearchNotes_thenReturnBadRequest() throws Exception {
+
+        // when: search without any query text
+        ResultActions response = this.mockMvc.perform(get("/notes/search").param("q", "  "));
+
+        // then: verify bad request
+        response.andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username="user")
+    public void givenNotes_whenStreamAllNotes_thenReturnNotes() throws Exception {
+
+        Note note1 = new Note("Title1", "user", "Content1");
+        Note note2 = new Note("Title2", "user", "Content2");
+
+        // given: (mock) existing user's notes fed to the stream consumer
+        doAnswer(invocation -> {
+            Consumer<Note> consumer = invocation.getArgument(1);
+            consumer.accept(note1);
+            consumer.accept(note2);
+            return null;
+        }).when(notesService).streamNotesByUsername(eq("user"), any());
+
+        // when: request streamed user notes
+        MvcResult result = this.mockMvc.perform(get("/notes/all/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then: verify all user notes written as one JSON array
+        this.mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(2)))
+                .andExpect(jsonPath("$[0].title", is(note1.getTitle())))
+                .andExpect(jsonPath("$[1].content", is(note2.getContent())));
+    }
+
     @Test
     @WithMockUser(username="user")
     public void givenNote_whenCreateNote_thenReturnSavedNote() throws Exception {
@@ -167,6 +324,22 @@ public class NotesApiTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Tag("validation")
+    @Test
+    @WithMockUser(username="user")
+    public void givenEmptyBatch_whenBatch_thenReturnBadRequest() throws Exception {
+
+        // when: request batch without operations
+        ResultActions response = this.mockMvc.perform(post("/notes/batch")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteBatchRequest(List.of()))));
+
+        // then: verify bad request
+        response.andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(username="user")
     public void givenNote_whenUpdateNoteId_thenReturnSavedNote() throws Exception {
@@ -176,9 +349,7 @@ public class NotesApiTest {
         Note updatedNote = new Note("New Title", "user", "New Content");
 
         // given: (mock) existing user's note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
-        when(notesService.saveNote(any(Note.class)))
-            .thenAnswer((invocation)-> invocation.getArgument(0));
+        givenUpdatableNote(noteId, note);
 
         // when: request update note by id
         ResultActions response = this.mockMvc.perform(put("/notes/update/{id}", noteId)
@@ -195,6 +366,83 @@ public class NotesApiTest {
                 .andExpect(jsonPath("$.lastUpdated", is(not(emptyString()))));
     }
 
+    @Test
+    @WithMockUser(username="user")
+    public void givenStaleETag_whenUpdateNoteId_thenReturnPreconditionFailed() throws Exception {
+
+        long noteId = 1l;
+        Note note = new Note("Title", "user", "Content");
+        note.setId(noteId);
+
+        // given: (mock) existing user's note, changed since the client read it
+        givenUpdatableNote(noteId, note);
+
+        // when: request update note by id, conditional on the old version
+        ResultActions response = this.mockMvc.perform(put("/notes/update/{id}", noteId)
+            .with(csrf())
+            .header(HttpHeaders.IF_MATCH, "\"1-0\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("New Title", "New Content"))));
+
+        // then: verify precondition failed and note left unchanged
+        response.andDo(print())
+                .andExpect(status().isPreconditionFailed());
+        assertThat(note.getTitle()).isEqualTo("Title");
+    }
+
+    @Test
+    @WithMockUser(username="user")
+    public void givenDelta_whenPatchNoteId_thenReturnEditedNote() throws Exception {
+
+        long noteId = 1l;
+        Note note = new Note("Title", "user", "Hello world");
+        note.setId(noteId);
+
+        // given: (mock) existing user's note
+        givenUpdatableNote(noteId, note);
+
+        // when: request patch replacing the second word, conditional on the current version
+        NoteDelta delta = new NoteDelta(null, List.of(
+            NoteDeltaOperation.retain(6),
+            NoteDeltaOperation.delete(5),
+            NoteDeltaOperation.insert("there")));
+        ResultActions response = this.mockMvc.perform(patch("/notes/update/{id}", noteId)
+            .with(csrf())
+            .header(HttpHeaders.IF_MATCH, NoteVersion.of(note).getETag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(delta)));
+
+        // then: verify delta applied to the stored content
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Title")))
+                .andExpect(jsonPath("$.content", is("Hello there")));
+    }
+
+    @Tag("validation")
+    @Test
+    @WithMockUser(username="user")
+    public void givenDeltaPastContentEnd_whenPatchNoteId_thenReturnBadRequest() throws Exception {
+
+        long noteId = 1l;
+        Note note = new Note("Title", "user", "Short");
+
+        // given: (mock) existing user's note
+        givenUpdatableNote(noteId, note);
+
+        // when: request patch deleting more than the content holds
+        NoteDelta delta = new NoteDelta(null, List.of(NoteDeltaOperation.delete(50)));
+        ResultActions response = this.mockMvc.perform(patch("/notes/update/{id}", noteId)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(delta)));
+
+        // then: verify bad request and note left unchanged
+        response.andDo(print())
+                .andExpect(status().isBadRequest());
+        assertThat(note.getContent()).isEqualTo("Short");
+    }
+
     @Test
     @WithMockUser(username="user")
     public void givenNote_whenUpdateInvalidNoteId_thenReturnNotFound() throws Exception {
@@ -204,9 +452,7 @@ public class NotesApiTest {
         long invalidNoteId = 2l;
 
         // given: (mock) existing user's note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
-        when(notesService.saveNote(any(Note.class)))
-            .thenAnswer((invocation)-> invocation.getArgument(0));
+        givenUpdatableNote(noteId, note);
 
         // when: request update on note with invalid id
         ResultActions response = this.mockMvc.perform(put("/notes/update/{id}", invalidNoteId)
@@ -229,9 +475,7 @@ public class NotesApiTest {
         Note note = new Note(null, "user", "Content.");
 
         // given: (mock) existing user's note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
-        when(notesService.saveNote(any(Note.class)))
-            .thenAnswer((invocation)-> invocation.getArgument(0));
+        givenUpdatableNote(noteId, note);
 
         // when: request update on note with null title
         ResultActions response = this.mockMvc.perform(put("/notes/update/{id}", noteId)
@@ -252,9 +496,7 @@ public class NotesApiTest {
         Note note = new Note("Title", "admin", "Content");
 
         // given: (mock) existing user note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
-        when(notesService.saveNote(any(Note.class)))
-            .thenAnswer((invocation)-> invocation.getArgument(0));
+        givenUpdatableNote(noteId, note);
 
         // when: request update on another user's note
         ResultActions response = this.mockMvc.perform(put("/notes/update/{id}", noteId)
@@ -275,7 +517,7 @@ public class NotesApiTest {
         Note note = new Note("Title", "user", "Content");
 
         // given: (mock) existing user note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
+        when(notesService.deleteNote(noteId, note.getUsername())).thenReturn(true);
 
         // when: request delete by note id
         ResultActions response = mockMvc.perform(delete("/notes/delete/{id}", noteId)
@@ -296,7 +538,7 @@ public class NotesApiTest {
         long invalidNoteId = 2l;
 
         // given: (mock) existing user note
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
+        when(notesService.deleteNote(noteId, note.getUsername())).thenReturn(true);
 
         // when: request delete with invalid note id
         ResultActions response = mockMvc.perform(delete("/notes/delete/{id}", invalidNoteId)
@@ -315,7 +557,7 @@ public class NotesApiTest {
         Note note = new Note("Title", "admin", "Content");
 
         // given: (mock) existing note by another user
-        when(notesService.getNoteById(noteId)).thenReturn(Optional.of(note));
+        when(notesService.deleteNote(noteId, note.getUsername())).thenReturn(true);
 
         // when: request delete on another user's note
         ResultActions response = mockMvc.perform(delete("/notes/delete/{id}", noteId)
@@ -325,4 +567,17 @@ public class NotesApiTest {
         response.andDo(print())
                 .andExpect(status().isNotFound());
     }
+
+    /**
+     * Mock a note that only its owner can update: the update is applied to
+     * the note, as the service would within its transaction.
+     */
+    private void givenUpdatableNote(long noteId, Note note) {
+        when(notesService.updateNote(eq(noteId), eq(note.getUsername()), any()))
+            .thenAnswer((invocation) -> {
+                Consumer<Note> update = invocation.getArgument(2);
+                update.accept(note);
+                return Optional.of(note);
+            });
+    }
 }
@@ -5,9 +5,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,10 +22,13 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
@@ -105,10 +110,13 @@ public class AuthIntegrationTest {
         LoginRequest loginRequest = new LoginRequest(username, password);
 
         // when: post login request with correct user credentials
-        ResultActions response = mockMvc.perform(post("/auth/login")
+        MvcResult result = mockMvc.perform(post("/auth/login")
             .with(csrf())
             .contentType(MediaType.APPLICATION_JSON)
-            .content(objectMapper.writeValueAsString(loginRequest)));
+            .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        ResultActions response = mockMvc.perform(asyncDispatch(result));
 
         // then: verify successfully returned user access token
         response.andDo(print())
@@ -130,16 +138,67 @@ public class AuthIntegrationTest {
         );
 
         // when: post login request with incorrect user credentials
-        ResultActions response = mockMvc.perform(post("/auth/login")
+        MvcResult result = mockMvc.perform(post("/auth/login")
             .with(csrf())
             .contentType(MediaType.APPLICATION_JSON)
-            .content(objectMapper.writeValueAsString(loginRequest)));
+            .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        ResultActions response = mockMvc.perform(asyncDispatch(result));
 
         // then: verify unauthorized returned
         response.andDo(print())
                 .andExpect(status().isUnauthorized());
     }
 
+    @Test
+    public void givenRepeatedFailedLogins_whenLogin_thenTooManyRequests() throws Exception {
+
+        // given: existing user, and the username's burst of attempts used up with wrong passwords
+        User user = generateTestUser("user2", "user2@domain.com", "password2");
+        LoginRequest wrongLogin = new LoginRequest(user.getUsername(), "wrongpassword");
+        for (int i = 0; i < 5; i++) {
+            MvcResult result = mockMvc.perform(post("/auth/login")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(wrongLogin)))
+                .andReturn();
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isUnauthorized());
+        }
+
+        // when: login with the right password (and the username's case changed)
+        LoginRequest loginRequest = new LoginRequest("USER2", "password2");
+        ResultActions response = mockMvc.perform(post("/auth/login")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(loginRequest)));
+
+        // then: refused without checking the password, with a retry hint
+        response.andDo(print())
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, is(not(emptyString()))));
+    }
+
+    @Test
+    public void givenRepeatedSuccessfulLogins_whenLogin_thenNotThrottled() throws Exception {
+
+        // given: existing user logging in more often than the username's burst of failures
+        User user = generateTestUser("user3", "user3@domain.com", "password3");
+        LoginRequest loginRequest = new LoginRequest(user.getUsername(), "password3");
+
+        // when/then: successful logins don't count against the username
+        for (int i = 0; i < 7; i++) {
+            MvcResult result = mockMvc.perform(post("/auth/login")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        }
+    }
+
     private User generateTestUser(){
         return generateTestUser("user1", "user1@domain.com", "password1");
     }
@@ -0,0 +1,162 @@
+package com.jfahey.notesdemo.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.DatagramSocket;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import com.jfahey.notesdemo.NotesDemoApplication;
+import com.jfahey.notesdemo.dto.NoteSearchResult;
+import com.jfahey.notesdemo.model.Note;
+import com.jfahey.notesdemo.model.User;
+import com.jfahey.notesdemo.repository.UserRepository;
+import com.jfahey.notesdemo.security.PrincipalCache;
+import com.jfahey.notesdemo.service.NotesService;
+
+/**
+ * Runs two instances sharing one database in this JVM, and checks data one
+ * instance has cached is dropped when the other changes it.
+ */
+public class MultiInstanceCacheIntegrationTest {
+
+    @Test
+    public void givenInJvmBus_whenNoteUpdatedOnOtherInstance_thenUpdateReadImmediately() {
+
+        String database = "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        String channel = "--app.cache.bus.channel=" + UUID.randomUUID();
+
+        try (ConfigurableApplicationContext first = start(database, "--app.cache.bus.type=jvm", channel);
+             ConfigurableApplicationContext second = start(database, "--app.cache.bus.type=jvm", channel)) {
+
+            NotesService writer = first.getBean(NotesService.class);
+            NotesService reader = second.getBean(NotesService.class);
+
+            // given: note cached by the second instance
+            long id = writer.saveNote(new Note("Shared", "admin", "original")).getId();
+            assertThat(reader.getNoteById(id)).get().extracting(Note::getContent).isEqualTo("original");
+            assertThat(reader.getNotesByUsername("admin")).extracting(Note::getContent).contains("original");
+
+            // when: first instance updates it
+            writer.updateNote(id, "admin", note -> note.setContent("updated"));
+
+            // then: the second instance reads the update, invalidation was synchronous
+            assertThat(reader.getNoteById(id)).get().extracting(Note::getContent).isEqualTo("updated");
+            assertThat(reader.getNotesByUsername("admin")).extracting(Note::getContent)
+                .contains("updated").doesNotContain("original");
+        }
+    }
+
+    @Test
+    public void givenInJvmBus_whenUserChangedOnOtherInstance_thenCachedPrincipalEvicted() {
+
+        String database = "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        String channel = "--app.cache.bus.channel=" + UUID.randomUUID();
+
+        try (ConfigurableApplicationContext first = start(database, "--app.cache.bus.type=jvm", channel);
+             ConfigurableApplicationContext second = start(database, "--app.cache.bus.type=jvm", channel)) {
+
+            UserRepository users = first.getBean(UserRepository.class);
+            PrincipalCache principals = second.getBean(PrincipalCache.class);
+
+            // given: principal cached by the second instance
+            second.getBean(UserDetailsService.class).loadUserByUsername("admin");
+            assertThat(principals.get("admin", username -> null)).isNotNull();
+
+            // when: first instance changes the user's password
+            User admin = users.findByUsername("admin").get();
+            admin.setPassword("changed");
+            users.save(admin);
+
+            // then: the second instance no longer holds the old password
+            assertThat(principals.get("admin", username -> null)).isNull();
+        }
+    }
+
+    @Test
+    public void givenInJvmBus_whenNoteChangedOnOtherInstance_thenSearchFindsChangeShortlyAfter() throws Exception {
+
+        String database = "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        String channel = "--app.cache.bus.channel=" + UUID.randomUUID();
+
+        try (ConfigurableApplicationContext first = start(database, "--app.cache.bus.type=jvm", channel);
+             ConfigurableApplicationContext second = start(database, "--app.cache.bus.type=jvm", channel)) {
+
+            NotesService writer = first.getBean(NotesService.class);
+            NotesService searcher = second.getBean(NotesService.class);
+
+            // when: first instance creates a note, then another it deletes again
+            long id = writer.saveNote(new Note("Shared", "admin", "replicated aardvark")).getId();
+            long deleted = writer.saveNote(new Note("Deleted", "admin", "replicated aardvark")).getId();
+            writer.deleteNote(deleted, "admin");
+
+            // then: the second instance's index catches up with both changes
+            long deadline = System.currentTimeMillis() + 5_000;
+            List<Long> hits = search(searcher, "aardvark");
+            while (!hits.equals(List.of(id)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+                hits = search(searcher, "aardvark");
+            }
+            assertThat(hits).containsExactly(id);
+        }
+    }
+
+    @Test
+    public void givenUdpBus_whenNoteUpdatedOnOtherInstance_thenUpdateReadShortlyAfter() throws Exception {
+
+        String database = "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        int firstPort = freeUdpPort();
+        int secondPort = freeUdpPort();
+
+        String secret = "--app.cache.bus.udp.secret=" + UUID.randomUUID();
+
+        try (ConfigurableApplicationContext first = start(database, "--app.cache.bus.type=udp", secret,
+                "--app.cache.bus.udp.port=" + firstPort, "--app.cache.bus.udp.peers=127.0.0.1:" + secondPort);
+             ConfigurableApplicationContext second = start(database, "--app.cache.bus.type=udp", secret,
+                "--app.cache.bus.udp.port=" + secondPort, "--app.cache.bus.udp.peers=127.0.0.1:" + firstPort)) {
+
+            NotesService writer = first.getBean(NotesService.class);
+            NotesService reader = second.getBean(NotesService.class);
+
+            // given: note cached by the second instance
+            long id = writer.saveNote(new Note("Shared", "admin", "original")).getId();
+            assertThat(reader.getNoteById(id)).get().extracting(Note::getContent).isEqualTo("original");
+
+            // when: first instance updates it
+            writer.updateNote(id, "admin", note -> note.setContent("updated"));
+
+            // then: the second instance reads the update once the datagram arrives
+            long deadline = System.currentTimeMillis() + 5_000;
+            String content = reader.getNoteById(id).get().getContent();
+            while (!content.equals("updated") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+                content = reader.getNoteById(id).get().getContent();
+            }
+            assertThat(content).isEqualTo("updated");
+        }
+    }
+
+    private static List<Long> search(NotesService notes, String query) {
+        return notes.searchNotes("admin", query, 10).stream().map(NoteSearchResult::getId).toList();
+    }
+
+    private static ConfigurableApplicationContext start(String... args) {
+        String[] arguments = new String[args.length + 2];
+        System.arraycopy(args, 0, arguments, 0, args.length);
+        // command line arguments, as they take precedence over application.properties
+        arguments[args.length] = "--server.port=0";
+        arguments[args.length + 1] = "--logging.level.root=WARN";
+        return new SpringApplicationBuilder(NotesDemoApplication.class).run(arguments);
+    }
+
+    private static int freeUdpPort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -7,33 +7,58 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import com.jfahey.notesdemo.cache.NoteCache;
+import com.jfahey.notesdemo.dto.NoteBatchOperation;
+import com.jfahey.notesdemo.dto.NoteBatchRequest;
+import com.jfahey.notesdemo.dto.NoteDelta;
+import com.jfahey.notesdemo.dto.NoteDeltaOperation;
 import com.jfahey.notesdemo.dto.NoteRequest;
+import com.jfahey.notesdemo.dto.NoteSummary;
+import com.jfahey.notesdemo.dto.NoteUploadRequest;
 import com.jfahey.notesdemo.model.Note;
 import com.jfahey.notesdemo.model.User;
+import com.jfahey.notesdemo.repository.NoteChangeFeedRepository;
+import com.jfahey.notesdemo.repository.NoteChangeRepository;
 import com.jfahey.notesdemo.repository.NoteRepository;
 import com.jfahey.notesdemo.repository.UserRepository;
 import com.jfahey.notesdemo.security.JwtProvider;
+import com.jfahey.notesdemo.security.PrincipalCache;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
@@ -50,19 +75,36 @@ public class NotesIntegrationTest {
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private NoteChangeRepository noteChangeRepository;
+
+    @Autowired
+    private NoteChangeFeedRepository noteChangeFeedRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     @Autowired
     private JwtProvider jwtProvider;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private NoteCache noteCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @AfterEach
     void setup(){
         userRepository.deleteAll();
         noteRepository.deleteAll();
+        noteChangeRepository.deleteAll();
+        noteChangeFeedRepository.deleteAll();
     }
 
     @Test
@@ -109,6 +151,428 @@ public class NotesIntegrationTest {
                 .andExpect(jsonPath("$[2].content", is(notes.get(2).getContent())));
     }
 
+    @Test
+    public void givenUnchangedNote_whenConditionalGetNote_thenNotModifiedUntilUpdated() throws Exception {
+
+        // given: user note fetched once
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note note = generateTestNote("Title", "Content", user);
+
+        MvcResult first = this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when/then: re-polling with the ETag is answered with an empty 304
+        this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(emptyString()));
+
+        // when/then: once the note is updated, the full note is returned again
+        this.mockMvc.perform(put("/notes/update/{id}", note.getId())
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Updated", "Updated content")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$.title", is("Updated")));
+    }
+
+    @Test
+    public void givenUnchangedNotes_whenConditionalGetAllNotes_thenNotModifiedUntilNoteDeleted() throws Exception {
+
+        // given: user notes listed once
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        List<Note> notes = generateTestNotes(3, user);
+
+        MvcResult first = this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when/then: re-polling with the ETag is answered with an empty 304
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isNotModified());
+
+        // when/then: once a note is deleted, the full list is returned again
+        noteRepository.delete(notes.get(0));
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(2)));
+    }
+
+    @Test
+    public void givenMultipleNotes_whenPageThroughNotes_thenReturnEachNoteOnce() throws Exception {
+
+        // given: user and user's multiple notes
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        List<Note> notes = generateTestNotes(5, user);
+
+        // when: request first page of two notes
+        MvcResult firstPage = this.mockMvc.perform(get("/notes/page")
+            .param("limit", "2")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.size()", is(2)))
+            .andExpect(jsonPath("$.nextCursor", is(not(emptyString()))))
+            .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        MvcResult secondPage = this.mockMvc.perform(get("/notes/page")
+            .param("limit", "2")
+            .param("after", cursor)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.size()", is(2)))
+            .andReturn();
+        cursor = JsonPath.read(secondPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        // then: verify last page holds the remaining note and no further cursor
+        this.mockMvc.perform(get("/notes/page")
+            .param("limit", "2")
+            .param("after", cursor)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.size()", is(1)))
+            .andExpect(jsonPath("$.items[0].id", is(notes.get(0).getId().intValue())))
+            .andExpect(jsonPath("$.nextCursor", is(nullValue())));
+    }
+
+    @Test
+    public void givenNotes_whenGetNoteSummaries_thenReturnSummariesWithoutContent() throws Exception {
+
+        // given: user with a short note and a note longer than the excerpt
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        String longContent = "x".repeat(NoteSummary.EXCERPT_LENGTH + 80);
+        Note shortNote = generateTestNote("Short", "Short content", user);
+        Note longNote = generateTestNote("Long", longContent, user);
+
+        // when: request user note summaries
+        ResultActions response = this.mockMvc.perform(get("/notes/summaries")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify summaries carry length and excerpt but no content, newest first
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()", is(2)))
+                .andExpect(jsonPath("$.items[0].id", is(longNote.getId().intValue())))
+                .andExpect(jsonPath("$.items[0].contentLength", is(longContent.length())))
+                .andExpect(jsonPath("$.items[0].excerpt", is(longContent.substring(0, NoteSummary.EXCERPT_LENGTH))))
+                .andExpect(jsonPath("$.items[0].content").doesNotExist())
+                .andExpect(jsonPath("$.items[1].title", is(shortNote.getTitle())))
+                .andExpect(jsonPath("$.items[1].excerpt", is(shortNote.getContent())))
+                .andExpect(jsonPath("$.nextCursor", is(nullValue())));
+    }
+
+    @Test
+    public void givenLargeNote_whenCreateNote_thenStoredCompressedAndReadBackIntact() throws Exception {
+
+        // given: user and a large, log-like note
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "2024-01-01 12:00:00 INFO request handled\n".repeat(5_000);
+
+        // when: create note
+        MvcResult result = this.mockMvc.perform(post("/notes")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Log", content)))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isCreated())
+            .andReturn();
+        Integer id = JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+
+        // then: stored compressed, but read and summarized as the original content
+        String stored = jdbcTemplate.queryForObject("select content from notes where id = ?", String.class, id);
+        assertThat(stored.length()).isLessThan(content.length() / 10);
+
+        this.mockMvc.perform(get("/notes/get/{id}", id)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content", is(content)));
+        this.mockMvc.perform(get("/notes/summaries")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].contentLength", is(content.length())))
+            .andExpect(jsonPath("$.items[0].excerpt", is(content.substring(0, NoteSummary.EXCERPT_LENGTH))));
+    }
+
+    @Test
+    public void givenMultipleNotes_whenPageThroughNoteSummaries_thenReturnNextPage() throws Exception {
+
+        // given: user and user's multiple notes
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        List<Note> notes = generateTestNotes(3, user);
+
+        // when: request first page of two summaries, then the page after it
+        MvcResult firstPage = this.mockMvc.perform(get("/notes/summaries")
+            .param("limit", "2")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.size()", is(2)))
+            .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        ResultActions response = this.mockMvc.perform(get("/notes/summaries")
+            .param("limit", "2")
+            .param("after", cursor)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify the oldest note is on the last page
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(notes.get(0).getId().intValue())))
+                .andExpect(jsonPath("$.nextCursor", is(nullValue())));
+    }
+
+    @Test
+    public void givenMultipleNotes_whenStreamAllNotes_thenReturnAllNotes() throws Exception {
+
+        // given: user and user's multiple notes
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        List<Note> notes = generateTestNotes(3, user);
+
+        // when: request streamed user notes
+        MvcResult result = this.mockMvc.perform(get("/notes/all/stream")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // then: verify all notes returned, newest first
+        this.mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(notes.size())))
+                .andExpect(jsonPath("$[0].title", is(notes.get(2).getTitle())))
+                .andExpect(jsonPath("$[2].title", is(notes.get(0).getTitle())));
+    }
+
+    @Test
+    public void givenLargeNote_whenGetNoteContent_thenStreamContent() throws Exception {
+
+        // given: user note with large (compressed when stored) content
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "line of text ünïcödé\n".repeat(5_000);
+        Note note = generateTestNote("Title", content, user);
+
+        // when: request the note content
+        MvcResult result = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // then: verify full content returned as text, with byte ranges advertised
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.ETAG, notNullValue()))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_PLAIN_VALUE);
+        assertThat(result.getResponse().getContentAsByteArray())
+            .isEqualTo(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void givenLargeNote_whenGetNoteContentRange_thenReturnPartialContent() throws Exception {
+
+        // given: user note with large content of multi-byte characters
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "ünïcödé text\n".repeat(5_000);
+        Note note = generateTestNote("Title", content, user);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String eTag = this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when: request a byte range in the middle, guarded by the current ETag
+        MvcResult result = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.RANGE, "bytes=1000-1999")
+            .header(HttpHeaders.IF_RANGE, eTag)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn();
+
+        // then: verify exactly those bytes returned
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/" + bytes.length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 1000));
+        assertThat(result.getResponse().getContentAsByteArray())
+            .isEqualTo(Arrays.copyOfRange(bytes, 1000, 2000));
+
+        // when: request the last bytes
+        result = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.RANGE, "bytes=-100")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn();
+
+        // then: verify the suffix returned
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent());
+        assertThat(result.getResponse().getContentAsByteArray())
+            .isEqualTo(Arrays.copyOfRange(bytes, bytes.length - 100, bytes.length));
+
+        // when: request a range with a stale If-Range
+        result = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.RANGE, "bytes=0-9")
+            .header(HttpHeaders.IF_RANGE, "\"0-0\"")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn();
+
+        // then: verify the full content returned instead
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    public void givenNote_whenGetNoteContentRangeBeyondEnd_thenRangeNotSatisfiable() throws Exception {
+
+        // given: user note with short content
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note note = generateTestNote("Title", "Content", user);
+
+        // when: request a range starting past the end
+        ResultActions response = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.RANGE, "bytes=100-")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify 416 with the actual length
+        response.andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */7"));
+    }
+
+    @Test
+    public void givenAcceptsGzip_whenGetNoteContent_thenCompressedContent() throws Exception {
+
+        // given: user note with large content
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "repetitive content ".repeat(10_000);
+        Note note = generateTestNote("Title", content, user);
+
+        // when: request the content accepting gzip
+        MvcResult result = this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn();
+
+        // then: verify gzip-encoded response that decompresses to the content
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)));
+        byte[] compressed = result.getResponse().getContentAsByteArray();
+        assertThat(compressed.length).isLessThan(content.length() / 10);
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    public void givenOtherUsersNote_whenGetNoteContent_thenNotFound() throws Exception {
+
+        // given: another user's note
+        User user1 = generateTestUser();
+        User user2 = generateTestUser("user2", "user2@domain.com", "password2");
+        Note note = generateTestNote("Title", "Secret", user2);
+
+        // when/then: content not exposed
+        this.mockMvc.perform(get("/notes/{id}/content", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + generateTestUserToken(user1)))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void givenNotes_whenSearchNotes_thenReturnRankedOwnMatchesWithSnippets() throws Exception {
+
+        // given: user notes with varying matches, and another user's matching note
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        User otherUser = generateTestUser("user2", "user2@domain.com", "password2");
+
+        Note bestMatch = generateTestNote("Bread recipe", "Knead the bread dough.", user);
+        Note weakMatch = generateTestNote("Shopping", "Milk, eggs and bread.", user);
+        generateTestNote("Todo", "Call the bank.", user);
+        generateTestNote("Bread", "Someone else's bread.", otherUser);
+
+        // when: search user notes
+        ResultActions response = this.mockMvc.perform(get("/notes/search")
+            .param("q", "bread")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify only the user's matching notes, best match first, with snippets
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(2)))
+                .andExpect(jsonPath("$[0].id", is(bestMatch.getId().intValue())))
+                .andExpect(jsonPath("$[0].snippet", is(bestMatch.getContent())))
+                .andExpect(jsonPath("$[1].id", is(weakMatch.getId().intValue())));
+    }
+
+    @Test
+    public void givenUpdatedAndDeletedNotes_whenSearchNotes_thenReflectChanges() throws Exception {
+
+        // given: user notes, one updated and one deleted through the API
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        Note updated = generateTestNote("Draft", "first draft", user);
+        Note deleted = generateTestNote("Draft", "another draft", user);
+
+        this.mockMvc.perform(put("/notes/update/{id}", updated.getId())
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Final", "final version")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(delete("/notes/delete/{id}", deleted.getId())
+            .with(csrf())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+
+        // when/then: old terms no longer match, new ones do
+        this.mockMvc.perform(get("/notes/search")
+            .param("q", "draft")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(0)));
+        this.mockMvc.perform(get("/notes/search")
+            .param("q", "final")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(1)))
+            .andExpect(jsonPath("$[0].id", is(updated.getId().intValue())));
+    }
+
     @Test
     public void givenNote_whenCreateNote_thenReturnSavedNote() throws Exception {
 
@@ -162,6 +626,93 @@ public class NotesIntegrationTest {
                 .andExpect(jsonPath("$.lastUpdated", is(not(emptyString()))));
     }
 
+    @Test
+    public void givenConcurrentEditors_whenUpdateWithStaleETag_thenPreconditionFailed() throws Exception {
+
+        // given: user note read by two editors
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note note = generateTestNote("Title", "Content", user);
+
+        String eTag = this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when: first editor saves, conditional on the version both read
+        this.mockMvc.perform(put("/notes/update/{id}", note.getId())
+            .with(csrf())
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("First", "First edit")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.version", is(1)));
+
+        // then: second editor's save of the same version is rejected
+        this.mockMvc.perform(put("/notes/update/{id}", note.getId())
+            .with(csrf())
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Second", "Second edit")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isPreconditionFailed());
+
+        assertThat(noteRepository.findById(note.getId()).get().getTitle()).isEqualTo("First");
+    }
+
+    @Test
+    public void givenNote_whenPatchNoteWithDelta_thenContentEdited() throws Exception {
+
+        // given: user note with long content
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "start " + "x".repeat(10_000) + " end";
+        Note note = generateTestNote("Title", content, user);
+
+        // when: patch the last word and the title only
+        NoteDelta delta = new NoteDelta("New Title", List.of(
+            NoteDeltaOperation.retain(content.length() - 3),
+            NoteDeltaOperation.delete(3),
+            NoteDeltaOperation.insert("finish")));
+        ResultActions response = this.mockMvc.perform(patch("/notes/update/{id}", note.getId())
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(delta))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify the edit persisted
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("New Title")));
+        assertThat(noteRepository.findWithContentByIdAndUsername(note.getId(), user.getUsername()).get().getContent())
+            .isEqualTo("start " + "x".repeat(10_000) + " finish");
+    }
+
+    @Test
+    public void givenNoteAtLimit_whenPatchBeyondLimit_thenTooLargeAndUnchanged() throws Exception {
+
+        // given: user note whose content is just below the limit
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "x".repeat(NoteRequest.MAX_CONTENT_LENGTH - 5);
+        Note note = generateTestNote("Title", content, user);
+
+        // when: patch in a small insert that takes it past the limit
+        NoteDelta delta = new NoteDelta(null, List.of(
+            NoteDeltaOperation.retain(content.length()),
+            NoteDeltaOperation.insert("0123456789")));
+        ResultActions response = this.mockMvc.perform(patch("/notes/update/{id}", note.getId())
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(delta))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: rejected and nothing stored
+        response.andExpect(status().isPayloadTooLarge());
+        assertThat(noteRepository.findWithContentByIdAndUsername(note.getId(), user.getUsername()).get().getContent())
+            .isEqualTo(content);
+    }
+
     @Test
     public void givenNote_whenUpdateUnauthorizedNote_thenNotFound() throws Exception {
 
@@ -227,6 +778,427 @@ public class NotesIntegrationTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void givenMixedOperations_whenBatch_thenApplyAndReportEachOperation() throws Exception {
+
+        // given: user with two notes, and another user's note
+        User user1 = generateTestUser("user1","user1@domain.com","password1");
+        User user2 = generateTestUser("user2","user2@domain.com","password2");
+        String user1Token = generateTestUserToken(user1);
+
+        Note toUpdate = generateTestNote("Old Title", "Old Content", user1);
+        Note toDelete = generateTestNote("Delete Me", "Content", user1);
+        Note foreignNote = generateTestNote("Not Yours", "Content", user2);
+
+        NoteBatchRequest batchRequest = new NoteBatchRequest(List.of(
+            new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, "New Title", "New Content"),
+            new NoteBatchOperation(NoteBatchOperation.Type.UPDATE, toUpdate.getId(), "Updated Title", "Updated Content"),
+            new NoteBatchOperation(NoteBatchOperation.Type.DELETE, toDelete.getId(), null, null),
+            new NoteBatchOperation(NoteBatchOperation.Type.DELETE, foreignNote.getId(), null, null),
+            new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, null, "Untitled")
+        ));
+
+        // when: request batch of operations
+        ResultActions response = this.mockMvc.perform(post("/notes/batch")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + user1Token)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(batchRequest)));
+
+        // then: verify per-operation results
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(5)))
+                .andExpect(jsonPath("$[0].op", is("create")))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[0].id", is(notNullValue())))
+                .andExpect(jsonPath("$[1].status", is(200)))
+                .andExpect(jsonPath("$[2].status", is(200)))
+                .andExpect(jsonPath("$[3].status", is(404)))
+                .andExpect(jsonPath("$[4].status", is(400)));
+
+        // then: verify changes persisted, and other user's note untouched
+        assertThat(noteRepository.findById(toUpdate.getId()).get().getTitle()).isEqualTo("Updated Title");
+        assertThat(noteRepository.findById(toDelete.getId())).isEmpty();
+        assertThat(noteRepository.findById(foreignNote.getId())).isPresent();
+        assertThat(noteRepository.findByUsername(user1.getUsername())).hasSize(2);
+    }
+
+    @Test
+    public void givenOneInvalidOperation_whenBatch_thenOnlyItFails() throws Exception {
+
+        // given: a batch with an overlong title and an oversized content among valid operations
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note toUpdate = generateTestNote("Old Title", "Old Content", user);
+
+        NoteBatchRequest batchRequest = new NoteBatchRequest(List.of(
+            new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, "Valid", "Content"),
+            new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, "t".repeat(129), "Content"),
+            new NoteBatchOperation(NoteBatchOperation.Type.UPDATE, toUpdate.getId(), "Too big",
+                "c".repeat(NoteRequest.MAX_CONTENT_LENGTH + 1)),
+            new NoteBatchOperation(NoteBatchOperation.Type.CREATE, null, "Also valid", "Content")
+        ));
+
+        // when: request batch of operations
+        ResultActions response = this.mockMvc.perform(post("/notes/batch")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(batchRequest)));
+
+        // then: the invalid operations fail on their own, the others are applied
+        response.andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(4)))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[1].status", is(400)))
+                .andExpect(jsonPath("$[1].error", containsString("title")))
+                .andExpect(jsonPath("$[2].status", is(400)))
+                .andExpect(jsonPath("$[2].error", containsString("content")))
+                .andExpect(jsonPath("$[3].status", is(201)));
+
+        assertThat(noteRepository.findByUsername(user.getUsername()))
+            .extracting(Note::getTitle)
+            .containsExactlyInAnyOrder("Old Title", "Valid", "Also valid");
+    }
+
+    @Test
+    public void givenNullOperation_whenBatchOrPatch_thenBadRequest() throws Exception {
+
+        // given: user with a note
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note note = generateTestNote("Title", "Content", user);
+
+        // when: a batch, and a delta, with a null operation
+        ResultActions batch = this.mockMvc.perform(post("/notes/batch")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"operations\":[null]}"));
+        ResultActions patch = this.mockMvc.perform(patch("/notes/update/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"ops\":[null]}"));
+
+        // then: both rejected as invalid, nothing changed
+        batch.andExpect(status().isBadRequest());
+        patch.andExpect(status().isBadRequest());
+        assertThat(noteRepository.findByUsername(user.getUsername()))
+            .extracting(Note::getTitle)
+            .containsExactly("Title");
+    }
+
+    @Test
+    public void givenChunkedUpload_whenCommitted_thenNoteCreated() throws Exception {
+
+        // given: user with an open upload for a new note
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        String content = "chunked ünïcödé content\n".repeat(3_000);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        MvcResult created = this.mockMvc.perform(post("/notes/uploads")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteUploadRequest("Uploaded", null)))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received", is(0)))
+            .andReturn();
+        String uploadId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        // when: content sent in chunks (split mid-character), one chunk repeated
+        int chunkSize = 10_001;
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            this.mockMvc.perform(put("/notes/uploads/{id}", uploadId)
+                .with(csrf())
+                .param("offset", String.valueOf(offset))
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + chunkSize)))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(Math.min(bytes.length, offset + chunkSize))));
+        }
+        this.mockMvc.perform(put("/notes/uploads/{id}", uploadId)
+            .with(csrf())
+            .param("offset", "0")
+            .content(Arrays.copyOfRange(bytes, 0, chunkSize))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isConflict());
+
+        ResultActions response = this.mockMvc.perform(post("/notes/uploads/{id}/commit", uploadId)
+            .with(csrf())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify note created with the full content, and upload closed
+        response.andExpect(status().isCreated())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.title", is("Uploaded")))
+                .andExpect(jsonPath("$.contentLength", is(content.length())))
+                .andExpect(jsonPath("$.content").doesNotExist());
+        List<Note> notes = noteRepository.findByUsername(user.getUsername());
+        assertThat(notes).hasSize(1);
+        assertThat(notes.get(0).getContent()).isEqualTo(content);
+        this.mockMvc.perform(get("/notes/uploads/{id}", uploadId)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void givenChunkedUploadForNote_whenCommitted_thenContentReplaced() throws Exception {
+
+        // given: user note and an upload replacing its content
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        Note note = generateTestNote("Title", "Old content", user);
+
+        MvcResult created = this.mockMvc.perform(post("/notes/uploads")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteUploadRequest(null, note.getId())))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isCreated())
+            .andReturn();
+        String uploadId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        this.mockMvc.perform(put("/notes/uploads/{id}", uploadId)
+            .with(csrf())
+            .param("offset", "0")
+            .content("New content")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+
+        // when: commit
+        ResultActions response = this.mockMvc.perform(post("/notes/uploads/{id}/commit", uploadId)
+            .with(csrf())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken));
+
+        // then: verify content replaced, title kept
+        response.andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.title", is("Title")))
+                .andExpect(jsonPath("$.contentLength", is("New content".length())))
+                .andExpect(jsonPath("$.content").doesNotExist());
+        assertThat(noteRepository.findByUsername(user.getUsername()).get(0).getContent()).isEqualTo("New content");
+    }
+
+    @Test
+    public void givenOtherUsersNote_whenOpenUpload_thenNotFound() throws Exception {
+
+        // given: another user's note
+        User user1 = generateTestUser();
+        User user2 = generateTestUser("user2", "user2@domain.com", "password2");
+        Note note = generateTestNote("Title", "Content", user2);
+
+        // when/then: upload into it refused
+        this.mockMvc.perform(post("/notes/uploads")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteUploadRequest(null, note.getId())))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + generateTestUserToken(user1)))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void givenContentOverInlineLimit_whenCreateNote_thenBadRequest() throws Exception {
+
+        // given: user and content over the limit for JSON request bodies
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        NoteRequest request = new NoteRequest("Title", "x".repeat(NoteRequest.MAX_CONTENT_LENGTH + 1));
+
+        // when/then: rejected, to be uploaded in chunks instead
+        this.mockMvc.perform(post("/notes")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(request))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenCachedPrincipal_whenUserDeleted_thenPrincipalEvicted() throws Exception {
+
+        // given: user whose principal was cached by an authenticated request
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+        assertThat(principalCache.get(user.getUsername(), username -> null)).isNotNull();
+
+        // when: user is removed
+        userRepository.delete(user);
+
+        // then: verify cached principal evicted
+        assertThat(principalCache.get(user.getUsername(), username -> null)).isNull();
+    }
+
+    @Test
+    public void givenCachedNoteAndListing_whenNoteUpdatedThenDeleted_thenReadsReflectChanges() throws Exception {
+
+        // given: user's note and listing read once, so both are cached
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        Note note = generateTestNote("Test Title", "Test Content", user);
+
+        this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(jsonPath("$[0].content", is("Test Content")));
+        assertThat(noteCache.peek(note.getId())).isNotNull();
+
+        // when: note updated
+        this.mockMvc.perform(put("/notes/update/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken)
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Updated Title", "Updated Content"))))
+            .andExpect(status().isOk());
+
+        // then: note and listing read back updated
+        this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(jsonPath("$.content", is("Updated Content")));
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(jsonPath("$[0].content", is("Updated Content")));
+
+        // when: note deleted (by a bulk statement)
+        this.mockMvc.perform(delete("/notes/delete/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken)
+            .with(csrf()))
+            .andExpect(status().isOk());
+
+        // then: note gone from reads
+        this.mockMvc.perform(get("/notes/get/{id}", note.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/notes/all")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(jsonPath("$.size()", is(0)));
+    }
+
+    @Test
+    public void givenSyncCursor_whenNotesChanged_thenGetOnlyChangesSinceCursor() throws Exception {
+
+        // given: user with notes, client synced in full after getting a reset cursor
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+        List<Note> notes = generateTestNotes(3, user);
+
+        MvcResult reset = this.mockMvc.perform(get("/notes/changes")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset", is(true)))
+            .andExpect(jsonPath("$.upserts.size()", is(0)))
+            .andReturn();
+        String cursor = JsonPath.read(reset.getResponse().getContentAsString(), "$.cursor");
+
+        // when: one note created, one updated (twice), one deleted
+        MvcResult created = this.mockMvc.perform(post("/notes")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Created", "created content")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isCreated())
+            .andReturn();
+        Integer createdId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        for (String content : List.of("first edit", "second edit")) {
+            this.mockMvc.perform(put("/notes/update/{id}", notes.get(0).getId())
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new NoteRequest("Updated", content)))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+                .andExpect(status().isOk());
+        }
+        this.mockMvc.perform(delete("/notes/delete/{id}", notes.get(1).getId())
+            .with(csrf())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk());
+
+        // then: only the changes are returned, each note once in its current state
+        MvcResult changes = this.mockMvc.perform(get("/notes/changes")
+            .param("since", cursor)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset", is(false)))
+            .andExpect(jsonPath("$.hasMore", is(false)))
+            .andExpect(jsonPath("$.upserts.size()", is(2)))
+            .andExpect(jsonPath("$.upserts[0].id", is(createdId)))
+            .andExpect(jsonPath("$.upserts[1].content", is("second edit")))
+            .andExpect(jsonPath("$.deleted", is(List.of(notes.get(1).getId().intValue()))))
+            .andReturn();
+        String nextCursor = JsonPath.read(changes.getResponse().getContentAsString(), "$.cursor");
+
+        // then: changes can be paged, and nothing is left after the last cursor
+        this.mockMvc.perform(get("/notes/changes")
+            .param("since", cursor)
+            .param("limit", "1")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.hasMore", is(true)))
+            .andExpect(jsonPath("$.upserts.size()", is(1)));
+        this.mockMvc.perform(get("/notes/changes")
+            .param("since", nextCursor)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset", is(false)))
+            .andExpect(jsonPath("$.upserts.size()", is(0)))
+            .andExpect(jsonPath("$.deleted.size()", is(0)))
+            .andExpect(jsonPath("$.cursor", is(nextCursor)));
+    }
+
+    @Test
+    public void givenMalformedCursor_whenGetChanges_thenReturnBadRequest() throws Exception {
+
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        this.mockMvc.perform(get("/notes/changes")
+            .param("since", "not-a-cursor")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenEventStream_whenNoteCreated_thenCreateEventPushed() throws Exception {
+
+        // given: user with an open event stream
+        User user = generateTestUser();
+        String userToken = generateTestUserToken(user);
+
+        MvcResult stream = this.mockMvc.perform(get("/notes/stream")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(request().asyncStarted())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, containsString(MediaType.TEXT_EVENT_STREAM_VALUE)))
+            .andReturn();
+
+        // when: note created
+        MvcResult created = this.mockMvc.perform(post("/notes")
+            .with(csrf())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new NoteRequest("Pushed", "pushed content")))
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + userToken))
+            .andExpect(status().isCreated())
+            .andReturn();
+        Integer id = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        // then: create event pushed on the stream
+        String expected = "event:create\ndata:{\"id\":" + id + "}";
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!stream.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stream.getResponse().getContentAsString()).contains(expected);
+    }
+
     private User generateTestUser(){
         return generateTestUser("user1", "user1@domain.com", "password1");
     }
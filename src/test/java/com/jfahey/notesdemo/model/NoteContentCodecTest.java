@@ -0,0 +1,114 @@
+package com.jfahey.notesdemo.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class NoteContentCodecTest {
+
+    @Test
+    public void givenShortContent_whenEncode_thenStoredAsIs() {
+
+        String content = "Hello! This is a note.";
+
+        // when/then: short content left uncompressed
+        assertThat(NoteContentCodec.encode(content)).isEqualTo(content);
+        assertThat(NoteContentCodec.decode(content)).isEqualTo(content);
+    }
+
+    @Test
+    public void givenLargeContent_whenEncode_thenCompressedAndRoundTrips() {
+
+        // given: large, repetitive content such as a pasted log
+        String content = "2024-01-01 12:00:00 INFO  request handled in 12 ms ünïcödé\n".repeat(2_000);
+
+        // when: encode
+        String stored = NoteContentCodec.encode(content);
+
+        // then: stored compressed, much smaller, and decodes to the original
+        assertThat(NoteContentCodec.isCompressed(stored)).isTrue();
+        assertThat(stored.length()).isLessThan(content.length() / 10);
+        assertThat(NoteContentCodec.decode(stored)).isEqualTo(content);
+    }
+
+    @Test
+    public void givenIncompressibleContent_whenEncode_thenStoredAsIs() {
+
+        // given: large content that doesn't compress below its base64 size
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(1);
+        while (content.length() < NoteContentCodec.COMPRESSION_THRESHOLD * 2) {
+            content.append((char) ('!' + random.nextInt(90)));
+        }
+
+        // when/then: kept plain
+        assertThat(NoteContentCodec.encode(content.toString())).isEqualTo(content.toString());
+    }
+
+    @Test
+    public void givenContentStartingWithMarker_whenEncode_thenRoundTrips() {
+
+        // given: short plain content that looks like the compressed format
+        String content = NoteContentCodec.MARKER + "not actually compressed";
+
+        // when/then: encoded unambiguously and read back unchanged
+        assertThat(NoteContentCodec.decode(NoteContentCodec.encode(content))).isEqualTo(content);
+    }
+
+    @Test
+    public void givenLargeNote_whenGetContent_thenDecodedOnceAndCached() {
+
+        String content = "x".repeat(NoteContentCodec.COMPRESSION_THRESHOLD * 4);
+
+        // when: note created with large content
+        Note note = new Note("Title", "user", content);
+
+        // then: content reads back unchanged
+        assertThat(note.getContent()).isEqualTo(content);
+        assertThat(note.getContent()).isSameAs(note.getContent());
+    }
+
+    @Test
+    public void givenMixedText_whenUtf8Length_thenSameAsEncodedLength() {
+
+        // given: ASCII, 2 and 3 byte characters, a surrogate pair and unpaired surrogates
+        String[] contents = {"", "plain", "ünïcödé", "€ and ✓", "emoji \uD83D\uDE00", "lone \uD83D", "\uDE00 lone"};
+
+        // when/then: counted length matches the actual encoding
+        for (String content : contents) {
+            assertThat(NoteContentCodec.utf8Length(content))
+                .as(content).isEqualTo(content.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    @Test
+    public void givenStoredValues_whenDecodingReader_thenSameAsDecode() throws IOException {
+
+        // given: compressed, plain, marker-like and very short stored values
+        String large = "streamed line ünïcödé\n".repeat(1_000);
+        String[] contents = {large, "plain", NoteContentCodec.MARKER + "x", "\u0001", ""};
+
+        // when/then: streaming decode yields the same content as decode
+        for (String content : contents) {
+            String stored = NoteContentCodec.encode(content);
+            assertThat(readAll(NoteContentCodec.decodingReader(new StringReader(stored))))
+                .isEqualTo(NoteContentCodec.decode(stored));
+        }
+        assertThat(NoteContentCodec.isCompressed(NoteContentCodec.encode(large))).isTrue();
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        try (reader) {
+            StringWriter writer = new StringWriter();
+            reader.transferTo(writer);
+            return writer.toString();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.jfahey.notesdemo.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+public class LoginRateLimiterAutoConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(LoginRateLimiterAutoConfiguration.class));
+
+    @Test
+    public void givenNoLimiterDeclared_whenStarted_thenTokenBucketLimiter() {
+        contextRunner.run(context -> assertThat(context)
+            .getBean(LoginRateLimiter.class).isInstanceOf(TokenBucketLoginRateLimiter.class));
+    }
+
+    @Test
+    public void givenLimiterDeclared_whenStarted_thenDefaultBacksOff() {
+        contextRunner.withUserConfiguration(CustomLimiterConfig.class).run(context -> {
+            assertThat(context).hasSingleBean(LoginRateLimiter.class);
+            assertThat(context).getBean(LoginRateLimiter.class).isSameAs(CustomLimiterConfig.LIMITER);
+        });
+    }
+
+    @Configuration
+    static class CustomLimiterConfig {
+
+        static final LoginRateLimiter LIMITER = new LoginRateLimiter() {
+            @Override
+            public long tryAcquire(String clientAddress, String username) {
+                return 0;
+            }
+
+            @Override
+            public void release(String clientAddress, String username) {
+            }
+        };
+
+        @Bean
+        LoginRateLimiter customLoginRateLimiter() {
+            return LIMITER;
+        }
+    }
+}
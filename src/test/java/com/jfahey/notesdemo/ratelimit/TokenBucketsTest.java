@@ -0,0 +1,90 @@
+package com.jfahey.notesdemo.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketsTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void givenBurstUsed_whenTryAcquire_thenRefusedUntilRefilled() {
+
+        // given: 3 token buckets regaining 6 tokens a minute (one every 10s)
+        TokenBuckets buckets = new TokenBuckets(3, 6, 100, clock::get);
+
+        // when/then: the burst is allowed, then refused with the wait for the next token
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.tryAcquire("key")).isZero();
+        }
+        assertThat(buckets.tryAcquire("key")).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+        assertThat(buckets.tryAcquire("other")).isZero();
+
+        // when/then: one token back after 10s
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isPositive();
+
+        // when/then: full burst again after a long idle
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.tryAcquire("key")).isZero();
+        }
+    }
+
+    @Test
+    public void givenBurstUsed_whenRelease_thenTokenReturnedUpToBurst() {
+
+        // given: 2 token buckets regaining 6 tokens a minute, both used up
+        TokenBuckets buckets = new TokenBuckets(2, 6, 100, clock::get);
+        buckets.tryAcquire("key");
+        buckets.tryAcquire("key");
+        assertThat(buckets.tryAcquire("key")).isPositive();
+
+        // when/then: a released token can be taken again straight away
+        buckets.release("key");
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isPositive();
+
+        // when/then: releasing more than was taken doesn't raise the burst, or add buckets
+        for (int i = 0; i < 5; i++) {
+            buckets.release("key");
+        }
+        buckets.release("unknown");
+        assertThat(buckets.size()).isEqualTo(1);
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isZero();
+        assertThat(buckets.tryAcquire("key")).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    public void givenManyKeys_whenTryAcquire_thenRefilledBucketsDroppedFirst() {
+
+        // given: room for 16 buckets (one per shard), all refilled
+        TokenBuckets buckets = new TokenBuckets(1, 60, 16, clock::get);
+        for (int i = 0; i < 100; i++) {
+            buckets.tryAcquire("key" + i);
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // then: bounded, and nothing in use had to be evicted
+        assertThat(buckets.size()).isLessThanOrEqualTo(16);
+        assertThat(buckets.evictionCount()).isZero();
+    }
+
+    @Test
+    public void givenManyKeysInUse_whenTryAcquire_thenMemoryStaysBounded() {
+
+        TokenBuckets buckets = new TokenBuckets(1, 1, 16, clock::get);
+        for (int i = 0; i < 10_000; i++) {
+            buckets.tryAcquire("key" + i);
+        }
+
+        assertThat(buckets.size()).isLessThanOrEqualTo(16);
+        assertThat(buckets.evictionCount()).isPositive();
+    }
+}
@@ -0,0 +1,100 @@
+package com.jfahey.notesdemo.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import com.jfahey.notesdemo.model.Note;
+
+import jakarta.persistence.PersistenceUnitUtil;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+public class NoteRepositoryTest {
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private PersistenceUnitUtil persistenceUnitUtil;
+
+    private Long noteId;
+
+    @BeforeEach
+    void setup() {
+        persistenceUnitUtil = entityManager.getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+        noteId = entityManager.persistAndFlush(new Note("Title", "user", "body text")).getId();
+        entityManager.clear();
+    }
+
+    @Test
+    public void whenFindByIdAndUsername_thenContentNotLoadedUntilRead() {
+
+        Note note = noteRepository.findByIdAndUsername(noteId, "user").orElseThrow();
+
+        assertThat(persistenceUnitUtil.isLoaded(note, "title")).isTrue();
+        assertThat(persistenceUnitUtil.isLoaded(note, "content")).isFalse();
+
+        // still readable on demand while the note is managed
+        assertThat(note.getContent()).isEqualTo("body text");
+        assertThat(persistenceUnitUtil.isLoaded(note, "content")).isTrue();
+    }
+
+    @Test
+    public void whenFindWithContent_thenContentLoaded() {
+
+        Note note = noteRepository.findWithContentByIdAndUsername(noteId, "user").orElseThrow();
+        List<Note> notes = noteRepository.findByUsername("user");
+
+        assertThat(persistenceUnitUtil.isLoaded(note, "content")).isTrue();
+        assertThat(notes).allSatisfy(n -> assertThat(persistenceUnitUtil.isLoaded(n, "content")).isTrue());
+        assertThat(note.getContent()).isEqualTo("body text");
+    }
+
+    @Test
+    public void givenUnloadedContent_whenTitleUpdated_thenContentKept() {
+
+        // given: a note loaded without its content
+        Note note = noteRepository.findByIdAndUsername(noteId, "user").orElseThrow();
+
+        // when: only the title is changed
+        note.setTitle("New title");
+        entityManager.flush();
+        entityManager.clear();
+
+        // then: the content is untouched
+        Note reloaded = noteRepository.findWithContentByIdAndUsername(noteId, "user").orElseThrow();
+        assertThat(reloaded.getTitle()).isEqualTo("New title");
+        assertThat(reloaded.getContent()).isEqualTo("body text");
+    }
+
+    @Test
+    public void givenNoteWithoutDate_whenSaved_thenDatedAndListed() {
+
+        // given: a note built through setters, without a modification date
+        Note undated = new Note();
+        undated.setTitle("Undated");
+        undated.setUsername("user");
+        undated.setContent("no date");
+
+        // when: saved
+        Long id = noteRepository.saveAndFlush(undated).getId();
+        entityManager.clear();
+
+        // then: it has a date, so keyset pages can place it
+        assertThat(noteRepository.findById(id).orElseThrow().getLastUpdated()).isNotNull();
+        assertThat(noteRepository.findPageByUsername("user", PageRequest.of(0, 10)))
+            .extracting(Note::getId).contains(id);
+    }
+}
@@ -0,0 +1,153 @@
+package com.jfahey.notesdemo.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jfahey.notesdemo.model.Note;
+
+/**
+ * Checks the H2 query plans of the hot note and user queries against the
+ * indexes declared on the entities. Each repository method is called and the
+ * SQL Hibernate generated for it (captured by a {@link StatementInspector})
+ * is explained, so the plans follow any change to the queries or mappings.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+    + "com.jfahey.notesdemo.repository.QueryPlanTest$CapturingStatementInspector")
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+public class QueryPlanTest {
+
+    private static final String NOTES_INDEX = "IDX_NOTES_USERNAME_LAST_UPDATED";
+    private static final String INDEX_SORTED = "/* index sorted */";
+    private static final String TABLE_SCAN = "tableScan";
+    private static final PageRequest PAGE = PageRequest.ofSize(51);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NoteChangeRepository noteChangeRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void whenListNotesByUsername_thenUseListingIndex() {
+        assertThat(plan(() -> noteRepository.findByUsername("user1")))
+            .contains(NOTES_INDEX + ": USERNAME =");
+    }
+
+    @Test
+    public void whenGetFirstNotePage_thenReadListingIndexInOrder() {
+        assertThat(plan(() -> noteRepository.findPageByUsername("user1", PAGE)))
+            .contains(NOTES_INDEX + ": USERNAME =")
+            .contains(INDEX_SORTED);
+        assertThat(plan(() -> {
+                try (Stream<Note> notes = noteRepository.streamByUsername("user1")) {
+                    notes.count();
+                }
+            }))
+            .contains(NOTES_INDEX + ": USERNAME =")
+            .contains(INDEX_SORTED);
+    }
+
+    @Test
+    public void whenGetNextNotePage_thenReadListingIndexInOrder() {
+        assertThat(plan(() -> noteRepository.findPageByUsernameAfter("user1", LocalDateTime.now(), 1L, PAGE)))
+            .contains(NOTES_INDEX + ": USERNAME =")
+            .contains(INDEX_SORTED);
+    }
+
+    @Test
+    public void whenGetNoteSummaryPage_thenReadListingIndexInOrder() {
+        assertThat(plan(() -> noteRepository.findSummaryPageByUsername("user1", PAGE)))
+            .contains(NOTES_INDEX + ": USERNAME =")
+            .contains(INDEX_SORTED);
+        assertThat(plan(() -> noteRepository.findSummaryPageByUsernameAfter("user1", LocalDateTime.now(), 1L, PAGE)))
+            .contains(NOTES_INDEX + ": USERNAME =")
+            .contains(INDEX_SORTED);
+    }
+
+    @Test
+    public void whenGetNoteCollectionVersion_thenUseListingIndex() {
+        assertThat(plan(() -> noteRepository.findCollectionVersionByUsername("user1")))
+            .contains(NOTES_INDEX + ": USERNAME =");
+    }
+
+    @Test
+    public void whenGetNoteByIdAndUsername_thenUsePrimaryKey() {
+        assertThat(plan(() -> noteRepository.findByIdAndUsername(1L, "user1")))
+            .containsPattern("PRIMARY_KEY_\\w+: ID =");
+        assertThat(plan(() -> noteRepository.findWithContentByIdAndUsername(1L, "user1")))
+            .containsPattern("PRIMARY_KEY_\\w+: ID =");
+        // on an empty table H2 may pick either index for the delete, as long as it doesn't scan
+        assertThat(plan(() -> noteRepository.deleteByIdAndUsername(1L, "user1")))
+            .containsPattern("(PRIMARY_KEY_\\w+|" + NOTES_INDEX + "): ID =")
+            .doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void whenFindUserByUsernameOrEmail_thenUseUniqueIndexes() {
+        assertThat(plan(() -> userRepository.findByUsername("user1")))
+            .contains("UK_USERS_USERNAME");
+        assertThat(plan(() -> userRepository.findByEmail("user1@example.com")))
+            .contains("UK_USERS_EMAIL");
+    }
+
+    @Test
+    public void whenGetNoteChangesSinceCursor_thenReadChangeLogIndexInOrder() {
+        assertThat(plan(() -> noteChangeRepository.findByUsernameAfter("user1", 0L, PageRequest.ofSize(501))))
+            .containsPattern("UK_NOTE_CHANGES_USERNAME_SEQUENCE\\w*: USERNAME =")
+            .contains(INDEX_SORTED);
+    }
+
+    /**
+     * Explain the single statement the repository call executed.
+     */
+    private String plan(Runnable repositoryCall) {
+        CapturingStatementInspector.STATEMENTS.clear();
+        repositoryCall.run();
+        List<String> statements = List.copyOf(CapturingStatementInspector.STATEMENTS);
+        assertThat(statements).hasSize(1);
+        return jdbcTemplate.queryForObject("explain " + statements.get(0), String.class);
+    }
+
+    /** Records the SQL Hibernate sends to the database. */
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        private static final long serialVersionUID = 1L;
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
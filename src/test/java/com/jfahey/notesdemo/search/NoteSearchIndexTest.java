@@ -0,0 +1,212 @@
+package com.jfahey.notesdemo.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class NoteSearchIndexTest {
+
+    private final NoteSearchIndex index = new NoteSearchIndex();
+
+    @Test
+    public void givenIndexedNotes_whenSearch_thenReturnMatchesBestFirst() {
+
+        // given: notes mentioning the term once, twice and not at all
+        index.index(1, "user1", "Shopping", "milk and bread");
+        index.index(2, "user1", "Recipes", "bread dough, then bake the bread");
+        index.index(3, "user1", "Todo", "call the bank");
+
+        // when: search for the term
+        List<NoteSearchIndex.Hit> hits = index.search("user1", "Bread", 10);
+
+        // then: only matching notes returned, higher term frequency first
+        assertThat(hits).extracting(NoteSearchIndex.Hit::noteId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void givenTitleMatch_whenSearch_thenRankAboveContentMatch() {
+
+        // given: same term once in a title and once in content
+        index.index(1, "user1", "Notes", "groceries for the week");
+        index.index(2, "user1", "Groceries", "for the week");
+
+        // when/then: title match ranks first
+        assertThat(index.search("user1", "groceries", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void givenOtherUsersNotes_whenSearch_thenReturnOnlyOwnNotes() {
+
+        // given: two users with matching notes
+        index.index(1, "user1", "Plan", "secret plan");
+        index.index(2, "user2", "Plan", "secret plan");
+
+        // when/then: each user only finds their own note
+        assertThat(index.search("user1", "secret", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+        assertThat(index.search("unknown", "secret", 10)).isEmpty();
+    }
+
+    @Test
+    public void givenReindexedAndRemovedNotes_whenSearch_thenReflectLatestState() {
+
+        // given: note re-indexed with new content, and a removed note
+        index.index(1, "user1", "Note", "old text");
+        index.index(1, "user1", "Note", "new text");
+        index.index(2, "user1", "Note", "old text");
+        index.remove(2, "user1");
+
+        // when/then: stale terms and removed notes no longer match
+        assertThat(index.search("user1", "old", 10)).isEmpty();
+        assertThat(index.search("user1", "new", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+        assertThat(index.size("user1")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenManyUpdates_whenIndexCompacted_thenSearchStillCorrect() {
+
+        // given: enough re-indexing to trigger compaction of dead documents
+        for (int i = 0; i < 3000; i++) {
+            index.index(i % 10, "user1", "Note " + (i % 10), "revision " + i);
+        }
+
+        // when/then: only the latest revision of each note matches
+        assertThat(index.size("user1")).isEqualTo(10);
+        assertThat(index.search("user1", "revision", 100)).hasSize(10);
+        assertThat(index.search("user1", "2999", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(9L);
+        assertThat(index.search("user1", "5", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(5L);
+        assertThat(index.search("user1", "15", 10)).isEmpty();
+    }
+
+    @Test
+    public void givenRetitledNote_whenReindexTitle_thenContentTermsKept() {
+
+        // given: a note retitled often enough to compact its dead documents
+        index.index(1, "user1", "Draft", "quarterly report figures");
+        for (int i = 0; i < 2000; i++) {
+            index.reindexTitle(1, "user1", "Title " + i);
+        }
+        index.reindexTitle(2, "user1", "Not indexed");
+
+        // when/then: new title and old content match, old title doesn't
+        assertThat(index.search("user1", "1999", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+        assertThat(index.search("user1", "quarterly", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+        assertThat(index.search("user1", "draft", 10)).isEmpty();
+        assertThat(index.size("user1")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenWritesDuringRebuild_whenRebuilt_thenAppliedOverSnapshot() {
+
+        // given: writes made while the (older) snapshot is loading
+        index.index(9, "user1", "Stale", "dropped by the rebuild");
+        index.rebuild(loader -> {
+            loader.index(1, "user1", "Note", "old text");
+            index.index(1, "user1", "Note", "new text");
+            index.index(2, "user1", "Added", "new text");
+            loader.index(3, "user1", "Deleted", "old text");
+            index.remove(3, "user1");
+        });
+
+        // when/then: the writes win over the snapshot
+        assertThat(index.search("user1", "old", 10)).isEmpty();
+        assertThat(index.search("user1", "new", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("user1", "stale", 10)).isEmpty();
+    }
+
+    @Test
+    public void givenRebuildPending_whenSearch_thenWaitForRebuild() throws Exception {
+
+        // given: a rebuild announced but not run yet
+        index.beginRebuild();
+        CompletableFuture<List<NoteSearchIndex.Hit>> hits =
+            CompletableFuture.supplyAsync(() -> index.search("user1", "text", 10));
+        Thread.sleep(100);
+        assertThat(hits).isNotDone();
+
+        // when: the rebuild completes
+        index.rebuild(loader -> loader.index(1, "user1", "Note", "text"));
+
+        // then: the waiting search sees the rebuilt index
+        assertThat(hits.get(5, TimeUnit.SECONDS))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+    }
+
+    @Test
+    public void givenRebuildLoading_whenSearchOrRebuildAgain_thenOldIndexServedAndRebuildsTakeTurns() throws Exception {
+
+        // given: an indexed note, and a rebuild whose snapshot is still loading
+        index.index(1, "user1", "Note", "old text");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> index.rebuild(loader -> {
+            loader.index(2, "user1", "Note", "first text");
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        loading.await();
+
+        // when: searching, and starting another rebuild, meanwhile
+        List<NoteSearchIndex.Hit> hits = index.search("user1", "text", 10);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() ->
+            index.rebuild(loader -> loader.index(3, "user1", "Note", "second text")));
+        Thread.sleep(100);
+
+        // then: the search is served from the live index, the second rebuild waits its turn
+        assertThat(hits).extracting(NoteSearchIndex.Hit::noteId).containsExactly(1L);
+        assertThat(second).isNotDone();
+
+        // when: the first rebuild finishes loading
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        // then: the last snapshot is live
+        assertThat(index.search("user1", "text", 10))
+            .extracting(NoteSearchIndex.Hit::noteId).containsExactly(3L);
+    }
+
+    @Test
+    public void givenMoreMatchesThanLimit_whenSearch_thenReturnLimit() {
+
+        // given: many matching notes
+        for (int i = 0; i < 50; i++) {
+            index.index(i, "user1", "Note", "common");
+        }
+
+        // when/then: result count capped
+        assertThat(index.search("user1", "common", 5)).hasSize(5);
+    }
+
+    @Test
+    public void givenLongText_whenSnippet_thenWindowAroundFirstMatch() {
+
+        // given: long text with the term far from the start
+        String text = "lorem ipsum ".repeat(40) + "needle in the haystack " + "dolor sit ".repeat(40);
+
+        // when: build snippet
+        String snippet = NoteSearchIndex.snippet(text, Set.of("needle"));
+
+        // then: snippet bounded, contains the match and marks truncation
+        assertThat(snippet).contains("needle").startsWith("…").endsWith("…");
+        assertThat(snippet.length()).isLessThanOrEqualTo(NoteSearchIndex.SNIPPET_LENGTH + 2);
+        assertThat(NoteSearchIndex.snippet("short text", Set.of("x"))).isEqualTo("short text");
+    }
+}
@@ -0,0 +1,128 @@
+package com.jfahey.notesdemo.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jfahey.notesdemo.security.JwtValidationResult.Status;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+public class JwtProviderTest {
+
+    private static final String SECRET = "mysecretkey123456789";
+    private static final String PREVIOUS_SECRET = "previouskey987654321";
+
+    private JwtProvider jwtProvider;
+
+    @BeforeEach
+    void setup() {
+        jwtProvider = createJwtProvider("current", SECRET, "previous:" + PREVIOUS_SECRET);
+    }
+
+    @Test
+    public void givenToken_whenParseAccessToken_thenReturnSubject() {
+
+        // given: freshly issued token
+        String token = jwtProvider.generateToken("user");
+
+        // when: token parsed twice (second time from the verified-token cache)
+        JwtValidationResult first = jwtProvider.parseAccessToken(token);
+        JwtValidationResult second = jwtProvider.parseAccessToken(token);
+
+        // then: both report the verified subject and expiry
+        assertThat(first.isValid()).isTrue();
+        assertThat(first.getSubject()).isEqualTo("user");
+        assertThat(second.getSubject()).isEqualTo("user");
+        assertThat(second.getExpiration()).isEqualTo(first.getExpiration());
+    }
+
+    @Test
+    public void givenCachedToken_whenParseTamperedToken_thenReturnInvalidSignature() {
+
+        // given: verified (cached) token
+        String token = jwtProvider.generateToken("user");
+        jwtProvider.parseAccessToken(token);
+
+        // when: token with a modified signature is parsed
+        String tampered = token.substring(0, token.length() - 2)
+            + (token.endsWith("AA") ? "BB" : "AA");
+        JwtValidationResult result = jwtProvider.parseAccessToken(tampered);
+
+        // then: signature check not skipped
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getStatus()).isEqualTo(Status.INVALID_SIGNATURE);
+    }
+
+    @Test
+    public void givenExpiredToken_whenParseAccessToken_thenReturnExpired() {
+
+        // given: token that expired a second ago
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", -1000L);
+        String token = jwtProvider.generateToken("user");
+
+        // when/then: token rejected as expired, repeatedly
+        assertThat(jwtProvider.parseAccessToken(token).getStatus()).isEqualTo(Status.EXPIRED);
+        assertThat(jwtProvider.parseAccessToken(token).getStatus()).isEqualTo(Status.EXPIRED);
+    }
+
+    @Test
+    public void givenTokenSignedWithPreviousKey_whenParseAccessToken_thenReturnSubject() {
+
+        // given: token issued before the key was rotated
+        String token = createJwtProvider("previous", PREVIOUS_SECRET, "").generateToken("user");
+
+        // when/then: token still accepted via its kid
+        JwtValidationResult result = jwtProvider.parseAccessToken(token);
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.getSubject()).isEqualTo("user");
+    }
+
+    @Test
+    public void givenTokenWithUnknownKeyId_whenParseAccessToken_thenReturnInvalidSignature() {
+
+        // given: token signed with the right secret but a retired, no longer configured kid
+        String token = createJwtProvider("retired", SECRET, "").generateToken("user");
+
+        // when/then: token rejected
+        assertThat(jwtProvider.parseAccessToken(token).getStatus()).isEqualTo(Status.INVALID_SIGNATURE);
+    }
+
+    @Test
+    public void givenLegacyTokenWithoutKeyId_whenParseAccessToken_thenVerifyWithActiveKey() {
+
+        // given: token issued before tokens carried a kid
+        String token = Jwts.builder()
+            .setSubject("user")
+            .setExpiration(new Date(System.currentTimeMillis() + 60000))
+            .signWith(SignatureAlgorithm.HS512, SECRET)
+            .compact();
+
+        // when/then: token accepted
+        assertThat(jwtProvider.parseAccessToken(token).getSubject()).isEqualTo("user");
+    }
+
+    @Test
+    public void givenMalformedToken_whenParseAccessToken_thenReturnMalformed() {
+
+        // when/then: garbage token rejected without throwing
+        assertThat(jwtProvider.parseAccessToken("not.a.jwt").getStatus()).isEqualTo(Status.MALFORMED);
+        assertThat(jwtProvider.validateAccessToken("not.a.jwt")).isFalse();
+    }
+
+    private static JwtProvider createJwtProvider(String keyId, String secret, String previousKeys) {
+        JwtProvider provider = new JwtProvider();
+        ReflectionTestUtils.setField(provider, "jwtKeyId", keyId);
+        ReflectionTestUtils.setField(provider, "jwtSecret", secret);
+        ReflectionTestUtils.setField(provider, "jwtPreviousKeys", previousKeys);
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 60000L);
+        ReflectionTestUtils.setField(provider, "tokenCacheSize", 100);
+        provider.init();
+        return provider;
+    }
+}
@@ -0,0 +1,101 @@
+package com.jfahey.notesdemo.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jfahey.notesdemo.security.PasswordHashingExecutor.Operation;
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PasswordHashingExecutorTest {
+
+    private PasswordHashingExecutor executor;
+    private SimpleMeterRegistry registry;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setup() {
+        // one thread, one queued task, 50ms queue timeout
+        executor = new PasswordHashingExecutor(1, 1, 50);
+        registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+    }
+
+    @AfterEach
+    void teardown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenTask_whenSubmit_thenResultAndTimingPerOperation() throws Exception {
+
+        // when: a login hash is submitted
+        String result = executor.submit(Operation.LOGIN, () -> "hash").get(5, TimeUnit.SECONDS);
+
+        // then: result returned, timed under the login operation only
+        assertThat(result).isEqualTo("hash");
+        assertThat(registry.get("auth.hashing.duration").tag("operation", "login").functionTimer().count())
+            .isEqualTo(1);
+        assertThat(registry.get("auth.hashing.duration").tag("operation", "register").functionTimer().count())
+            .isZero();
+    }
+
+    @Test
+    public void givenFullQueue_whenSubmit_thenRejectedImmediately() {
+
+        // given: the thread busy and the queue full
+        executor.submit(Operation.LOGIN, this::block);
+        executor.submit(Operation.LOGIN, () -> "queued");
+
+        // when/then: the next task is turned away without waiting
+        assertThatThrownBy(() -> executor.submit(Operation.REGISTER, () -> "rejected"))
+            .isInstanceOf(ServerBusyException.class);
+        assertThat(registry.get("auth.hashing.rejected")
+            .tags("operation", "register", "reason", "queue_full").functionCounter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void givenTaskQueuedTooLong_whenRun_thenDroppedWithoutHashing() throws Exception {
+
+        // given: a task queued behind one that outlasts the queue timeout
+        CompletableFuture<Object> blocking = executor.submit(Operation.LOGIN, this::block);
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<String> queued = executor.submit(Operation.LOGIN, () -> {
+            ran.set(true);
+            return "hash";
+        });
+
+        // when: the thread frees up after the timeout
+        Thread.sleep(100);
+        release.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+
+        // then: the queued task fails as busy and never runs
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(ServerBusyException.class);
+        assertThat(ran).isFalse();
+    }
+
+    private Object block() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jfahey.notesdemo.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import com.jfahey.notesdemo.model.NoteChange;
+import com.jfahey.notesdemo.model.NoteChangeFeed;
+import com.jfahey.notesdemo.model.User;
+import com.jfahey.notesdemo.repository.UserRepository;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(NoteChangeLog.class)
+@TestPropertySource(properties = {
+    "app.notes.changes.maxtombstones=2",
+    "app.notes.changes.compactevery=1"
+})
+public class NoteChangeLogTest {
+
+    private static final String USERNAME = "user1";
+
+    @Autowired
+    private NoteChangeLog changeLog;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setup() {
+        userRepository.save(new User(USERNAME, "user1@domain.com", "password"));
+    }
+
+    @Test
+    public void givenNoteChangedRepeatedly_whenGetChanges_thenOnlyLatestEntryKept() {
+
+        // given: note 1 created and updated, note 2 created then deleted
+        changeLog.record(USERNAME, 1L, NoteChange.Type.UPSERT);
+        changeLog.record(USERNAME, 2L, NoteChange.Type.UPSERT);
+        changeLog.record(USERNAME, 1L, NoteChange.Type.UPSERT);
+        changeLog.record(USERNAME, 2L, NoteChange.Type.DELETE);
+
+        // when/then: one entry per note, numbered in order of their last change
+        assertThat(changeLog.getChanges(USERNAME, 0, 10))
+            .extracting(NoteChange::getNoteId, NoteChange::getType, NoteChange::getSequence)
+            .containsExactly(
+                tuple(1L, NoteChange.Type.UPSERT, 3L),
+                tuple(2L, NoteChange.Type.DELETE, 4L));
+        assertThat(changeLog.getChanges(USERNAME, 3, 10)).hasSize(1);
+    }
+
+    @Test
+    public void givenTombstonesOverLimit_whenRecord_thenOldestCompactedAway() {
+
+        // given: five notes deleted in one transaction, then one more
+        Map<Long, NoteChange.Type> deletions = new LinkedHashMap<>();
+        for (long id = 1; id <= 5; id++) {
+            deletions.put(id, NoteChange.Type.DELETE);
+        }
+        changeLog.record(USERNAME, deletions);
+        changeLog.record(USERNAME, 6L, NoteChange.Type.DELETE);
+
+        // then: only the newest two tombstones remain, and the feed records
+        // that cursors before them can no longer be answered
+        assertThat(changeLog.getChanges(USERNAME, 0, 10))
+            .extracting(NoteChange::getNoteId)
+            .containsExactly(5L, 6L);
+        NoteChangeFeed feed = changeLog.getFeed(USERNAME).orElseThrow();
+        assertThat(feed.getLastSequence()).isEqualTo(6);
+        assertThat(feed.getCompactedThrough()).isEqualTo(4);
+    }
+}
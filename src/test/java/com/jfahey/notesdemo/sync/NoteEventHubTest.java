@@ -0,0 +1,189 @@
+package com.jfahey.notesdemo.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.jfahey.notesdemo.cache.InJvmInvalidationBus;
+import com.jfahey.notesdemo.model.NoteChangedEvent;
+import com.jfahey.notesdemo.security.exception.ServerBusyException;
+
+public class NoteEventHubTest {
+
+    private final String channel = UUID.randomUUID().toString();
+    private final InJvmInvalidationBus bus = new InJvmInvalidationBus(channel);
+    private final NoteEventHub hub = hub(bus, 2, 60_000);
+
+    @AfterEach
+    void teardown() {
+        hub.shutdown();
+        bus.close();
+    }
+
+    @Test
+    public void givenSubscribers_whenPublish_thenOnlyOwnerReceivesEvent() throws Exception {
+
+        // given: streams of two users
+        RecordingEmitter owner = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        hub.subscribe("user1", owner);
+        hub.subscribe("user2", other);
+
+        // when: one of user1's notes is created
+        hub.publish(NoteChangedEvent.Type.CREATE, 7, "user1");
+
+        // then: only user1's stream gets the event
+        await(() -> owner.received().contains("event:create"));
+        assertThat(owner.received()).contains("data:{\"id\":7}");
+        assertThat(other.received()).doesNotContain("event:");
+    }
+
+    @Test
+    public void givenSlowSubscriber_whenBufferFull_thenEvictedWithoutDelayingOthers() throws Exception {
+
+        // given: a client that stopped reading, and another one
+        BlockingEmitter slow = new BlockingEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        hub.subscribe("user1", slow);
+        hub.subscribe("user1", fast);
+        slow.sending.await();
+
+        // when: more events than a buffer holds are published, as fast as the other client reads them
+        for (int id = 0; id < 10; id++) {
+            hub.publish(NoteChangedEvent.Type.UPDATE, id, "user1");
+            String data = "data:{\"id\":" + id + "}";
+            await(() -> fast.received().contains(data));
+        }
+
+        // then: publishing didn't block, and only the slow client was dropped
+        assertThat(hub.subscriberCount()).isEqualTo(1);
+
+        // then: the slow client's response is completed once its pending write returns
+        slow.release.countDown();
+        await(() -> slow.completed);
+    }
+
+    @Test
+    public void givenClientsNeverReading_whenWritesPastDeadline_thenEvictedAndOthersStillServed() throws Exception {
+
+        InJvmInvalidationBus otherBus = new InJvmInvalidationBus(UUID.randomUUID().toString());
+        // a single sender thread, writes time out after 100 ms
+        NoteEventHub singleSender = hub(otherBus, 1, 100);
+        try {
+            // given: two clients that never read, more than there are senders, and one that does
+            BlockingEmitter stuck = new BlockingEmitter();
+            BlockingEmitter alsoStuck = new BlockingEmitter();
+            RecordingEmitter reading = new RecordingEmitter();
+            singleSender.subscribe("user1", stuck);
+            singleSender.subscribe("user2", alsoStuck);
+            singleSender.subscribe("user3", reading);
+
+            // when: events are published to every user
+            for (int id = 0; id < 3; id++) {
+                singleSender.publish(NoteChangedEvent.Type.UPDATE, id, "user1");
+                singleSender.publish(NoteChangedEvent.Type.UPDATE, id, "user2");
+                singleSender.publish(NoteChangedEvent.Type.UPDATE, id, "user3");
+            }
+
+            // then: the reading client receives them all, the others are dropped once their writes time out
+            await(() -> reading.received().contains("data:{\"id\":2}"));
+            await(() -> singleSender.subscriberCount() == 1);
+
+            // then: the stalled responses are completed once their writes return
+            stuck.release.countDown();
+            alsoStuck.release.countDown();
+            await(() -> stuck.completed && alsoStuck.completed);
+        } finally {
+            singleSender.shutdown();
+            otherBus.close();
+        }
+    }
+
+    @Test
+    public void givenMaximumSubscribers_whenSubscribe_thenRejected() {
+
+        hub.subscribe("user1", new RecordingEmitter());
+        hub.subscribe("user2", new RecordingEmitter());
+        hub.subscribe("user3", new RecordingEmitter());
+
+        assertThatThrownBy(() -> hub.subscribe("user4", new RecordingEmitter()))
+            .isInstanceOf(ServerBusyException.class);
+    }
+
+    @Test
+    public void givenSubscriberOnOtherInstance_whenPublish_thenEventDelivered() throws Exception {
+
+        InJvmInvalidationBus otherBus = new InJvmInvalidationBus(channel);
+        NoteEventHub otherHub = hub(otherBus, 1, 60_000);
+        try {
+            RecordingEmitter emitter = new RecordingEmitter();
+            otherHub.subscribe("user1", emitter);
+
+            hub.publish(NoteChangedEvent.Type.DELETE, 3, "user1");
+
+            await(() -> emitter.received().contains("event:delete"));
+        } finally {
+            otherHub.shutdown();
+            otherBus.close();
+        }
+    }
+
+    private static NoteEventHub hub(InJvmInvalidationBus bus, int senderThreads, long writeTimeoutMs) {
+        // buffers of 4 events, 3 subscribers at most
+        return new NoteEventHub(new NoteEventBus(bus), 60_000, 4, 3, 2, senderThreads, writeTimeoutMs, 60_000);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    /** Collects the text of the events sent to it. */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final StringBuffer text = new StringBuffer();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            builder.build().forEach(part -> text.append(part.getData()));
+        }
+
+        String received() {
+            return text.toString();
+        }
+    }
+
+    /** A client that doesn't read: sending blocks until released. */
+    private static class BlockingEmitter extends SseEmitter {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.jfahey.notesdemo.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+public class NoteUploadStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private NoteUploadStore store;
+
+    @BeforeEach
+    void setup() throws IOException {
+        // 64 byte uploads, 16 byte chunks, 2 open uploads per user
+        store = new NoteUploadStore(directory.toString(), 64, 16, 2, 1, 10, 60_000);
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        store.clear();
+    }
+
+    @Test
+    public void givenChunksWithSplitCharacter_whenCommit_thenContentReassembled() throws IOException {
+
+        // given: content whose multi-byte character is split across chunks
+        byte[] bytes = "grüße".getBytes(StandardCharsets.UTF_8);
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, chunk(bytes, 0, 4));
+        store.append(upload.getId(), "user1", 4, chunk(bytes, 4, bytes.length));
+
+        // when: commit
+        String content = store.commit(upload.getId(), "user1", (committed, text) -> text);
+
+        // then: content decoded whole, upload closed and its file removed
+        assertThat(content).isEqualTo("grüße");
+        assertThatThrownBy(() -> store.get(upload.getId(), "user1"))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+        assertThat(directory).isEmptyDirectory();
+    }
+
+    @Test
+    public void givenWrongOffset_whenAppend_thenConflict() throws IOException {
+
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, chunk("abc"));
+
+        // when/then: repeated or skipped chunks rejected, upload unchanged
+        assertThatThrownBy(() -> store.append(upload.getId(), "user1", 0, chunk("abc")))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.CONFLICT);
+        assertThat(store.get(upload.getId(), "user1").getSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenTooLargeChunk_whenAppend_thenRejectedAndRolledBack() throws IOException {
+
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, chunk("0123456789"));
+
+        // when/then: a chunk over the chunk limit is rejected
+        assertThatThrownBy(() -> store.append(upload.getId(), "user1", 10, chunk("x".repeat(17))))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.PAYLOAD_TOO_LARGE);
+
+        // then: the partial chunk was rolled back, and the upload can be resumed
+        store.append(upload.getId(), "user1", 10, chunk("abc"));
+        assertThat(store.<String>commit(upload.getId(), "user1", (committed, text) -> text)).isEqualTo("0123456789abc");
+    }
+
+    @Test
+    public void givenUploadAtLimit_whenAppend_thenRejected() throws IOException {
+
+        // given: upload filled up to the total limit
+        NoteUpload upload = store.create("user1", "Title", null);
+        for (int offset = 0; offset < 64; offset += 16) {
+            store.append(upload.getId(), "user1", offset, chunk("x".repeat(16)));
+        }
+
+        // when/then: no more content accepted
+        assertThatThrownBy(() -> store.append(upload.getId(), "user1", 64, chunk("x")))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(store.get(upload.getId(), "user1").getSize()).isEqualTo(64);
+    }
+
+    @Test
+    public void givenMaxOpenUploads_whenCreate_thenTooManyRequests() throws IOException {
+
+        store.create("user1", "A", null);
+        NoteUpload second = store.create("user1", "B", null);
+
+        // when/then: third upload refused, other users unaffected
+        assertThatThrownBy(() -> store.create("user1", "C", null))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(store.create("user2", "A", null)).isNotNull();
+
+        // when/then: closing an upload frees a slot
+        store.remove(second.getId(), "user1");
+        assertThat(store.create("user1", "C", null)).isNotNull();
+    }
+
+    @Test
+    public void givenFailingCommit_whenCommit_thenUploadKept() throws IOException {
+
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, chunk("content"));
+
+        // when: storing the content fails
+        assertThatThrownBy(() -> store.commit(upload.getId(), "user1", (committed, text) -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // then: upload still open for a retry
+        assertThat(store.<String>commit(upload.getId(), "user1", (committed, text) -> text)).isEqualTo("content");
+    }
+
+    @Test
+    public void givenInvalidUtf8_whenCommit_thenBadRequest() throws IOException {
+
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, new ByteArrayInputStream(new byte[] {(byte) 0xC3, 'x'}));
+
+        assertThatThrownBy(() -> store.commit(upload.getId(), "user1", (committed, text) -> text))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void givenIdleUpload_whenExpire_thenDiscarded() throws IOException, InterruptedException {
+
+        // given: an upload left idle for longer than the TTL
+        store.clear();
+        store = new NoteUploadStore(directory.toString(), 64, 16, 2, 1, 10, 50);
+        NoteUpload upload = store.create("user1", "Title", null);
+        store.append(upload.getId(), "user1", 0, chunk("abc"));
+        Thread.sleep(100);
+
+        // when: the sweep runs
+        store.expire();
+
+        // then: upload and its file are gone
+        assertThatThrownBy(() -> store.get(upload.getId(), "user1"))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+        assertThat(directory).isEmptyDirectory();
+    }
+
+    @Test
+    public void givenOtherUsersUpload_whenGet_thenNotFound() throws IOException {
+
+        NoteUpload upload = store.create("user1", "Title", null);
+
+        assertThatThrownBy(() -> store.append(upload.getId(), "user2", 0, chunk("x")))
+            .hasFieldOrPropertyWithValue("status", HttpStatus.NOT_FOUND);
+    }
+
+    private static InputStream chunk(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream chunk(byte[] bytes, int from, int to) {
+        return new ByteArrayInputStream(bytes, from, to - from);
+    }
+}
@@ -0,0 +1,87 @@
+package com.jfahey.notesdemo.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 0);
+
+    @Test
+    public void givenSlotFree_whenRequest_thenServedAndSlotReleased() throws Exception {
+
+        // when/then: sequential requests all served
+        assertThat(perform("/notes/all").getStatus()).isEqualTo(200);
+        assertThat(perform("/notes/all").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void givenAsyncRequestInProgress_whenRequest_thenRejectedUntilCompleted() throws Exception {
+
+        // given: a streamed response holding the only slot
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/notes/all/stream");
+        streaming.setAsyncSupported(true);
+        filter.doFilter(streaming, new MockHttpServletResponse(), new MockFilterChain(new AsyncServlet()));
+
+        // when/then: further requests turned away with a retry hint, except actuator
+        MockHttpServletResponse rejected = perform("/notes/all");
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(perform("/actuator/health").getStatus()).isEqualTo(200);
+
+        // when/then: slot freed once the streamed response completes
+        streaming.getAsyncContext().complete();
+        assertThat(perform("/notes/all").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void givenSlotTaken_whenRequestNotDatabaseBound_thenServed() throws Exception {
+
+        // given: a streamed response holding the only slot
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/notes/1/content");
+        streaming.setAsyncSupported(true);
+        filter.doFilter(streaming, new MockHttpServletResponse(), new MockFilterChain(new AsyncServlet()));
+
+        // when/then: logins, upload chunks and event streams are not limited
+        assertThat(perform("/notes/get/1").getStatus()).isEqualTo(503);
+        assertThat(perform("/auth/login").getStatus()).isEqualTo(200);
+        assertThat(perform("/notes/uploads/abc").getStatus()).isEqualTo(200);
+        assertThat(perform("/notes/stream").getStatus()).isEqualTo(200);
+        assertThat(perform("/error").getStatus()).isEqualTo(200);
+        streaming.getAsyncContext().complete();
+    }
+
+    @Test
+    public void givenNoLimit_whenRequests_thenAllServed() throws Exception {
+
+        ConcurrencyLimitFilter unlimited = new ConcurrencyLimitFilter(0, 0);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        unlimited.doFilter(new MockHttpServletRequest("GET", "/notes/all"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse perform(String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", uri), response, new MockFilterChain());
+        return response;
+    }
+
+    private static class AsyncServlet extends HttpServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) {
+            request.startAsync();
+        }
+    }
+}
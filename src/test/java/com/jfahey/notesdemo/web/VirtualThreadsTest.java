@@ -0,0 +1,36 @@
+package com.jfahey.notesdemo.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void whenNewThreadPerTaskExecutor_thenVirtualThreadsOrClearError() throws Exception {
+
+        // the java21 build profile sets virtualthreads.required, so there the fallback can't pass silently
+        if (!VirtualThreads.isSupported() && !Boolean.getBoolean("virtualthreads.required")) {
+            // then: (before Java 21) explicit failure rather than silently using platform threads
+            assertThatThrownBy(() -> VirtualThreads.newThreadPerTaskExecutor("test-"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Java 21");
+            return;
+        }
+
+        // then: tasks run on named virtual threads
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            String name = executor.submit(() -> Thread.currentThread().getName()).get();
+            boolean virtual = executor.submit(() -> (Boolean) Thread.class.getMethod("isVirtual")
+                .invoke(Thread.currentThread())).get();
+            assertThat(name).startsWith("test-");
+            assertThat(virtual).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}